@@ -0,0 +1,65 @@
+package com.benefactor.agendaCitas.Controller;
+
+import com.benefactor.agendaCitas.DatosSinteticos;
+import com.benefactor.agendaCitas.Repository.CitaRepository;
+import com.benefactor.agendaCitas.Repository.DiaEspecialRepository;
+import com.benefactor.agendaCitas.Repository.HorarioLaboralRepository;
+import com.benefactor.agendaCitas.Servicios.IndiceDiasEspeciales;
+import com.benefactor.agendaCitas.Servicios.ReservasTemporales;
+import com.benefactor.agendaCitas.model.Cita;
+import com.benefactor.agendaCitas.model.Empleado;
+import com.benefactor.agendaCitas.model.HorarioLaboral;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark de las franjas de 30 minutos de EmpleadoController.obtenerDisponibilidadHoraria
+ * Ejecuta el cálculo real sin la caché, con repositorios en memoria
+ * La duración del servicio no aplica: las franjas siempre son de 30 minutos
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FranjasHorariasBenchmark {
+
+    private static final Long EMPLEADO_ID = 1L;
+
+    @Param({"1", "2", "3"})
+    private int turnos;
+
+    @Param({"0", "10", "40"})
+    private int citasPorDia;
+
+    private EmpleadoController empleadoController;
+
+    @Setup
+    public void preparar() {
+        Empleado empleado = DatosSinteticos.empleado(EMPLEADO_ID);
+        List<HorarioLaboral> horarios = DatosSinteticos.turnos(empleado, turnos);
+        List<Cita> citas = DatosSinteticos.citas(empleado, horarios, citasPorDia, 42L);
+
+        IndiceDiasEspeciales indiceDiasEspeciales = new IndiceDiasEspeciales();
+        DatosSinteticos.inyectar(indiceDiasEspeciales, "diaEspecialRepository", DatosSinteticos.repositorio(
+                DiaEspecialRepository.class, Map.of("findByFechaBetween", args -> List.of())));
+
+        empleadoController = new EmpleadoController();
+        DatosSinteticos.inyectar(empleadoController, "horarioLaboralRepository", DatosSinteticos.repositorio(
+                HorarioLaboralRepository.class, Map.of("findByEmpleadoIdAndDiaSemanaAndActivoTrue", args -> horarios)));
+        DatosSinteticos.inyectar(empleadoController, "citaRepository", DatosSinteticos.repositorio(
+                CitaRepository.class, Map.of("findByEmpleadoIdAndFechaHoraInicioBetween", args -> citas)));
+        DatosSinteticos.inyectar(empleadoController, "indiceDiasEspeciales", indiceDiasEspeciales);
+        DatosSinteticos.inyectar(empleadoController, "reservasTemporales", new ReservasTemporales(new SimpleMeterRegistry(), 5, 1000));
+    }
+
+    @Benchmark
+    public Map<String, Object> obtenerDisponibilidadHoraria() {
+        return empleadoController.calcularDisponibilidadHoraria(EMPLEADO_ID, DatosSinteticos.FECHA);
+    }
+}
@@ -0,0 +1,137 @@
+package com.benefactor.agendaCitas;
+
+import com.benefactor.agendaCitas.DTO.RangoCitaDTO;
+import com.benefactor.agendaCitas.model.Cita;
+import com.benefactor.agendaCitas.model.Empleado;
+import com.benefactor.agendaCitas.model.HorarioLaboral;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Agendas sintéticas y repositorios en memoria para los benchmarks JMH
+ * Permiten medir el cálculo de disponibilidad sin base de datos ni contexto de Spring
+ */
+public final class DatosSinteticos {
+
+    /**
+     * Día fijo de las agendas generadas (lunes)
+     */
+    public static final LocalDate FECHA = LocalDate.of(2030, 1, 7);
+
+    private static final int[] DURACIONES_CITA = {15, 30, 45, 60, 90};
+
+    private DatosSinteticos() {}
+
+    public static Empleado empleado(Long id) {
+        Empleado empleado = new Empleado();
+        empleado.setId(id);
+        empleado.setNombre("Empleado " + id);
+        return empleado;
+    }
+
+    /**
+     * Genera de 1 a 3 turnos para el día de {@link #FECHA}, separados por pausas
+     */
+    public static List<HorarioLaboral> turnos(Empleado empleado, int cantidad) {
+        int diaSemana = FECHA.getDayOfWeek().getValue();
+        switch (cantidad) {
+            case 1:
+                return List.of(new HorarioLaboral(empleado, diaSemana, LocalTime.of(8, 0), LocalTime.of(18, 0)));
+            case 2:
+                return List.of(
+                        new HorarioLaboral(empleado, diaSemana, LocalTime.of(7, 0), LocalTime.of(12, 0)),
+                        new HorarioLaboral(empleado, diaSemana, LocalTime.of(13, 0), LocalTime.of(20, 0)));
+            case 3:
+                return List.of(
+                        new HorarioLaboral(empleado, diaSemana, LocalTime.of(7, 0), LocalTime.of(11, 0)),
+                        new HorarioLaboral(empleado, diaSemana, LocalTime.of(12, 0), LocalTime.of(16, 0)),
+                        new HorarioLaboral(empleado, diaSemana, LocalTime.of(17, 0), LocalTime.of(21, 0)));
+            default:
+                throw new IllegalArgumentException("Se admiten de 1 a 3 turnos");
+        }
+    }
+
+    /**
+     * Genera citas repartidas al azar (con semilla fija) dentro de los turnos, en múltiplos de 5 minutos
+     * Con muchas citas pueden solaparse entre sí, lo que también ejercita la fusión de intervalos
+     */
+    public static List<Cita> citas(Empleado empleado, List<HorarioLaboral> turnos, int cantidad, long semilla) {
+        Random random = new Random(semilla);
+        List<Cita> citas = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            HorarioLaboral turno = turnos.get(random.nextInt(turnos.size()));
+            int duracion = DURACIONES_CITA[random.nextInt(DURACIONES_CITA.length)];
+            int minutosTurno = (turno.getHoraFin().toSecondOfDay() - turno.getHoraInicio().toSecondOfDay()) / 60;
+            int desplazamiento = random.nextInt(Math.max(1, (minutosTurno - duracion) / 5 + 1)) * 5;
+
+            LocalDateTime inicio = FECHA.atTime(turno.getHoraInicio()).plusMinutes(desplazamiento);
+            Cita cita = new Cita();
+            cita.setId((long) i + 1);
+            cita.setEmpleado(empleado);
+            cita.setFechaHoraInicio(inicio);
+            cita.setFechaHoraFin(inicio.plusMinutes(duracion));
+            cita.setEstado("programada");
+            citas.add(cita);
+        }
+        return citas;
+    }
+
+    /**
+     * Proyecta las citas a rangos, como lo hace la consulta findRangosEnIntervalo
+     */
+    public static List<RangoCitaDTO> rangos(List<Cita> citas) {
+        List<RangoCitaDTO> rangos = new ArrayList<>(citas.size());
+        for (Cita cita : citas) {
+            LocalDateTime inicio = cita.getFechaHoraInicio();
+            LocalDateTime fin = cita.getFechaHoraFin();
+            rangos.add(new RangoCitaDTO() {
+                public LocalDateTime getFechaHoraInicio() { return inicio; }
+                public LocalDateTime getFechaHoraFin() { return fin; }
+            });
+        }
+        return rangos;
+    }
+
+    /**
+     * Crea un repositorio en memoria que responde por nombre de método
+     * Los métodos sin respuesta registrada lanzan UnsupportedOperationException
+     */
+    public static <T> T repositorio(Class<T> tipo, Map<String, Function<Object[], Object>> respuestas) {
+        Object proxy = Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[]{tipo}, (instancia, metodo, args) -> {
+            switch (metodo.getName()) {
+                case "toString": return tipo.getSimpleName() + " sintético";
+                case "hashCode": return System.identityHashCode(instancia);
+                case "equals": return instancia == args[0];
+                default:
+                    Function<Object[], Object> respuesta = respuestas.get(metodo.getName());
+                    if (respuesta == null) {
+                        throw new UnsupportedOperationException(metodo.getName());
+                    }
+                    return respuesta.apply(args);
+            }
+        });
+        return tipo.cast(proxy);
+    }
+
+    /**
+     * Asigna un campo inyectado con @Autowired sin levantar el contexto de Spring
+     */
+    public static void inyectar(Object destino, String campo, Object valor) {
+        try {
+            Field field = destino.getClass().getDeclaredField(campo);
+            field.setAccessible(true);
+            field.set(destino, valor);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo inyectar " + campo, e);
+        }
+    }
+}
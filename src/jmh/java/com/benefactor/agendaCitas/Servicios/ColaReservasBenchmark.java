@@ -0,0 +1,204 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.benefactor.agendaCitas.DatosSinteticos;
+import com.benefactor.agendaCitas.Repository.CitaRepository;
+import com.benefactor.agendaCitas.Repository.EmpleadoRepository;
+import com.benefactor.agendaCitas.model.Cita;
+import com.benefactor.agendaCitas.model.Cliente;
+import com.benefactor.agendaCitas.model.Empleado;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Benchmark de reservas simultáneas sobre pocos empleados, como en la apertura de agenda
+ *
+ * <p>"directo" reproduce el camino actual con agenda.citas.bloqueo-asesor: cada reserva toma una conexión,
+ * espera el bloqueo del empleado y hace cuatro viajes a la base de datos (bloqueo, verificación, INSERT y
+ * COMMIT) mientras lo retiene. "cola" envía las mismas reservas a ColaReservasEmpleado, que las valida contra
+ * el índice en memoria y las guarda por lotes. Cada viaje a la base de datos se simula con una pausa de
+ * latenciaMicros y las conexiones se limitan a las del pool de Hikari por defecto.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Threads(64)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class ColaReservasBenchmark {
+
+    /**
+     * Tamaño por defecto del pool de conexiones de Hikari
+     */
+    private static final int CONEXIONES = 10;
+
+    /**
+     * Días que cubre el índice; suficientes para que ninguna reserva del benchmark quede fuera de la ventana
+     */
+    private static final int DIAS_INDICE = 36_500;
+
+    @Param({"1", "4", "16"})
+    private int empleados;
+
+    @Param({"200"})
+    private long latenciaMicros;
+
+    private Empleado[] plantilla;
+    private ReentrantLock[] bloqueos;
+    private AtomicLong[] siguienteTurno;
+    private Semaphore conexiones;
+    private AtomicLong secuencia;
+    private CitaRepository citaRepository;
+    private ColaReservasEmpleado colaReservas;
+
+    @Setup
+    public void preparar() {
+        plantilla = new Empleado[empleados];
+        bloqueos = new ReentrantLock[empleados];
+        siguienteTurno = new AtomicLong[empleados];
+        for (int i = 0; i < empleados; i++) {
+            plantilla[i] = DatosSinteticos.empleado((long) i + 1);
+            bloqueos[i] = new ReentrantLock();
+            siguienteTurno[i] = new AtomicLong();
+        }
+        conexiones = new Semaphore(CONEXIONES);
+        secuencia = new AtomicLong();
+
+        citaRepository = DatosSinteticos.repositorio(CitaRepository.class, Map.of(
+                "findOcupacionesEnIntervalo", args -> List.of(),
+                "existeConflicto", args -> {
+                    latencia();
+                    return false;
+                },
+                "save", args -> {
+                    latencia();
+                    return asignarId((Cita) args[0]);
+                },
+                "saveAndFlush", args -> {
+                    latencia();
+                    return asignarId((Cita) args[0]);
+                },
+                "saveAllAndFlush", args -> {
+                    // Con reWriteBatchedInserts el lote viaja en un solo INSERT de varias filas
+                    latencia();
+                    List<Cita> guardadas = new ArrayList<>();
+                    for (Object cita : (Iterable<?>) args[0]) {
+                        guardadas.add(asignarId((Cita) cita));
+                    }
+                    return guardadas;
+                }));
+
+        IndiceOcupacion indiceOcupacion = new IndiceOcupacion();
+        DatosSinteticos.inyectar(indiceOcupacion, "citaRepository", citaRepository);
+        DatosSinteticos.inyectar(indiceOcupacion, "empleadoRepository", DatosSinteticos.repositorio(
+                EmpleadoRepository.class, Map.of("findByActivoTrue", args -> List.of(plantilla))));
+        DatosSinteticos.inyectar(indiceOcupacion, "diasVentana", DIAS_INDICE);
+        indiceOcupacion.construir();
+
+        colaReservas = new ColaReservasEmpleado(new SimpleMeterRegistry(), 4, 20, 1000);
+        DatosSinteticos.inyectar(colaReservas, "citaRepository", citaRepository);
+        DatosSinteticos.inyectar(colaReservas, "indiceOcupacion", indiceOcupacion);
+        DatosSinteticos.inyectar(colaReservas, "filtroClientes", new FiltroClientes(new SimpleMeterRegistry(), 1000, 0.01));
+        DatosSinteticos.inyectar(colaReservas, "reservasTemporales", new ReservasTemporales(new SimpleMeterRegistry(), 5, 1000));
+        DatosSinteticos.inyectar(colaReservas, "transactionTemplate", new TransactionTemplate(new TransaccionSimulada()));
+    }
+
+    @TearDown
+    public void cerrar() {
+        colaReservas.cerrar();
+    }
+
+    @Benchmark
+    public Cita directo() throws InterruptedException {
+        int i = ThreadLocalRandom.current().nextInt(empleados);
+        Cita cita = nuevaCita(i);
+        conexiones.acquire();
+        bloqueos[i].lock();
+        try {
+            latencia(); // pg_advisory_xact_lock
+            if (citaRepository.existeConflicto(cita.getEmpleado().getId(), cita.getFechaHoraInicio(), cita.getFechaHoraFin())) {
+                throw new IllegalStateException("Conflicto inesperado");
+            }
+            Cita guardada = citaRepository.save(cita);
+            latencia(); // COMMIT
+            return guardada;
+        } finally {
+            bloqueos[i].unlock();
+            conexiones.release();
+        }
+    }
+
+    @Benchmark
+    public Cita cola() {
+        return colaReservas.encolar(nuevaCita(ThreadLocalRandom.current().nextInt(empleados)), null).join();
+    }
+
+    // ========== MÉTODOS AUXILIARES ==========
+
+    /**
+     * Cita de 30 minutos en el siguiente turno libre del empleado, a partir de mañana
+     */
+    private Cita nuevaCita(int i) {
+        LocalDateTime inicio = LocalDate.now().plusDays(1).atStartOfDay().plusMinutes(30 * siguienteTurno[i].getAndIncrement());
+        Cita cita = new Cita();
+        // Cliente ya registrado: el benchmark mide la reserva, no el alta de clientes
+        cita.setCliente(new Cliente(1L, "1000", "3000000000", "Cliente"));
+        cita.setEmpleado(plantilla[i]);
+        cita.setFechaHoraInicio(inicio);
+        cita.setFechaHoraFin(inicio.plusMinutes(30));
+        cita.setEstado("programada");
+        return cita;
+    }
+
+    private Cita asignarId(Cita cita) {
+        cita.setId(secuencia.incrementAndGet());
+        return cita;
+    }
+
+    private void latencia() {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(latenciaMicros));
+    }
+
+    /**
+     * Transacción que ocupa una conexión del pool y paga un viaje a la base de datos al confirmar
+     */
+    private class TransaccionSimulada implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definicion) {
+            conexiones.acquireUninterruptibly();
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus estado) {
+            try {
+                latencia();
+            } finally {
+                conexiones.release();
+            }
+        }
+
+        @Override
+        public void rollback(TransactionStatus estado) {
+            conexiones.release();
+        }
+    }
+}
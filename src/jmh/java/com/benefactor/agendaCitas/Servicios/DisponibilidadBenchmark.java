@@ -0,0 +1,87 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.benefactor.agendaCitas.DTO.RangoCitaDTO;
+import com.benefactor.agendaCitas.DatosSinteticos;
+import com.benefactor.agendaCitas.Repository.CitaRepository;
+import com.benefactor.agendaCitas.Repository.DiaEspecialRepository;
+import com.benefactor.agendaCitas.Repository.HorarioLaboralRepository;
+import com.benefactor.agendaCitas.Repository.ServicioRepository;
+import com.benefactor.agendaCitas.model.Empleado;
+import com.benefactor.agendaCitas.model.HorarioLaboral;
+import com.benefactor.agendaCitas.model.Servicio;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark del cálculo de horarios disponibles de CitaService.obtenerHorariosDisponibles
+ *
+ * <p>"obtenerHorariosDisponibles" ejecuta el método real sin la caché, con repositorios en memoria,
+ * de modo que incluye la resta de días especiales y la proyección de rangos. "motor" mide solo
+ * la fusión y el recorrido de MotorDisponibilidad sobre datos ya cargados.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DisponibilidadBenchmark {
+
+    private static final Long EMPLEADO_ID = 1L;
+    private static final Long SERVICIO_ID = 1L;
+
+    @Param({"1", "2", "3"})
+    private int turnos;
+
+    @Param({"0", "10", "40"})
+    private int citasPorDia;
+
+    @Param({"15", "60", "240"})
+    private int duracionMinutos;
+
+    private CitaService citaService;
+    private List<HorarioLaboral> horarios;
+    private List<RangoCitaDTO> rangos;
+
+    @Setup
+    public void preparar() {
+        Empleado empleado = DatosSinteticos.empleado(EMPLEADO_ID);
+        horarios = DatosSinteticos.turnos(empleado, turnos);
+        rangos = DatosSinteticos.rangos(DatosSinteticos.citas(empleado, horarios, citasPorDia, 42L));
+
+        Servicio servicio = new Servicio();
+        servicio.setId(SERVICIO_ID);
+        servicio.setDuracionMinutos(duracionMinutos);
+
+        IndiceDiasEspeciales indiceDiasEspeciales = new IndiceDiasEspeciales();
+        DatosSinteticos.inyectar(indiceDiasEspeciales, "diaEspecialRepository", DatosSinteticos.repositorio(
+                DiaEspecialRepository.class, Map.of("findByFechaBetween", args -> List.of())));
+
+        citaService = new CitaService();
+        DatosSinteticos.inyectar(citaService, "servicioRepository", DatosSinteticos.repositorio(
+                ServicioRepository.class, Map.of("findById", args -> Optional.of(servicio))));
+        DatosSinteticos.inyectar(citaService, "horarioLaboralRepository", DatosSinteticos.repositorio(
+                HorarioLaboralRepository.class, Map.of("findByEmpleadoIdAndDiaSemanaAndActivoTrue", args -> horarios)));
+        DatosSinteticos.inyectar(citaService, "citaRepository", DatosSinteticos.repositorio(
+                CitaRepository.class, Map.of("findRangosEnIntervalo", args -> rangos)));
+        DatosSinteticos.inyectar(citaService, "indiceDiasEspeciales", indiceDiasEspeciales);
+        DatosSinteticos.inyectar(citaService, "reservasTemporales", new ReservasTemporales(new SimpleMeterRegistry(), 5, 1000));
+    }
+
+    @Benchmark
+    public List<LocalTime> obtenerHorariosDisponibles() {
+        return citaService.calcularHorariosDisponibles(EMPLEADO_ID, DatosSinteticos.FECHA, SERVICIO_ID);
+    }
+
+    @Benchmark
+    public List<LocalTime> motor() {
+        long[] ocupados = MotorDisponibilidad.fusionarOcupados(DatosSinteticos.FECHA, rangos);
+        return MotorDisponibilidad.calcularHorariosLibres(horarios, ocupados, duracionMinutos);
+    }
+}
@@ -1,5 +1,8 @@
 package com.benefactor.agendaCitas.Config;
 
+import com.benefactor.agendaCitas.Servicios.HorarioOcupadoException;
+import com.benefactor.agendaCitas.Servicios.ReservaEnEsperaException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -15,6 +18,28 @@ import java.util.Map;
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    /**
+     * Maneja los conflictos de horario (cita solapada con otra del mismo empleado)
+     *
+     * @param e Excepción HorarioOcupadoException capturada
+     * @return ResponseEntity con código 409 Conflict y mensaje de error
+     */
+    @ExceptionHandler(HorarioOcupadoException.class)
+    public ResponseEntity<?> handleHorarioOcupadoException(HorarioOcupadoException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+    }
+
+    /**
+     * Maneja las reservas que la cola por empleado no pudo atender a tiempo
+     *
+     * @param e Excepción ReservaEnEsperaException capturada
+     * @return ResponseEntity con código 503 Service Unavailable y mensaje de error
+     */
+    @ExceptionHandler(ReservaEnEsperaException.class)
+    public ResponseEntity<?> handleReservaEnEsperaException(ReservaEnEsperaException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+    }
+
     /**
      * Maneja excepciones de tipo RuntimeException
      * Incluye la mayoría de excepciones de negocio y validación
@@ -1,9 +1,13 @@
 package com.benefactor.agendaCitas.Controller;
 
 import com.benefactor.agendaCitas.Servicios.AuthService;
+import com.benefactor.agendaCitas.Servicios.ImportacionCitasService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
 
 /**
@@ -21,6 +25,9 @@ public class AdminController {
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private ImportacionCitasService importacionCitasService;
+
     /**
      * Endpoint para obtener datos del dashboard administrativo
      * Proporciona estadísticas generales del sistema para visualización
@@ -51,4 +58,30 @@ public class AdminController {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
+
+    /**
+     * Endpoint para importar masivamente citas desde un archivo CSV (migración desde otra agenda)
+     * Las filas con datos inválidos o que se solapan con otras citas se reportan sin impedir importar las demás
+     *
+     * @param sessionId Cookie de sesión para validar autenticación
+     * @param archivo Archivo CSV con encabezado (ver ImportacionCitasService)
+     * @return ResponseEntity con el resumen de la importación y las filas rechazadas, o error
+     */
+    @PostMapping("/citas/importar")
+    public ResponseEntity<?> importarCitas(
+            @CookieValue(value = "sessionId", required = false) String sessionId,
+            @RequestParam("archivo") MultipartFile archivo) {
+        try {
+            // Validar sesión del usuario
+            if (!authService.validarSesion(sessionId)) {
+                return ResponseEntity.status(401).body(Map.of("error", "No autorizado"));
+            }
+
+            try (InputStream contenido = archivo.getInputStream()) {
+                return ResponseEntity.ok(importacionCitasService.importar(contenido));
+            }
+        } catch (IOException | RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
 }
\ No newline at end of file
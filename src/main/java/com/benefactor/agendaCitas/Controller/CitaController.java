@@ -1,14 +1,30 @@
 package com.benefactor.agendaCitas.Controller;
 
 import com.benefactor.agendaCitas.model.Cita;
+import com.benefactor.agendaCitas.DTO.CambioEstadoLoteRequest;
+import com.benefactor.agendaCitas.DTO.CandidatoHorarioDTO;
 import com.benefactor.agendaCitas.DTO.CitaRequest;
+import com.benefactor.agendaCitas.DTO.ComboCitasRequest;
 import com.benefactor.agendaCitas.DTO.DisponibilidadRequest;
+import com.benefactor.agendaCitas.DTO.HorarioLibreDTO;
+import com.benefactor.agendaCitas.DTO.SerieCitasRequest;
+import com.benefactor.agendaCitas.DTO.VeredictoHorarioDTO;
 import com.benefactor.agendaCitas.Servicios.CitaService;
+import com.benefactor.agendaCitas.Servicios.DisponibilidadService;
+import com.benefactor.agendaCitas.Servicios.HorarioOcupadoException;
+import com.benefactor.agendaCitas.Servicios.NotificadorHorarios;
+import com.benefactor.agendaCitas.Servicios.RegistroIdempotencia;
+import com.benefactor.agendaCitas.Servicios.ReservaEnEsperaException;
+import com.benefactor.agendaCitas.Servicios.ReservaHorario;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.Map;
 
@@ -23,9 +39,21 @@ import java.util.Map;
 @RequestMapping("/api/citas")
 public class CitaController {
 
+    private static final String MENSAJE_CITA_MODIFICADA =
+            "La cita fue modificada por otra persona; recargue la información e intente de nuevo";
+
     @Autowired
     private CitaService citaService;
 
+    @Autowired
+    private DisponibilidadService disponibilidadService;
+
+    @Autowired
+    private NotificadorHorarios notificadorHorarios;
+
+    @Autowired
+    private RegistroIdempotencia registroIdempotencia;
+
     /**
      * Endpoint para obtener todas las citas del sistema
      *
@@ -58,18 +86,309 @@ public class CitaController {
         }
     }
 
+    /**
+     * Endpoint para verificar varios horarios candidatos en una sola solicitud
+     * Pensado para la pantalla de sugerencias, que antes hacía una solicitud por alternativa
+     *
+     * @param candidatos Lista de horarios candidatos (empleadoId, servicioId, fechaHoraInicio)
+     * @return ResponseEntity con un veredicto por candidato en el mismo orden, o error
+     */
+    @PostMapping("/verificar-disponibilidad-lote")
+    public ResponseEntity<?> verificarDisponibilidadLote(@RequestBody List<CandidatoHorarioDTO> candidatos) {
+        try {
+            List<VeredictoHorarioDTO> resultados = disponibilidadService.verificarLote(candidatos);
+            return ResponseEntity.ok(Map.of("resultados", resultados));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para buscar los primeros horarios libres de un servicio con cualquier empleado
+     * Pensado para clientes a quienes no les importa qué empleado los atiende
+     *
+     * @param servicioId ID del servicio a agendar
+     * @param fecha Primer día de la búsqueda
+     * @param fechaFin Último día de la búsqueda (opcional, por defecto el mismo día)
+     * @param limite Cantidad máxima de horarios a retornar (por defecto 5)
+     * @return ResponseEntity con los horarios libres ordenados o error
+     */
+    @GetMapping("/primeros-disponibles")
+    public ResponseEntity<?> buscarPrimerosDisponibles(
+            @RequestParam Long servicioId,
+            @RequestParam LocalDate fecha,
+            @RequestParam(required = false) LocalDate fechaFin,
+            @RequestParam(defaultValue = "5") int limite) {
+        try {
+            List<HorarioLibreDTO> horarios = disponibilidadService.buscarPrimerosDisponibles(
+                    servicioId, fecha, fechaFin != null ? fechaFin : fecha, limite);
+            return ResponseEntity.ok(Map.of("horarios", horarios));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para obtener el resumen mensual de disponibilidad de un servicio
+     * Indica con un bit por día si existe al menos un horario libre, para pintar el calendario de reservas
+     *
+     * @param servicioId ID del servicio a agendar
+     * @param mes Mes a consultar en formato yyyy-MM
+     * @param empleadoId ID de un empleado específico (opcional, por defecto todos los activos)
+     * @param porEmpleado Si es true incluye la máscara de días de cada empleado
+     * @return ResponseEntity con la máscara de días disponibles o error
+     */
+    @GetMapping("/disponibilidad-mensual")
+    public ResponseEntity<?> obtenerDisponibilidadMensual(
+            @RequestParam Long servicioId,
+            @RequestParam YearMonth mes,
+            @RequestParam(required = false) Long empleadoId,
+            @RequestParam(defaultValue = "false") boolean porEmpleado) {
+        try {
+            return ResponseEntity.ok(disponibilidadService.calcularResumenMensual(servicioId, mes, empleadoId, porEmpleado));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para obtener el próximo horario libre de un empleado para un servicio
+     * Evita que el cliente tenga que probar día por día contra verificar-disponibilidad
+     *
+     * @param servicioId ID del servicio a agendar
+     * @param empleadoId ID del empleado
+     * @return ResponseEntity con el próximo horario libre, indicación de que no hay, o error
+     */
+    @GetMapping("/proxima-disponibilidad")
+    public ResponseEntity<?> obtenerProximaDisponibilidad(
+            @RequestParam Long servicioId,
+            @RequestParam Long empleadoId) {
+        try {
+            return disponibilidadService.buscarProximaDisponibilidad(servicioId, empleadoId)
+                    .<ResponseEntity<?>>map(horario -> ResponseEntity.ok(Map.of("disponible", true, "horario", horario)))
+                    .orElseGet(() -> ResponseEntity.ok(Map.of(
+                            "disponible", false,
+                            "mensaje", "El empleado no tiene horarios disponibles en los próximos días")));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para suscribirse por Server-Sent Events a los cambios de horarios de un empleado en un día
+     * Cada vez que una cita de ese día se crea, cambia de estado, se cancela o se elimina,
+     * el cliente recibe un evento "cambio-horario" con el rango afectado y si quedó ocupado
+     *
+     * @param empleadoId ID del empleado
+     * @param fecha Día a observar
+     * @return Flujo de eventos SSE o error si no se admiten más suscriptores
+     */
+    @GetMapping("/eventos")
+    public ResponseEntity<?> suscribirCambiosHorario(
+            @RequestParam Long empleadoId,
+            @RequestParam LocalDate fecha) {
+        try {
+            SseEmitter emitter = notificadorHorarios.suscribir(empleadoId, fecha);
+            return ResponseEntity.ok(emitter);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * Endpoint para crear una nueva cita
      * Valida disponibilidad y crea la cita en el sistema
+     * Con el encabezado Idempotency-Key los reintentos de la misma solicitud reciben la respuesta
+     * de la primera ejecución sin volver a procesarla
      *
+     * @param claveIdempotencia Clave única generada por el cliente para la solicitud (opcional)
      * @param citaRequest Objeto con los datos de la cita a crear
-     * @return ResponseEntity con la cita creada o error de validación
+     * @return ResponseEntity con la cita creada, 409 si el horario ya está ocupado, 422 si la clave
+     *         ya se usó con otros datos, o error de validación
      */
     @PostMapping
-    public ResponseEntity<?> crearCita(@RequestBody CitaRequest citaRequest) {
+    public ResponseEntity<?> crearCita(
+            @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia,
+            @RequestBody CitaRequest citaRequest) {
+        if (claveIdempotencia == null || claveIdempotencia.isBlank()) {
+            return procesarCreacion(citaRequest);
+        }
+        if (claveIdempotencia.length() > RegistroIdempotencia.LONGITUD_MAXIMA_CLAVE) {
+            return ResponseEntity.badRequest().body(Map.of("error", "La clave de idempotencia es demasiado larga"));
+        }
+        String huella = citaRequest.getEmpleadoId() + "|" + citaRequest.getServicioId() + "|" +
+                citaRequest.getFechaHoraInicio() + "|" + citaRequest.getClienteDocumento() + "|" +
+                citaRequest.getClienteCelular() + "|" + citaRequest.getClienteNombre() + "|" + citaRequest.getEstado();
+        return registroIdempotencia.ejecutar(claveIdempotencia, huella, () -> procesarCreacion(citaRequest));
+    }
+
+    /**
+     * Crea la cita y traduce los errores a la respuesta correspondiente
+     */
+    private ResponseEntity<?> procesarCreacion(CitaRequest citaRequest) {
         try {
             Cita cita = citaService.crearCita(citaRequest);
             return ResponseEntity.ok(cita);
+        } catch (HorarioOcupadoException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (ReservaEnEsperaException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para reservar temporalmente un horario mientras el cliente completa sus datos
+     * Durante la reserva ningún otro cliente puede agendar ni reservar ese horario
+     *
+     * @param candidato Empleado, servicio e inicio del horario elegido
+     * @return ResponseEntity con el ID de la reserva y su vencimiento, 409 si el horario ya está ocupado o error
+     */
+    @PostMapping("/reservas")
+    public ResponseEntity<?> reservarHorario(@RequestBody CandidatoHorarioDTO candidato) {
+        try {
+            ReservaHorario reserva = citaService.reservarHorario(candidato);
+            return ResponseEntity.ok(Map.of(
+                    "reservaId", reserva.getId(),
+                    "empleadoId", reserva.getEmpleadoId(),
+                    "servicioId", reserva.getServicioId(),
+                    "fechaHoraInicio", reserva.getFechaHoraInicio(),
+                    "fechaHoraFin", reserva.getFechaHoraFin(),
+                    "expira", reserva.getExpira()));
+        } catch (HorarioOcupadoException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para convertir una reserva temporal en cita con los datos del cliente
+     *
+     * @param reservaId ID de la reserva
+     * @param datosCliente Datos del cliente (nombre, documento y celular)
+     * @return ResponseEntity con la cita creada, 409 si el horario quedó ocupado o error si la reserva venció
+     */
+    @PostMapping("/reservas/{reservaId}/confirmar")
+    public ResponseEntity<?> confirmarReserva(@PathVariable String reservaId, @RequestBody CitaRequest datosCliente) {
+        try {
+            return ResponseEntity.ok(citaService.confirmarReserva(reservaId, datosCliente));
+        } catch (HorarioOcupadoException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (ReservaEnEsperaException e) {
+            return ResponseEntity.status(503).body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para liberar una reserva temporal antes de su vencimiento
+     *
+     * @param reservaId ID de la reserva
+     * @return ResponseEntity confirmando la liberación o error
+     */
+    @DeleteMapping("/reservas/{reservaId}")
+    public ResponseEntity<?> liberarReserva(@PathVariable String reservaId) {
+        try {
+            citaService.liberarReserva(reservaId);
+            return ResponseEntity.ok().body(Map.of("mensaje", "Reserva liberada correctamente"));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para crear una serie de citas recurrentes (semanal, quincenal...)
+     * Las ocurrencias que no se pueden agendar se reportan con su motivo sin impedir crear las demás
+     *
+     * @param request Datos del cliente, empleado, servicio, primera cita y recurrencia
+     * @return ResponseEntity con las citas creadas y las rechazadas, 409 si otra reserva ocupó un horario
+     *         mientras se guardaba la serie, o error de validación
+     */
+    @PostMapping("/serie")
+    public ResponseEntity<?> crearSerie(@RequestBody SerieCitasRequest request) {
+        try {
+            return ResponseEntity.ok(citaService.crearSerie(request));
+        } catch (HorarioOcupadoException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para consultar los horarios de inicio de un combo de servicios seguidos en una fecha
+     *
+     * @param request Fecha, empleado general y servicios del combo en orden
+     * @return ResponseEntity con los horarios de inicio del primer servicio o error
+     */
+    @PostMapping("/combo/horarios")
+    public ResponseEntity<?> obtenerHorariosCombo(@RequestBody ComboCitasRequest request) {
+        try {
+            return ResponseEntity.ok(citaService.obtenerHorariosCombo(request));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para agendar un combo de servicios seguidos (por ejemplo corte, color y secado)
+     * Se crean todas las citas o ninguna
+     *
+     * @param request Datos del cliente, inicio del primer servicio y servicios del combo en orden
+     * @return ResponseEntity con las citas creadas, 409 si algún tramo está ocupado, o error de validación
+     */
+    @PostMapping("/combo")
+    public ResponseEntity<?> crearCombo(@RequestBody ComboCitasRequest request) {
+        try {
+            return ResponseEntity.ok(citaService.crearCombo(request));
+        } catch (HorarioOcupadoException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para mover una cita programada a otro horario del mismo empleado
+     * Actualiza la misma cita en una sola operación, sin liberar su horario actual mientras tanto
+     *
+     * @param id ID de la cita a reprogramar
+     * @param request Mapa con la nueva fechaHoraInicio (ISO, por ejemplo 2025-03-10T09:30:00)
+     * @return ResponseEntity con la cita reprogramada, 409 si el nuevo horario está ocupado, o error
+     */
+    @PutMapping("/{id}/reprogramar")
+    public ResponseEntity<?> reprogramarCita(
+            @PathVariable Long id,
+            @RequestBody Map<String, String> request) {
+        try {
+            String nuevoInicio = request.get("fechaHoraInicio");
+            Cita cita = citaService.reprogramarCita(id, nuevoInicio != null ? LocalDateTime.parse(nuevoInicio) : null);
+            return ResponseEntity.ok(cita);
+        } catch (HorarioOcupadoException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(409).body(Map.of("error", MENSAJE_CITA_MODIFICADA));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para cambiar el estado de varias citas a la vez (por ejemplo, marcar cumplidas al final del día)
+     * Las citas modificadas por otra persona desde que se leyeron no se cambian y se devuelven como conflictos
+     *
+     * @param request Nuevo estado y citas con su versión, o empleadoId y fecha para todas sus citas programadas
+     * @return ResponseEntity con las citas actualizadas y los conflictos, 409 si alguna se solaparía, o error
+     */
+    @PutMapping("/estado")
+    public ResponseEntity<?> actualizarEstadoLote(@RequestBody CambioEstadoLoteRequest request) {
+        try {
+            return ResponseEntity.ok(citaService.actualizarEstadoLote(request));
+        } catch (HorarioOcupadoException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -80,7 +399,7 @@ public class CitaController {
      * Permite cambiar estados como: programada, cumplida, cancelada
      *
      * @param id ID de la cita a actualizar
-     * @param request Mapa con el nuevo estado a asignar
+     * @param request Mapa con el nuevo estado a asignar y, opcionalmente, la versión de la cita que se leyó
      * @return ResponseEntity con la cita actualizada o error
      */
     @PutMapping("/{id}/estado")
@@ -89,8 +408,13 @@ public class CitaController {
             @RequestBody Map<String, String> request) {
         try {
             String nuevoEstado = request.get("estado");
-            Cita cita = citaService.actualizarEstadoCita(id, nuevoEstado);
+            String version = request.get("version");
+            Cita cita = citaService.actualizarEstadoCita(id, nuevoEstado, version != null ? Long.valueOf(version) : null);
             return ResponseEntity.ok(cita);
+        } catch (HorarioOcupadoException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(409).body(Map.of("error", MENSAJE_CITA_MODIFICADA));
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -4,6 +4,7 @@ package com.benefactor.agendaCitas.Controller;
 import com.benefactor.agendaCitas.DTO.ConsultarCitasRequest;
 import com.benefactor.agendaCitas.Servicios.CitaPublicaService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -13,6 +14,9 @@ import java.util.Map;
 @RequestMapping("/api/public/citas")
 public class CitaPublicaController {
 
+    private static final String MENSAJE_CITA_MODIFICADA =
+            "La cita fue modificada mientras se cancelaba; consulte sus citas e intente de nuevo";
+
     @Autowired
     private CitaPublicaService citaPublicaService;
 
@@ -42,6 +46,19 @@ public class CitaPublicaController {
         }
     }
 
+    @PostMapping("/consultar")
+    public ResponseEntity<?> consultarCliente(@RequestBody ConsultarCitasRequest request) {
+        try {
+            var resultado = citaPublicaService.consultarCliente(
+                    request.getDocumento(),
+                    request.getCelular()
+            );
+            return ResponseEntity.ok(resultado);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PostMapping("/{citaId}/cancelar")
     public ResponseEntity<?> cancelarCita(
             @PathVariable Long citaId,
@@ -53,6 +70,8 @@ public class CitaPublicaController {
                     request.getCelular()
             );
             return ResponseEntity.ok(resultado);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(409).body(Map.of("error", MENSAJE_CITA_MODIFICADA));
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -4,10 +4,14 @@ import com.benefactor.agendaCitas.DTO.EmpleadoDTO;
 import com.benefactor.agendaCitas.Repository.CitaRepository;
 import com.benefactor.agendaCitas.Repository.HorarioLaboralRepository;
 import com.benefactor.agendaCitas.model.Cita;
+import com.benefactor.agendaCitas.model.DiaEspecial;
 import com.benefactor.agendaCitas.model.Empleado;
 import com.benefactor.agendaCitas.model.HorarioLaboral;
 import com.benefactor.agendaCitas.Servicios.AuthService;
+import com.benefactor.agendaCitas.Servicios.CacheDisponibilidad;
 import com.benefactor.agendaCitas.Servicios.EmpleadoService;
+import com.benefactor.agendaCitas.Servicios.IndiceDiasEspeciales;
+import com.benefactor.agendaCitas.Servicios.ReservasTemporales;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -45,6 +49,15 @@ public class EmpleadoController {
     @Autowired
     private CitaRepository citaRepository;
 
+    @Autowired
+    private CacheDisponibilidad cacheDisponibilidad;
+
+    @Autowired
+    private IndiceDiasEspeciales indiceDiasEspeciales;
+
+    @Autowired
+    private ReservasTemporales reservasTemporales;
+
     // ========== ENDPOINTS PÚBLICOS (SIN AUTENTICACIÓN) ==========
 
     /**
@@ -130,64 +143,82 @@ public class EmpleadoController {
             @PathVariable Long empleadoId,
             @RequestParam LocalDate fecha) {
         try {
-            // Obtener horario laboral del empleado para el día específico
-            int diaSemana = fecha.getDayOfWeek().getValue();
-            List<HorarioLaboral> horariosLaborales = horarioLaboralRepository
-                    .findByEmpleadoIdAndDiaSemanaAndActivoTrue(empleadoId, diaSemana);
-
-            // Verificar si el empleado trabaja ese día
-            if (horariosLaborales.isEmpty()) {
-                return ResponseEntity.ok(Map.of(
-                        "empleadoId", empleadoId,
-                        "fecha", fecha,
-                        "disponible", false,
-                        "mensaje", "El empleado no trabaja este día"
-                ));
-            }
+            // El cálculo se reutiliza desde la caché hasta que cambie una cita u horario de ese día
+            Map<String, Object> disponibilidad = cacheDisponibilidad.obtener(empleadoId, fecha,
+                    CacheDisponibilidad.SIN_SERVICIO, () -> calcularDisponibilidadHoraria(empleadoId, fecha));
+            return ResponseEntity.ok(disponibilidad);
 
-            // Obtener citas existentes para el día especificado
-            LocalDateTime inicioDia = fecha.atStartOfDay();
-            LocalDateTime finDia = fecha.atTime(LocalTime.MAX);
-            List<Cita> citasDelDia = citaRepository.findByEmpleadoIdAndFechaHoraInicioBetween(
-                    empleadoId, inicioDia, finDia);
-
-            // Generar franjas horarias de 30 minutos
-            List<Map<String, Object>> franjasHorarias = new ArrayList<>();
-            LocalTime horaActual = horariosLaborales.get(0).getHoraInicio();
-            LocalTime horaFin = horariosLaborales.get(0).getHoraFin();
-
-            while (horaActual.isBefore(horaFin)) {
-                LocalDateTime inicioFranja = fecha.atTime(horaActual);
-                LocalDateTime finFranja = inicioFranja.plusMinutes(30);
-
-                // Verificar si la franja horaria está disponible (sin citas conflictivas)
-                boolean disponible = citasDelDia.stream().noneMatch(cita ->
-                        !(finFranja.isBefore(cita.getFechaHoraInicio()) ||
-                                inicioFranja.isAfter(cita.getFechaHoraFin()))
-                );
-
-                franjasHorarias.add(Map.of(
-                        "hora", horaActual.toString(),
-                        "disponible", disponible,
-                        "horaFin", horaActual.plusMinutes(30).toString()
-                ));
-
-                horaActual = horaActual.plusMinutes(30);
-            }
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
 
-            return ResponseEntity.ok(Map.of(
+    /**
+     * Calcula las franjas horarias de 30 minutos de un empleado para un día y si están libres
+     * Visible en el paquete para que los benchmarks JMH (src/jmh) lo midan sin pasar por la caché
+     *
+     * @param empleadoId ID del empleado
+     * @param fecha Fecha específica para verificar disponibilidad
+     * @return Mapa inmutable con el horario laboral y las franjas horarias del día
+     */
+    Map<String, Object> calcularDisponibilidadHoraria(Long empleadoId, LocalDate fecha) {
+        // Obtener horario laboral del empleado para el día específico
+        int diaSemana = fecha.getDayOfWeek().getValue();
+        List<HorarioLaboral> horariosLaborales = horarioLaboralRepository
+                .findByEmpleadoIdAndDiaSemanaAndActivoTrue(empleadoId, diaSemana);
+
+        // Verificar si el empleado trabaja ese día
+        if (horariosLaborales.isEmpty()) {
+            return Map.of(
                     "empleadoId", empleadoId,
-                    "fecha", fecha.toString(),
-                    "horarioLaboral", Map.of(
-                            "horaInicio", horariosLaborales.get(0).getHoraInicio().toString(),
-                            "horaFin", horariosLaborales.get(0).getHoraFin().toString()
-                    ),
-                    "franjasHorarias", franjasHorarias
+                    "fecha", fecha,
+                    "disponible", false,
+                    "mensaje", "El empleado no trabaja este día"
+            );
+        }
+
+        // Obtener citas existentes para el día especificado
+        LocalDateTime inicioDia = fecha.atStartOfDay();
+        LocalDateTime finDia = fecha.atTime(LocalTime.MAX);
+        List<Cita> citasDelDia = citaRepository.findByEmpleadoIdAndFechaHoraInicioBetween(
+                empleadoId, inicioDia, finDia);
+
+        // Generar franjas horarias de 30 minutos
+        List<Map<String, Object>> franjasHorarias = new ArrayList<>();
+        LocalTime horaActual = horariosLaborales.get(0).getHoraInicio();
+        LocalTime horaFin = horariosLaborales.get(0).getHoraFin();
+
+        while (horaActual.isBefore(horaFin)) {
+            LocalDateTime inicioFranja = fecha.atTime(horaActual);
+            LocalDateTime finFranja = inicioFranja.plusMinutes(30);
+
+            // Verificar si la franja horaria está disponible (sin citas activas, reservas temporales ni días especiales)
+            boolean disponible = !indiceDiasEspeciales.bloquea(empleadoId, inicioFranja, finFranja) &&
+                    !reservasTemporales.bloquea(empleadoId, inicioFranja, finFranja, null) &&
+                    citasDelDia.stream().noneMatch(cita ->
+                            Cita.ocupaHorario(cita.getEstado()) &&
+                                    cita.getFechaHoraInicio().isBefore(finFranja) &&
+                                    cita.getFechaHoraFin().isAfter(inicioFranja)
+                    );
+
+            franjasHorarias.add(Map.of(
+                    "hora", horaActual.toString(),
+                    "disponible", disponible,
+                    "horaFin", horaActual.plusMinutes(30).toString()
             ));
 
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            horaActual = horaActual.plusMinutes(30);
         }
+
+        return Map.of(
+                "empleadoId", empleadoId,
+                "fecha", fecha.toString(),
+                "horarioLaboral", Map.of(
+                        "horaInicio", horariosLaborales.get(0).getHoraInicio().toString(),
+                        "horaFin", horariosLaborales.get(0).getHoraFin().toString()
+                ),
+                "franjasHorarias", List.copyOf(franjasHorarias)
+        );
     }
 
     // ========== ENDPOINTS DE ADMINISTRADOR (REQUIEREN AUTENTICACIÓN) ==========
@@ -415,6 +446,71 @@ public class EmpleadoController {
         }
     }
 
+    /**
+     * Endpoint para obtener los días especiales (festivos, vacaciones, permisos) de un empleado desde hoy
+     *
+     * @param id ID del empleado
+     * @return ResponseEntity con la lista de días especiales
+     */
+    @GetMapping("/{id}/dias-especiales")
+    public ResponseEntity<List<DiaEspecial>> obtenerDiasEspeciales(@PathVariable Long id) {
+        return ResponseEntity.ok(empleadoService.obtenerDiasEspeciales(id));
+    }
+
+    /**
+     * Endpoint para registrar un festivo, vacaciones, permiso o incapacidad de un empleado
+     * Requiere autenticación mediante cookie de sesión
+     *
+     * @param id ID del empleado
+     * @param diaEspecial Día especial a registrar
+     * @param sessionId Cookie de sesión para validar autenticación
+     * @return ResponseEntity con el día especial creado o error de validación
+     */
+    @PostMapping("/{id}/dias-especiales")
+    public ResponseEntity<?> agregarDiaEspecial(
+            @PathVariable Long id,
+            @RequestBody DiaEspecial diaEspecial,
+            @CookieValue(value = "sessionId", required = false) String sessionId) {
+
+        try {
+            // Validar sesión del usuario
+            if (!authService.validarSesion(sessionId)) {
+                return ResponseEntity.status(401).body(Map.of("error", "No autorizado"));
+            }
+
+            DiaEspecial nuevoDia = empleadoService.agregarDiaEspecial(id, diaEspecial);
+            return ResponseEntity.ok(nuevoDia);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para eliminar un día especial
+     * Requiere autenticación mediante cookie de sesión
+     *
+     * @param diaEspecialId ID del día especial a eliminar
+     * @param sessionId Cookie de sesión para validar autenticación
+     * @return ResponseEntity confirmando eliminación o error
+     */
+    @DeleteMapping("/dias-especiales/{diaEspecialId}")
+    public ResponseEntity<?> eliminarDiaEspecial(
+            @PathVariable Long diaEspecialId,
+            @CookieValue(value = "sessionId", required = false) String sessionId) {
+
+        try {
+            // Validar sesión del usuario
+            if (!authService.validarSesion(sessionId)) {
+                return ResponseEntity.status(401).body(Map.of("error", "No autorizado"));
+            }
+
+            empleadoService.eliminarDiaEspecial(diaEspecialId);
+            return ResponseEntity.ok().body(Map.of("mensaje", "Día especial eliminado correctamente"));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * Endpoint para verificar si un empleado trabaja en un día específico de la semana
      *
@@ -0,0 +1,33 @@
+package com.benefactor.agendaCitas.DTO;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DTO para cambiar el estado de varias citas en una sola operación
+ * Se indican las citas con la versión leída (citas) o, en su lugar, un empleado y una fecha para
+ * cambiar todas sus citas programadas de ese día
+ */
+public class CambioEstadoLoteRequest {
+
+    private String estado;
+    private List<VersionCitaDTO> citas;
+    private Long empleadoId;
+    private LocalDate fecha;
+
+    // Constructores
+    public CambioEstadoLoteRequest() {}
+
+    // Getters y Setters
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+
+    public List<VersionCitaDTO> getCitas() { return citas; }
+    public void setCitas(List<VersionCitaDTO> citas) { this.citas = citas; }
+
+    public Long getEmpleadoId() { return empleadoId; }
+    public void setEmpleadoId(Long empleadoId) { this.empleadoId = empleadoId; }
+
+    public LocalDate getFecha() { return fecha; }
+    public void setFecha(LocalDate fecha) { this.fecha = fecha; }
+}
@@ -0,0 +1,33 @@
+package com.benefactor.agendaCitas.DTO;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO para un horario candidato (empleado, servicio e inicio) a verificar dentro de una consulta por lote
+ * Se utiliza en la verificación de disponibilidad de varias alternativas en una sola solicitud
+ */
+public class CandidatoHorarioDTO {
+
+    private Long empleadoId;
+    private Long servicioId;
+    private LocalDateTime fechaHoraInicio;
+
+    // Constructores
+    public CandidatoHorarioDTO() {}
+
+    public CandidatoHorarioDTO(Long empleadoId, Long servicioId, LocalDateTime fechaHoraInicio) {
+        this.empleadoId = empleadoId;
+        this.servicioId = servicioId;
+        this.fechaHoraInicio = fechaHoraInicio;
+    }
+
+    // Getters y Setters
+    public Long getEmpleadoId() { return empleadoId; }
+    public void setEmpleadoId(Long empleadoId) { this.empleadoId = empleadoId; }
+
+    public Long getServicioId() { return servicioId; }
+    public void setServicioId(Long servicioId) { this.servicioId = servicioId; }
+
+    public LocalDateTime getFechaHoraInicio() { return fechaHoraInicio; }
+    public void setFechaHoraInicio(LocalDateTime fechaHoraInicio) { this.fechaHoraInicio = fechaHoraInicio; }
+}
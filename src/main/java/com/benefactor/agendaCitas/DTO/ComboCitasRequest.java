@@ -0,0 +1,51 @@
+package com.benefactor.agendaCitas.DTO;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO para reservar varios servicios seguidos (por ejemplo corte, color y secado)
+ * Cada servicio inicia cuando termina el anterior, en el orden de la lista
+ * Para consultar horarios se usa fecha; para agendar, fechaHoraInicio del primer servicio
+ */
+public class ComboCitasRequest {
+
+    private String clienteNombre;
+    private String clienteDocumento;
+    private String clienteCelular;
+
+    /**
+     * Empleado que atiende los servicios que no indican uno propio
+     */
+    private Long empleadoId;
+
+    private LocalDate fecha;
+    private LocalDateTime fechaHoraInicio;
+    private List<PasoComboDTO> servicios;
+
+    // Constructores
+    public ComboCitasRequest() {}
+
+    // Getters y Setters
+    public String getClienteNombre() { return clienteNombre; }
+    public void setClienteNombre(String clienteNombre) { this.clienteNombre = clienteNombre; }
+
+    public String getClienteDocumento() { return clienteDocumento; }
+    public void setClienteDocumento(String clienteDocumento) { this.clienteDocumento = clienteDocumento; }
+
+    public String getClienteCelular() { return clienteCelular; }
+    public void setClienteCelular(String clienteCelular) { this.clienteCelular = clienteCelular; }
+
+    public Long getEmpleadoId() { return empleadoId; }
+    public void setEmpleadoId(Long empleadoId) { this.empleadoId = empleadoId; }
+
+    public LocalDate getFecha() { return fecha; }
+    public void setFecha(LocalDate fecha) { this.fecha = fecha; }
+
+    public LocalDateTime getFechaHoraInicio() { return fechaHoraInicio; }
+    public void setFechaHoraInicio(LocalDateTime fechaHoraInicio) { this.fechaHoraInicio = fechaHoraInicio; }
+
+    public List<PasoComboDTO> getServicios() { return servicios; }
+    public void setServicios(List<PasoComboDTO> servicios) { this.servicios = servicios; }
+}
@@ -0,0 +1,39 @@
+package com.benefactor.agendaCitas.DTO;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO para representar un horario libre de un empleado en el que cabe un servicio
+ * Se utiliza en las búsquedas de disponibilidad que combinan varios empleados o varios días
+ */
+public class HorarioLibreDTO {
+
+    private Long empleadoId;
+    private String empleadoNombre;
+    private LocalDateTime fechaHoraInicio;
+    private LocalDateTime fechaHoraFin;
+
+    // Constructores
+    public HorarioLibreDTO() {}
+
+    public HorarioLibreDTO(Long empleadoId, String empleadoNombre,
+                           LocalDateTime fechaHoraInicio, LocalDateTime fechaHoraFin) {
+        this.empleadoId = empleadoId;
+        this.empleadoNombre = empleadoNombre;
+        this.fechaHoraInicio = fechaHoraInicio;
+        this.fechaHoraFin = fechaHoraFin;
+    }
+
+    // Getters y Setters
+    public Long getEmpleadoId() { return empleadoId; }
+    public void setEmpleadoId(Long empleadoId) { this.empleadoId = empleadoId; }
+
+    public String getEmpleadoNombre() { return empleadoNombre; }
+    public void setEmpleadoNombre(String empleadoNombre) { this.empleadoNombre = empleadoNombre; }
+
+    public LocalDateTime getFechaHoraInicio() { return fechaHoraInicio; }
+    public void setFechaHoraInicio(LocalDateTime fechaHoraInicio) { this.fechaHoraInicio = fechaHoraInicio; }
+
+    public LocalDateTime getFechaHoraFin() { return fechaHoraFin; }
+    public void setFechaHoraFin(LocalDateTime fechaHoraFin) { this.fechaHoraFin = fechaHoraFin; }
+}
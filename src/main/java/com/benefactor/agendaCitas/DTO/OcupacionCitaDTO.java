@@ -0,0 +1,13 @@
+package com.benefactor.agendaCitas.DTO;
+
+/**
+ * Proyección del rango de una cita junto con el empleado que la atiende
+ * Se usa para construir índices en memoria de varios empleados con una sola consulta
+ */
+public interface OcupacionCitaDTO extends RangoCitaDTO {
+
+    /**
+     * @return ID del empleado asignado a la cita
+     */
+    Long getEmpleadoId();
+}
@@ -0,0 +1,26 @@
+package com.benefactor.agendaCitas.DTO;
+
+/**
+ * DTO para un servicio dentro de un combo de citas consecutivas
+ * Si no indica empleado, lo atiende el empleado general del combo
+ */
+public class PasoComboDTO {
+
+    private Long servicioId;
+    private Long empleadoId;
+
+    // Constructores
+    public PasoComboDTO() {}
+
+    public PasoComboDTO(Long servicioId, Long empleadoId) {
+        this.servicioId = servicioId;
+        this.empleadoId = empleadoId;
+    }
+
+    // Getters y Setters
+    public Long getServicioId() { return servicioId; }
+    public void setServicioId(Long servicioId) { this.servicioId = servicioId; }
+
+    public Long getEmpleadoId() { return empleadoId; }
+    public void setEmpleadoId(Long empleadoId) { this.empleadoId = empleadoId; }
+}
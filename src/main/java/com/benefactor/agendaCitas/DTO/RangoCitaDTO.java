@@ -0,0 +1,22 @@
+package com.benefactor.agendaCitas.DTO;
+
+import java.time.LocalDateTime;
+
+/**
+ * Proyección mínima de una cita con solo su rango de ocupación
+ * Spring Data JPA genera la implementación a partir de los alias de la consulta
+ * Evita hidratar la entidad Cita completa (y sus relaciones EAGER) cuando
+ * únicamente se necesita saber qué intervalos de tiempo están ocupados
+ */
+public interface RangoCitaDTO {
+
+    /**
+     * @return Fecha y hora de inicio de la cita
+     */
+    LocalDateTime getFechaHoraInicio();
+
+    /**
+     * @return Fecha y hora de fin de la cita
+     */
+    LocalDateTime getFechaHoraFin();
+}
@@ -0,0 +1,56 @@
+package com.benefactor.agendaCitas.DTO;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO para solicitudes de creación de una serie de citas recurrentes
+ * Representa a un cliente que agenda el mismo servicio con el mismo empleado cada cierto número de semanas
+ * La primera cita de la serie inicia en fechaHoraInicio y las siguientes a la misma hora
+ */
+public class SerieCitasRequest {
+
+    private String clienteNombre;
+    private String clienteDocumento;
+    private String clienteCelular;
+    private Long empleadoId;
+    private Long servicioId;
+    private LocalDateTime fechaHoraInicio;
+
+    /**
+     * Semanas entre una cita y la siguiente (1 = semanal, 2 = quincenal)
+     */
+    private Integer intervaloSemanas = 1;
+
+    /**
+     * Cantidad total de citas de la serie, incluida la primera
+     */
+    private Integer repeticiones;
+
+    // Constructores
+    public SerieCitasRequest() {}
+
+    // Getters y Setters
+    public String getClienteNombre() { return clienteNombre; }
+    public void setClienteNombre(String clienteNombre) { this.clienteNombre = clienteNombre; }
+
+    public String getClienteDocumento() { return clienteDocumento; }
+    public void setClienteDocumento(String clienteDocumento) { this.clienteDocumento = clienteDocumento; }
+
+    public String getClienteCelular() { return clienteCelular; }
+    public void setClienteCelular(String clienteCelular) { this.clienteCelular = clienteCelular; }
+
+    public Long getEmpleadoId() { return empleadoId; }
+    public void setEmpleadoId(Long empleadoId) { this.empleadoId = empleadoId; }
+
+    public Long getServicioId() { return servicioId; }
+    public void setServicioId(Long servicioId) { this.servicioId = servicioId; }
+
+    public LocalDateTime getFechaHoraInicio() { return fechaHoraInicio; }
+    public void setFechaHoraInicio(LocalDateTime fechaHoraInicio) { this.fechaHoraInicio = fechaHoraInicio; }
+
+    public Integer getIntervaloSemanas() { return intervaloSemanas; }
+    public void setIntervaloSemanas(Integer intervaloSemanas) { this.intervaloSemanas = intervaloSemanas; }
+
+    public Integer getRepeticiones() { return repeticiones; }
+    public void setRepeticiones(Integer repeticiones) { this.repeticiones = repeticiones; }
+}
@@ -0,0 +1,49 @@
+package com.benefactor.agendaCitas.DTO;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO con el resultado de verificar un horario candidato
+ * Repite los datos del candidato e indica si se puede agendar y, si no, el motivo
+ */
+public class VeredictoHorarioDTO {
+
+    private Long empleadoId;
+    private Long servicioId;
+    private LocalDateTime fechaHoraInicio;
+    private LocalDateTime fechaHoraFin;
+    private boolean disponible;
+    private String motivo;
+
+    // Constructores
+    public VeredictoHorarioDTO() {}
+
+    public VeredictoHorarioDTO(CandidatoHorarioDTO candidato, LocalDateTime fechaHoraFin,
+                               boolean disponible, String motivo) {
+        this.empleadoId = candidato.getEmpleadoId();
+        this.servicioId = candidato.getServicioId();
+        this.fechaHoraInicio = candidato.getFechaHoraInicio();
+        this.fechaHoraFin = fechaHoraFin;
+        this.disponible = disponible;
+        this.motivo = motivo;
+    }
+
+    // Getters y Setters
+    public Long getEmpleadoId() { return empleadoId; }
+    public void setEmpleadoId(Long empleadoId) { this.empleadoId = empleadoId; }
+
+    public Long getServicioId() { return servicioId; }
+    public void setServicioId(Long servicioId) { this.servicioId = servicioId; }
+
+    public LocalDateTime getFechaHoraInicio() { return fechaHoraInicio; }
+    public void setFechaHoraInicio(LocalDateTime fechaHoraInicio) { this.fechaHoraInicio = fechaHoraInicio; }
+
+    public LocalDateTime getFechaHoraFin() { return fechaHoraFin; }
+    public void setFechaHoraFin(LocalDateTime fechaHoraFin) { this.fechaHoraFin = fechaHoraFin; }
+
+    public boolean isDisponible() { return disponible; }
+    public void setDisponible(boolean disponible) { this.disponible = disponible; }
+
+    public String getMotivo() { return motivo; }
+    public void setMotivo(String motivo) { this.motivo = motivo; }
+}
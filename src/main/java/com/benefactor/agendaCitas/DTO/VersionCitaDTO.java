@@ -0,0 +1,26 @@
+package com.benefactor.agendaCitas.DTO;
+
+/**
+ * DTO con el ID de una cita y la versión que el cliente tenía al leerla
+ * Se utiliza en los cambios de estado por lote para detectar modificaciones hechas desde otra pantalla
+ */
+public class VersionCitaDTO {
+
+    private Long id;
+    private Long version;
+
+    // Constructores
+    public VersionCitaDTO() {}
+
+    public VersionCitaDTO(Long id, Long version) {
+        this.id = id;
+        this.version = version;
+    }
+
+    // Getters y Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+}
@@ -1,10 +1,14 @@
 package com.benefactor.agendaCitas.Repository;
 
+import com.benefactor.agendaCitas.DTO.CitaResponseDTO;
+import com.benefactor.agendaCitas.DTO.OcupacionCitaDTO;
+import com.benefactor.agendaCitas.DTO.RangoCitaDTO;
 import com.benefactor.agendaCitas.model.Cita;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -19,11 +23,36 @@ public interface CitaRepository extends JpaRepository<Cita, Long> {
 
 
 
-        List<Cita> findByClienteDocumentoAndClienteCelularAndEstado(
-                String documento, String celular, String estado);
+    /**
+     * Obtiene el resumen de las citas de un cliente en un estado, identificado por documento y celular
+     * Une cliente, empleado y servicio en una sola consulta y construye los DTO directamente, sin cargar
+     * las entidades ni sus relaciones; se sirve con uk_cliente_documento_celular e idx_cita_cliente_estado
+     *
+     * @param documento Documento del cliente
+     * @param celular Celular del cliente
+     * @param estado Estado de las citas
+     * @return Citas del cliente en ese estado, ordenadas por fecha de inicio
+     */
+    @Query("SELECT new com.benefactor.agendaCitas.DTO.CitaResponseDTO(c.id, cl.nombre, e.nombre, s.nombre, " +
+            "c.fechaHoraInicio, c.fechaHoraFin, c.costoTotal, c.estado) " +
+            "FROM Cita c JOIN c.cliente cl JOIN c.empleado e JOIN c.servicio s " +
+            "WHERE cl.documento = :documento AND cl.celular = :celular AND c.estado = :estado " +
+            "ORDER BY c.fechaHoraInicio")
+    List<CitaResponseDTO> findResumenPorCliente(String documento, String celular, String estado);
 
-        boolean existsByClienteDocumentoAndClienteCelularAndEstado(
-                String documento, String celular, String estado);
+    /**
+     * Verifica si el cliente con ese documento y celular tiene alguna cita en un estado
+     * Una sola consulta resuelta con índices: uk_cliente_documento_celular (que incluye el id del cliente)
+     * e idx_cita_cliente_estado, sin leer las tablas y deteniéndose en la primera cita
+     *
+     * @param documento Documento del cliente
+     * @param celular Celular del cliente
+     * @param estado Estado de las citas
+     * @return true si existe al menos una cita
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM cita c JOIN cliente cl ON cl.id = c.cliente_id " +
+            "WHERE cl.documento = :documento AND cl.celular = :celular AND c.estado = :estado)", nativeQuery = true)
+    boolean existeCitaDeCliente(String documento, String celular, String estado);
 
     /**
      * Encuentra todas las citas de un empleado específico dentro de un rango de fechas
@@ -37,22 +66,108 @@ public interface CitaRepository extends JpaRepository<Cita, Long> {
     List<Cita> findByEmpleadoIdAndFechaHoraInicioBetween(Long empleadoId, LocalDateTime inicio, LocalDateTime fin);
 
     /**
-     * Encuentra citas que podrían estar en conflicto de horario con una nueva cita propuesta
-     * Consulta personalizada que verifica solapamientos en tres escenarios diferentes:
-     * 1. Inicio de cita existente dentro del rango propuesto
-     * 2. Fin de cita existente dentro del rango propuesto
-     * 3. Cita existente que engloba completamente el rango propuesto
+     * Estados de cita que ocupan el horario del empleado (ver Cita.ocupaHorario)
+     * Coinciden con el filtro del índice parcial idx_cita_activa_empleado_rango
+     */
+    List<String> ESTADOS_QUE_OCUPAN = List.of("programada", "cumplida");
+
+    /**
+     * Verifica si una cita propuesta se solapa con alguna cita activa del empleado
+     * Usa solapamiento semiabierto [inicio, fin): una cita puede comenzar justo cuando termina otra.
+     * Las citas canceladas o de clientes que no se presentaron no bloquean el horario
      *
      * @param empleadoId ID del empleado para verificar disponibilidad
      * @param inicio Fecha y hora de inicio de la cita propuesta
      * @param fin Fecha y hora de fin de la cita propuesta
-     * @return Lista de citas existentes que entran en conflicto con el horario propuesto
+     * @return true si existe al menos una cita en conflicto
+     */
+    default boolean existeConflicto(Long empleadoId, LocalDateTime inicio, LocalDateTime fin) {
+        return existsByEmpleadoIdAndEstadoInAndFechaHoraInicioLessThanAndFechaHoraFinGreaterThan(
+                empleadoId, ESTADOS_QUE_OCUPAN, fin, inicio);
+    }
+
+    /**
+     * Consulta derivada de existencia detrás de existeConflicto (se detiene en la primera fila)
+     * Se sirve con el índice parcial idx_cita_activa_empleado_rango
+     */
+    boolean existsByEmpleadoIdAndEstadoInAndFechaHoraInicioLessThanAndFechaHoraFinGreaterThan(
+            Long empleadoId, Collection<String> estados, LocalDateTime fin, LocalDateTime inicio);
+
+    /**
+     * Verifica si el nuevo rango de una cita que se reprograma se solapa con otra cita activa del empleado
+     * Igual que existeConflicto, pero sin contar la fila de la propia cita
+     *
+     * @param citaId ID de la cita que se reprograma
+     * @param empleadoId ID del empleado de la cita
+     * @param inicio Nueva fecha y hora de inicio
+     * @param fin Nueva fecha y hora de fin
+     * @return true si existe al menos otra cita en conflicto
+     */
+    default boolean existeConflictoExcluyendo(Long citaId, Long empleadoId, LocalDateTime inicio, LocalDateTime fin) {
+        return existsByEmpleadoIdAndIdNotAndEstadoInAndFechaHoraInicioLessThanAndFechaHoraFinGreaterThan(
+                empleadoId, citaId, ESTADOS_QUE_OCUPAN, fin, inicio);
+    }
+
+    /**
+     * Consulta derivada de existencia detrás de existeConflictoExcluyendo
+     */
+    boolean existsByEmpleadoIdAndIdNotAndEstadoInAndFechaHoraInicioLessThanAndFechaHoraFinGreaterThan(
+            Long empleadoId, Long citaId, Collection<String> estados, LocalDateTime fin, LocalDateTime inicio);
+
+    /**
+     * Obtiene solo los rangos de las citas activas de un empleado que se solapan con un intervalo
+     * Usa el mismo criterio de solapamiento semiabierto y de estados que existeConflicto, pero en una sola
+     * consulta para todo el intervalo y sin cargar las entidades completas
+     *
+     * @param empleadoId ID del empleado
+     * @param inicio Inicio del intervalo consultado
+     * @param fin Fin del intervalo consultado
+     * @return Rangos de citas ordenados por fecha de inicio
+     */
+    @Query("SELECT c.fechaHoraInicio AS fechaHoraInicio, c.fechaHoraFin AS fechaHoraFin FROM Cita c " +
+            "WHERE c.empleado.id = :empleadoId AND c.estado IN ('programada', 'cumplida') " +
+            "AND c.fechaHoraInicio < :fin AND c.fechaHoraFin > :inicio " +
+            "ORDER BY c.fechaHoraInicio")
+    List<RangoCitaDTO> findRangosEnIntervalo(Long empleadoId, LocalDateTime inicio, LocalDateTime fin);
+
+    /**
+     * Obtiene en una sola consulta los rangos de las citas activas de varios empleados que se solapan con un intervalo
+     * Usa el mismo criterio de solapamiento y de estados que findRangosEnIntervalo
+     *
+     * @param empleadoIds IDs de los empleados consultados
+     * @param inicio Inicio del intervalo consultado
+     * @param fin Fin del intervalo consultado
+     * @return Rangos de citas con su empleado, ordenados por fecha de inicio
+     */
+    @Query("SELECT c.empleado.id AS empleadoId, c.fechaHoraInicio AS fechaHoraInicio, c.fechaHoraFin AS fechaHoraFin " +
+            "FROM Cita c WHERE c.empleado.id IN :empleadoIds AND c.estado IN ('programada', 'cumplida') " +
+            "AND c.fechaHoraInicio < :fin AND c.fechaHoraFin > :inicio " +
+            "ORDER BY c.fechaHoraInicio")
+    List<OcupacionCitaDTO> findRangosDeEmpleadosEnIntervalo(Collection<Long> empleadoIds, LocalDateTime inicio, LocalDateTime fin);
+
+    /**
+     * Obtiene los rangos de todas las citas activas (programadas o cumplidas) que se solapan con un intervalo
+     * Incluye el ID del empleado para poder repartir los rangos entre empleados en memoria
+     * Las citas que solo tocan un extremo del intervalo no se incluyen
+     *
+     * @param inicio Inicio del intervalo consultado
+     * @param fin Fin del intervalo consultado
+     * @return Rangos de citas con su empleado
+     */
+    @Query("SELECT c.empleado.id AS empleadoId, c.fechaHoraInicio AS fechaHoraInicio, c.fechaHoraFin AS fechaHoraFin " +
+            "FROM Cita c WHERE c.estado IN ('programada', 'cumplida') AND c.fechaHoraInicio < :fin AND c.fechaHoraFin > :inicio")
+    List<OcupacionCitaDTO> findOcupacionesEnIntervalo(LocalDateTime inicio, LocalDateTime fin);
+
+    /**
+     * Toma el bloqueo asesor transaccional de PostgreSQL asociado a un empleado
+     * Espera si otra transacción ya lo tiene y se libera solo al terminar la transacción actual,
+     * por lo que debe invocarse dentro de una transacción
+     *
+     * @param empleadoId ID del empleado cuya agenda se bloquea
+     * @return Siempre 1; el valor solo confirma que el bloqueo se obtuvo
      */
-    @Query("SELECT c FROM Cita c WHERE c.empleado.id = :empleadoId AND " +
-            "((c.fechaHoraInicio BETWEEN :inicio AND :fin) OR " +
-            "(c.fechaHoraFin BETWEEN :inicio AND :fin) OR " +
-            "(c.fechaHoraInicio <= :inicio AND c.fechaHoraFin >= :fin))")
-    List<Cita> findCitasEnConflicto(Long empleadoId, LocalDateTime inicio, LocalDateTime fin);
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:empleadoId)", nativeQuery = true)
+    Integer bloquearEmpleado(Long empleadoId);
 
     /**
      * Encuentra citas por estado específico dentro de un rango de fechas
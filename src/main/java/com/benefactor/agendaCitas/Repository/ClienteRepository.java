@@ -0,0 +1,70 @@
+package com.benefactor.agendaCitas.Repository;
+
+import com.benefactor.agendaCitas.model.Cliente;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Repository para operaciones de acceso a datos de la entidad Cliente
+ * Las búsquedas por documento y celular usan el índice único uk_cliente_documento_celular
+ *
+ * @Repository Indica que esta interfaz es un componente de repositorio de Spring
+ */
+@Repository
+public interface ClienteRepository extends JpaRepository<Cliente, Long> {
+
+    /**
+     * Encuentra un cliente por su documento y celular
+     *
+     * @param documento Documento del cliente
+     * @param celular Celular del cliente
+     * @return Cliente encontrado o vacío si nunca ha agendado
+     */
+    Optional<Cliente> findByDocumentoAndCelular(String documento, String celular);
+
+    /**
+     * Obtiene solo el ID del cliente con ese documento y celular
+     * Se resuelve solo con el índice único, que incluye el ID, sin leer la tabla cliente
+     *
+     * @param documento Documento del cliente
+     * @param celular Celular del cliente
+     * @return ID del cliente o vacío si nunca ha agendado
+     */
+    @Query("SELECT c.id FROM Cliente c WHERE c.documento = :documento AND c.celular = :celular")
+    Optional<Long> findIdByDocumentoAndCelular(String documento, String celular);
+
+    /**
+     * Obtiene el ID del cliente con ese documento y celular, creándolo si no existe
+     * Un cliente existente nunca se modifica: su nombre es el de la primera reserva, de modo que quien conozca
+     * un documento y un celular no puede cambiar el nombre que aparece en el historial de otra persona.
+     * Debe llamarse dentro de la transacción que guarda la cita, para que una reserva rechazada no deje clientes
+     *
+     * @param documento Documento del cliente
+     * @param celular Celular del cliente
+     * @param nombre Nombre del cliente, usado solo si se crea
+     * @return ID del cliente
+     */
+    default Long obtenerOCrear(String documento, String celular, String nombre) {
+        // Si otra transacción creó el mismo cliente a la vez, la inserción no devuelve filas y la consulta
+        // de la misma sentencia aún no lo ve; una segunda sentencia ya lo encuentra
+        return insertarSiNoExiste(documento, celular, nombre)
+                .or(() -> findIdByDocumentoAndCelular(documento, celular))
+                .orElseThrow(() -> new RuntimeException("No fue posible registrar el cliente"));
+    }
+
+    /**
+     * Inserta el cliente si no existe y devuelve su ID en una sola sentencia, sin escribir si ya existe
+     * Usada por obtenerOCrear
+     */
+    @Transactional
+    @Query(value = "WITH nuevo AS (INSERT INTO cliente (documento, celular, nombre, fecha_creacion) " +
+            "VALUES (:documento, :celular, :nombre, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (documento, celular) DO NOTHING RETURNING id) " +
+            "SELECT id FROM nuevo UNION ALL " +
+            "SELECT id FROM cliente WHERE documento = :documento AND celular = :celular LIMIT 1", nativeQuery = true)
+    Optional<Long> insertarSiNoExiste(String documento, String celular, String nombre);
+}
@@ -0,0 +1,37 @@
+package com.benefactor.agendaCitas.Repository;
+
+import com.benefactor.agendaCitas.model.DiaEspecial;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Repository para operaciones de acceso a datos de la entidad DiaEspecial
+ * Extiende JpaRepository para obtener operaciones CRUD básicas automáticamente
+ * Maneja festivos, vacaciones, permisos e incapacidades que bloquean el horario de un empleado
+ *
+ * @Repository Indica que esta interfaz es un componente de repositorio de Spring
+ */
+@Repository
+public interface DiaEspecialRepository extends JpaRepository<DiaEspecial, Long> {
+
+    /**
+     * Encuentra los días especiales de todos los empleados dentro de un rango de fechas
+     * Consulta derivada usada para precargar el índice de días especiales por mes
+     *
+     * @param inicio Primer día del rango (inclusive)
+     * @param fin Último día del rango (inclusive)
+     * @return Lista de días especiales en el rango
+     */
+    List<DiaEspecial> findByFechaBetween(LocalDate inicio, LocalDate fin);
+
+    /**
+     * Encuentra los días especiales de un empleado desde una fecha, ordenados por fecha
+     *
+     * @param empleadoId ID del empleado
+     * @param fecha Fecha desde la cual se buscan (inclusive)
+     * @return Lista de días especiales del empleado
+     */
+    List<DiaEspecial> findByEmpleadoIdAndFechaGreaterThanEqualOrderByFechaAsc(Long empleadoId, LocalDate fecha);
+}
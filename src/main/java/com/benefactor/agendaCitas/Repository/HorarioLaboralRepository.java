@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -39,6 +40,15 @@ public interface HorarioLaboralRepository extends JpaRepository<HorarioLaboral,
      */
     List<HorarioLaboral> findByEmpleadoIdAndDiaSemanaAndActivoTrue(Long empleadoId, Integer diaSemana);
 
+    /**
+     * Encuentra en una sola consulta todos los horarios laborales activos de varios empleados
+     * Útil para búsquedas de disponibilidad que recorren a todos los empleados
+     *
+     * @param empleadoIds IDs de los empleados cuyos horarios se buscan
+     * @return Lista de horarios laborales activos de los empleados indicados
+     */
+    List<HorarioLaboral> findByEmpleadoIdInAndActivoTrue(Collection<Long> empleadoIds);
+
     /**
      * Verifica si un empleado tiene horario laboral activo para un día específico de la semana
      * Consulta personalizada JPQL que retorna un booleano indicando existencia
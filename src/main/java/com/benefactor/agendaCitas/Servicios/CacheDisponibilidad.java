@@ -0,0 +1,142 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Caché en memoria de resultados de disponibilidad ya calculados
+ *
+ * <p>Las entradas se agrupan por empleado y día; dentro de cada día se guarda un resultado por servicio.
+ * Así, cuando una cita o un horario laboral cambia, basta con descartar el día afectado para
+ * invalidar de una vez los resultados de todos los servicios de ese empleado en esa fecha.</p>
+ *
+ * <p>La caché está acotada en cantidad de días y en tiempo de vida. Los aciertos, fallos y desalojos
+ * se publican como métricas de Micrometer (agenda.disponibilidad.cache.*) visibles en /actuator/metrics.</p>
+ */
+@Service
+public class CacheDisponibilidad {
+
+    /**
+     * Clave de servicio para resultados que no dependen de un servicio (franjas horarias del empleado)
+     */
+    public static final Long SIN_SERVICIO = 0L;
+
+    private final Cache<ClaveDia, ConcurrentMap<Long, Object>> cache;
+    private final Counter aciertos;
+    private final Counter fallos;
+    private final Counter desalojos;
+
+    public CacheDisponibilidad(MeterRegistry registry,
+                               @Value("${agenda.cache-disponibilidad.maximo-dias:5000}") long maximoDias,
+                               @Value("${agenda.cache-disponibilidad.ttl-segundos:300}") long ttlSegundos) {
+        this.aciertos = Counter.builder("agenda.disponibilidad.cache.gets").tag("resultado", "acierto")
+                .description("Consultas de disponibilidad resueltas desde la caché").register(registry);
+        this.fallos = Counter.builder("agenda.disponibilidad.cache.gets").tag("resultado", "fallo")
+                .description("Consultas de disponibilidad que tuvieron que calcularse").register(registry);
+        this.desalojos = Counter.builder("agenda.disponibilidad.cache.desalojos")
+                .description("Días descartados por tamaño o por tiempo de vida").register(registry);
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximoDias)
+                .expireAfterWrite(Duration.ofSeconds(ttlSegundos))
+                .removalListener((ClaveDia clave, ConcurrentMap<Long, Object> valor, RemovalCause causa) -> {
+                    if (causa.wasEvicted()) {
+                        desalojos.increment();
+                    }
+                })
+                .build();
+
+        Gauge.builder("agenda.disponibilidad.cache.dias", cache, Cache::estimatedSize)
+                .description("Cantidad de días de empleado presentes en la caché").register(registry);
+    }
+
+    /**
+     * Obtiene un resultado de la caché o lo calcula y lo guarda si no existe
+     * El cálculo se ejecuta fuera de cualquier bloqueo; si el día se invalida mientras se calcula,
+     * el resultado queda en un contenedor ya descartado y no se sirve a consultas posteriores
+     *
+     * @param empleadoId ID del empleado
+     * @param fecha Día consultado
+     * @param servicioId ID del servicio, o {@link #SIN_SERVICIO}
+     * @param calculo Cálculo a ejecutar cuando el resultado no está en caché
+     * @return Resultado almacenado o recién calculado
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T obtener(Long empleadoId, LocalDate fecha, Long servicioId, Supplier<T> calculo) {
+        ConcurrentMap<Long, Object> porServicio = cache.get(new ClaveDia(empleadoId, fecha), clave -> new ConcurrentHashMap<>());
+        Object valor = porServicio.get(servicioId);
+        if (valor != null) {
+            aciertos.increment();
+            return (T) valor;
+        }
+
+        fallos.increment();
+        T calculado = calculo.get();
+        if (calculado != null) {
+            porServicio.putIfAbsent(servicioId, calculado);
+        }
+        return calculado;
+    }
+
+    /**
+     * Descarta los resultados de todos los días que abarca un rango de un empleado
+     *
+     * @param empleadoId ID del empleado
+     * @param inicio Inicio del rango modificado
+     * @param fin Fin del rango modificado
+     */
+    public void invalidarRango(Long empleadoId, LocalDateTime inicio, LocalDateTime fin) {
+        for (LocalDate dia = inicio.toLocalDate(); !dia.isAfter(fin.toLocalDate()); dia = dia.plusDays(1)) {
+            cache.invalidate(new ClaveDia(empleadoId, dia));
+        }
+    }
+
+    /**
+     * Descarta los resultados de un empleado para todas las fechas que caen en un día de la semana
+     * Se usa cuando cambia la plantilla de horario laboral de ese día
+     *
+     * @param empleadoId ID del empleado
+     * @param diaSemana Día de la semana (1=Lunes, 7=Domingo)
+     */
+    public void invalidarDiaSemana(Long empleadoId, Integer diaSemana) {
+        cache.asMap().keySet().removeIf(clave ->
+                clave.empleadoId().equals(empleadoId) && clave.fecha().getDayOfWeek().getValue() == diaSemana);
+    }
+
+    /**
+     * Descarta todos los resultados de un empleado
+     *
+     * @param empleadoId ID del empleado
+     */
+    public void invalidarEmpleado(Long empleadoId) {
+        cache.asMap().keySet().removeIf(clave -> clave.empleadoId().equals(empleadoId));
+    }
+
+    /**
+     * Descarta los resultados calculados para un servicio en todos los días
+     * Se usa cuando cambia la duración del servicio
+     *
+     * @param servicioId ID del servicio
+     */
+    public void invalidarServicio(Long servicioId) {
+        cache.asMap().values().forEach(porServicio -> porServicio.remove(servicioId));
+    }
+
+    /**
+     * Clave de la caché: un empleado en un día concreto
+     */
+    private record ClaveDia(Long empleadoId, LocalDate fecha) {}
+}
@@ -0,0 +1,122 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cierre automático de citas programadas cuyo horario ya pasó
+ *
+ * <p>Las citas que nadie marcó como cumplidas o canceladas quedaban programadas para siempre, y los reportes,
+ * la consulta pública y mis-citas tenían que filtrarlas cada vez. Este proceso las pasa periódicamente al
+ * estado configurado (no_presento por defecto) cuando terminaron hace más de los minutos de gracia.</p>
+ *
+ * <p>El cambio se hace por tramos con UPDATE, sin cargar las citas como entidades: idx_cita_estado_fecha
+ * acota la búsqueda por estado y fecha de inicio y la condición sobre fecha_hora_fin se evalúa en esas
+ * filas. Cada tramo es una transacción corta y las filas bloqueadas por otra operación se saltan hasta la
+ * siguiente ejecución. Como las citas cerradas ya terminaron, la disponibilidad futura no cambia y no hace
+ * falta tocar el índice de ocupación ni la caché; sí se publica por SSE un evento resumen por empleado y
+ * día para que las vistas abiertas dejen de mostrarlas como programadas.</p>
+ */
+@Service
+public class CierreCitasVencidas {
+
+    private static final Set<String> ESTADOS_DE_CIERRE = Set.of("cumplida", "cancelada", "no_presento");
+
+    // Un tramo de citas programadas que terminaron antes del límite, en el orden del índice (estado, fecha_hora_inicio)
+    private static final String CERRAR_TRAMO =
+            "UPDATE cita SET estado = ?, version = version + 1 WHERE id IN (" +
+            "SELECT id FROM cita WHERE estado = 'programada' AND fecha_hora_inicio < ? AND fecha_hora_fin <= ? " +
+            "ORDER BY fecha_hora_inicio LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id, empleado_id, fecha_hora_inicio, fecha_hora_fin";
+
+    private final String estadoCierre;
+    private final long graciaMinutos;
+    private final int tamanoTramo;
+    private final Timer duracion;
+    private final Counter cerradas;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NotificadorHorarios notificadorHorarios;
+
+    public CierreCitasVencidas(MeterRegistry registry,
+                               @Value("${agenda.cierre-citas.estado:no_presento}") String estadoCierre,
+                               @Value("${agenda.cierre-citas.gracia-minutos:60}") long graciaMinutos,
+                               @Value("${agenda.cierre-citas.tamano-lote:1000}") int tamanoTramo) {
+        if (!ESTADOS_DE_CIERRE.contains(estadoCierre)) {
+            throw new RuntimeException("agenda.cierre-citas.estado debe ser cumplida, cancelada o no_presento");
+        }
+        this.estadoCierre = estadoCierre;
+        this.graciaMinutos = graciaMinutos;
+        this.tamanoTramo = tamanoTramo;
+
+        this.duracion = Timer.builder("agenda.citas.cierre.duracion")
+                .description("Tiempo de cada ejecución del cierre de citas vencidas").register(registry);
+        this.cerradas = Counter.builder("agenda.citas.cierre.cerradas")
+                .description("Citas programadas vencidas pasadas al estado de cierre")
+                .tag("estado", estadoCierre).register(registry);
+    }
+
+    /**
+     * Cierra por tramos las citas programadas vencidas hasta que no quede ninguna disponible
+     * La frecuencia se configura con agenda.cierre-citas.cron ("-" lo desactiva)
+     */
+    @Scheduled(cron = "${agenda.cierre-citas.cron:0 */15 * * * *}")
+    public void cerrarVencidas() {
+        Timer.Sample muestra = Timer.start();
+        int total = 0;
+        try {
+            LocalDateTime limite = LocalDateTime.now().minusMinutes(graciaMinutos);
+            // Empleado y día -> citas cerradas, para un solo evento por suscripción afectada
+            Map<Long, Map<LocalDate, List<Long>>> porEmpleadoYDia = new HashMap<>();
+            int actualizadas;
+            do {
+                actualizadas = jdbcTemplate.query(CERRAR_TRAMO, (ResultSetExtractor<Integer>) filas -> {
+                    int leidas = 0;
+                    while (filas.next()) {
+                        leidas++;
+                        Long citaId = filas.getLong("id");
+                        Map<LocalDate, List<Long>> dias =
+                                porEmpleadoYDia.computeIfAbsent(filas.getLong("empleado_id"), id -> new HashMap<>());
+                        LocalDate ultimoDia = filas.getTimestamp("fecha_hora_fin").toLocalDateTime().toLocalDate();
+                        for (LocalDate dia = filas.getTimestamp("fecha_hora_inicio").toLocalDateTime().toLocalDate();
+                             !dia.isAfter(ultimoDia); dia = dia.plusDays(1)) {
+                            dias.computeIfAbsent(dia, d -> new ArrayList<>()).add(citaId);
+                        }
+                    }
+                    return leidas;
+                }, estadoCierre, limite, limite, tamanoTramo);
+                total += actualizadas;
+                cerradas.increment(actualizadas);
+            } while (actualizadas == tamanoTramo);
+
+            porEmpleadoYDia.forEach((empleadoId, dias) -> dias.forEach((dia, citaIds) ->
+                    notificadorHorarios.publicarCierre(empleadoId, dia, estadoCierre, citaIds)));
+
+            if (total > 0) {
+                System.out.println("🗓️ Cierre de citas vencidas: " + total + " citas pasadas a " + estadoCierre);
+            }
+        } catch (Exception e) {
+            System.err.println("Error en el cierre de citas vencidas: " + e.getMessage());
+        } finally {
+            muestra.stop(duracion);
+        }
+    }
+}
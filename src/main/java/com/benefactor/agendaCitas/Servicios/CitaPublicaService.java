@@ -10,7 +10,6 @@ import org.springframework.stereotype.Service;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.stream.Collectors;
 
 @Service
 public class CitaPublicaService {
@@ -18,23 +17,43 @@ public class CitaPublicaService {
     @Autowired
     private CitaRepository citaRepository;
 
+    @Autowired
+    private IndiceOcupacion indiceOcupacion;
+
+    @Autowired
+    private CacheDisponibilidad cacheDisponibilidad;
+
+    @Autowired
+    private NotificadorHorarios notificadorHorarios;
+
+    @Autowired
+    private FiltroClientes filtroClientes;
+
     /**
      * Obtiene todas las citas programadas de un usuario por documento y celular
+     * Una sola consulta arma el resumen de cada cita sin cargar las entidades; los clientes que el
+     * filtro descarta se responden sin consultar la base de datos
      */
     public List<CitaResponseDTO> obtenerCitasProgramadas(String documento, String celular) {
-        List<Cita> citas = citaRepository.findByClienteDocumentoAndClienteCelularAndEstado(
-                documento, celular, "programada");
-
-        return citas.stream().map(cita -> new CitaResponseDTO(
-                cita.getId(),
-                cita.getClienteNombre(),
-                cita.getEmpleado().getNombre(),
-                cita.getServicio().getNombre(),
-                cita.getFechaHoraInicio(),
-                cita.getFechaHoraFin(),
-                cita.getCostoTotal(),
-                cita.getEstado()
-        )).collect(Collectors.toList());
+        if (!filtroClientes.puedeExistir(documento, celular)) {
+            return List.of();
+        }
+        return citaRepository.findResumenPorCliente(documento, celular, "programada");
+    }
+
+    /**
+     * Verifica el usuario y obtiene sus citas programadas en una sola llamada
+     * Reemplaza la secuencia verificar-usuario y mis-citas, que consultaba dos veces al mismo cliente
+     *
+     * @return Mapa con usuarioExiste (tiene citas programadas) y la lista de citas
+     */
+    public Map<String, Object> consultarCliente(String documento, String celular) {
+        List<CitaResponseDTO> citas = obtenerCitasProgramadas(documento, celular);
+
+        Map<String, Object> respuesta = new HashMap<>();
+        respuesta.put("usuarioExiste", !citas.isEmpty());
+        respuesta.put("citas", citas);
+        return respuesta;
     }
 
     /**
@@ -58,6 +77,9 @@ public class CitaPublicaService {
         // Cancelar la cita
         cita.setEstado("cancelada");
         citaRepository.save(cita);
+        indiceOcupacion.cambiarEstado(cita, "programada");
+        cacheDisponibilidad.invalidarRango(cita.getEmpleado().getId(), cita.getFechaHoraInicio(), cita.getFechaHoraFin());
+        notificadorHorarios.publicar(cita, "cancelada");
 
         Map<String, String> respuesta = new HashMap<>();
         respuesta.put("mensaje", "Cita cancelada exitosamente");
@@ -68,10 +90,12 @@ public class CitaPublicaService {
     }
 
     /**
-     * Verifica si un usuario existe (tiene citas programadas)
+     * Verifica si un usuario existe (tiene citas programadas) con una sola consulta a la base de datos
      */
     public boolean usuarioExiste(String documento, String celular) {
-        return citaRepository.existsByClienteDocumentoAndClienteCelularAndEstado(
-                documento, celular, "programada");
+        if (!filtroClientes.puedeExistir(documento, celular)) {
+            return false;
+        }
+        return citaRepository.existeCitaDeCliente(documento, celular, "programada");
     }
 }
\ No newline at end of file
@@ -1,21 +1,55 @@
 package com.benefactor.agendaCitas.Servicios;
 
 import com.benefactor.agendaCitas.model.Cita;
+import com.benefactor.agendaCitas.model.Cliente;
 import com.benefactor.agendaCitas.model.Empleado;
 import com.benefactor.agendaCitas.model.Servicio;
 import com.benefactor.agendaCitas.model.HorarioLaboral;
+import com.benefactor.agendaCitas.DTO.CambioEstadoLoteRequest;
+import com.benefactor.agendaCitas.DTO.CandidatoHorarioDTO;
 import com.benefactor.agendaCitas.DTO.CitaRequest;
+import com.benefactor.agendaCitas.DTO.ComboCitasRequest;
+import com.benefactor.agendaCitas.DTO.OcupacionCitaDTO;
+import com.benefactor.agendaCitas.DTO.PasoComboDTO;
+import com.benefactor.agendaCitas.DTO.RangoCitaDTO;
+import com.benefactor.agendaCitas.DTO.SerieCitasRequest;
+import com.benefactor.agendaCitas.DTO.VeredictoHorarioDTO;
+import com.benefactor.agendaCitas.DTO.VersionCitaDTO;
 import com.benefactor.agendaCitas.Repository.CitaRepository;
+import com.benefactor.agendaCitas.Repository.ClienteRepository;
 import com.benefactor.agendaCitas.Repository.EmpleadoRepository;
 import com.benefactor.agendaCitas.Repository.ServicioRepository;
 import com.benefactor.agendaCitas.Repository.HorarioLaboralRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.List;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Servicio para gestión de citas del sistema
@@ -28,9 +62,87 @@ import java.util.ArrayList;
 @Service
 public class CitaService {
 
+    static final String MENSAJE_HORARIO_OCUPADO =
+            "El empleado no está disponible en el horario seleccionado. Ya existe una cita programada en ese rango de tiempo.";
+
+    static final String MENSAJE_COLA_SATURADA =
+            "La reserva no se pudo procesar a tiempo. Consulte sus citas antes de intentarlo de nuevo.";
+
+    /**
+     * Máximo de citas que puede tener una serie recurrente (un año de citas semanales)
+     */
+    private static final int MAX_REPETICIONES_SERIE = 52;
+
+    /**
+     * Máximo de servicios seguidos que puede tener un combo
+     */
+    private static final int MAX_SERVICIOS_COMBO = 6;
+
+    /**
+     * Máximo de citas que se pueden indicar en un cambio de estado por lote
+     */
+    private static final int MAX_CITAS_CAMBIO_ESTADO = 500;
+
+    private static final Set<String> ESTADOS_VALIDOS = Set.of("programada", "cumplida", "cancelada", "no_presento");
+
+    private static final String COLUMNAS_CAMBIO_ESTADO =
+            "RETURNING c.id, c.empleado_id, c.fecha_hora_inicio, c.fecha_hora_fin, c.estado, c.version, p.estado AS estado_anterior";
+
+    // Cambia el estado solo de las citas cuya versión coincide con la enviada; las filas se bloquean antes de
+    // actualizarlas para leer su estado anterior, y una fila modificada en paralelo se vuelve a comparar con su nueva versión
+    private static final String CAMBIAR_ESTADO_POR_VERSION =
+            "WITH p AS (SELECT c.id, c.estado FROM cita c " +
+            "JOIN unnest(CAST(? AS bigint[]), CAST(? AS bigint[])) AS v(id, version) ON v.id = c.id AND v.version = c.version " +
+            "FOR UPDATE OF c) " +
+            "UPDATE cita c SET estado = ?, version = c.version + 1 FROM p WHERE c.id = p.id " + COLUMNAS_CAMBIO_ESTADO;
+
+    // Cambia el estado de todas las citas programadas de un empleado que inician en un día
+    private static final String CAMBIAR_ESTADO_PROGRAMADAS_DEL_DIA =
+            "WITH p AS (SELECT c.id, c.estado FROM cita c WHERE c.empleado_id = ? AND c.estado = 'programada' " +
+            "AND c.fecha_hora_inicio >= ? AND c.fecha_hora_inicio < ? FOR UPDATE OF c) " +
+            "UPDATE cita c SET estado = ?, version = c.version + 1 FROM p WHERE c.id = p.id AND c.estado = 'programada' " +
+            COLUMNAS_CAMBIO_ESTADO;
+
+    private static final String CONSULTAR_VERSIONES =
+            "SELECT id, estado, version FROM cita WHERE id = ANY(CAST(? AS bigint[]))";
+
+    /**
+     * Si es true se consulta la base de datos antes de insertar para detectar conflictos
+     * La restricción de exclusión cita_sin_solapamiento los rechaza de todos modos; desactivarla
+     * deja la reserva en un solo INSERT
+     */
+    @Value("${agenda.citas.verificar-conflicto-previo:true}")
+    private boolean verificarConflictoPrevio;
+
+    /**
+     * Si es true la verificación de conflictos y el guardado de una reserva se ejecutan en una transacción
+     * que primero toma pg_advisory_xact_lock(empleadoId), serializando las reservas de cada empleado
+     */
+    @Value("${agenda.citas.bloqueo-asesor:false}")
+    private boolean bloqueoAsesor;
+
+    /**
+     * Si es true la verificación de conflictos y el guardado de cada cita nueva se delegan a
+     * ColaReservasEmpleado, que procesa las reservas de cada empleado en secuencia y las guarda por lotes
+     */
+    @Value("${agenda.citas.cola-empleado:false}")
+    private boolean colaEmpleado;
+
+    /**
+     * Segundos que una solicitud espera a que la cola por empleado guarde su cita antes de responder 503
+     */
+    @Value("${agenda.citas.cola.espera-segundos:10}")
+    private long esperaColaSegundos;
+
     @Autowired
     private CitaRepository citaRepository;
 
+    @Autowired
+    private ClienteRepository clienteRepository;
+
+    @Autowired
+    private FiltroClientes filtroClientes;
+
     @Autowired
     private EmpleadoRepository empleadoRepository;
 
@@ -40,6 +152,33 @@ public class CitaService {
     @Autowired
     private HorarioLaboralRepository horarioLaboralRepository;
 
+    @Autowired
+    private IndiceOcupacion indiceOcupacion;
+
+    @Autowired
+    private CacheDisponibilidad cacheDisponibilidad;
+
+    @Autowired
+    private IndiceDiasEspeciales indiceDiasEspeciales;
+
+    @Autowired
+    private NotificadorHorarios notificadorHorarios;
+
+    @Autowired
+    private ReservasTemporales reservasTemporales;
+
+    @Autowired
+    private ColaReservasEmpleado colaReservasEmpleado;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     /**
      * Obtiene todas las citas del sistema sin filtros
      *
@@ -71,6 +210,17 @@ public class CitaService {
      * @throws RuntimeException Si alguna validación falla
      */
     public Cita crearCita(CitaRequest citaRequest) {
+        return crearCita(citaRequest, null);
+    }
+
+    /**
+     * Crea una cita ignorando como conflicto la reserva temporal de quien la confirma
+     *
+     * @param citaRequest Objeto con los datos de la cita a crear
+     * @param reservaPropia ID de la reserva temporal que se está confirmando, o null
+     * @return Cita creada y guardada en la base de datos
+     */
+    private Cita crearCita(CitaRequest citaRequest, String reservaPropia) {
         // 1. Validar que fechaHoraInicio no sea nulo
         if (citaRequest.getFechaHoraInicio() == null) {
             throw new RuntimeException("La fecha y hora de inicio no pueden ser nulas");
@@ -93,9 +243,16 @@ public class CitaService {
         LocalDateTime fechaHoraInicio = citaRequest.getFechaHoraInicio();
         LocalDateTime fechaHoraFin = fechaHoraInicio.plusMinutes(servicio.getDuracionMinutos());
 
-        // 5. Validar disponibilidad del empleado en ese horario
-        if (!validarDisponibilidad(empleado.getId(), fechaHoraInicio, fechaHoraFin)) {
-            throw new RuntimeException("El empleado no está disponible en el horario seleccionado. Ya existe una cita programada en ese rango de tiempo.");
+        // 5. Si el índice en memoria marca el rango como ocupado, confirmarlo en la base de datos antes de rechazar:
+        // el índice puede conservar citas canceladas o movidas por otra instancia
+        if (indiceOcupacion.estaOcupado(empleado.getId(), fechaHoraInicio, fechaHoraFin)
+                && !validarDisponibilidad(empleado.getId(), fechaHoraInicio, fechaHoraFin)) {
+            throw new HorarioOcupadoException(MENSAJE_HORARIO_OCUPADO);
+        }
+
+        // Los horarios reservados temporalmente por otros clientes se tratan como ocupados
+        if (reservasTemporales.bloquea(empleado.getId(), fechaHoraInicio, fechaHoraFin, reservaPropia)) {
+            throw new HorarioOcupadoException("El horario seleccionado está reservado temporalmente por otro cliente.");
         }
 
         // 6. Validar horario laboral del empleado
@@ -103,25 +260,284 @@ public class CitaService {
             throw new RuntimeException("El horario seleccionado está fuera del horario laboral del empleado.");
         }
 
-        // 7. Crear y guardar la cita
-        Cita cita = new Cita();
-        cita.setClienteNombre(citaRequest.getClienteNombre());
-        cita.setClienteDocumento(citaRequest.getClienteDocumento());
-        cita.setClienteCelular(citaRequest.getClienteCelular());
-        cita.setEmpleado(empleado);
-        cita.setServicio(servicio);
-        cita.setFechaHoraInicio(fechaHoraInicio);
-        cita.setFechaHoraFin(fechaHoraFin);
-        cita.setCostoTotal(servicio.getCosto());
+        // 7. Validar que el empleado no tenga un festivo, vacaciones, permiso o incapacidad en ese horario
+        if (indiceDiasEspeciales.bloquea(empleado.getId(), fechaHoraInicio, fechaHoraFin)) {
+            throw new RuntimeException("El empleado no está disponible en el horario seleccionado por festivo, vacaciones, permiso o incapacidad.");
+        }
+
+        // 8. Crear y guardar la cita; el cliente se registra en la misma transacción que la cita
+        Cliente cliente = validarCliente(citaRequest.getClienteNombre(), citaRequest.getClienteDocumento(),
+                citaRequest.getClienteCelular());
+        Cita cita = nuevaCita(cliente, empleado, servicio, fechaHoraInicio);
         cita.setEstado(citaRequest.getEstado() != null ? citaRequest.getEstado() : "programada");
-        cita.setRecordatorioEnviado(false);
 
-        return citaRepository.save(cita);
+        // 9. Verificar conflictos en la base de datos y guardar
+        // Con la cola por empleado la cita espera su turno en el buzón del empleado, que ya la registra en el índice
+        Cita citaGuardada;
+        if (colaEmpleado) {
+            citaGuardada = esperarCola(colaReservasEmpleado.encolar(cita, reservaPropia));
+        } else {
+            // Con el modo de bloqueo asesor ambos pasos son atómicos por empleado; sin él,
+            // la restricción de exclusión de la tabla cita es la que decide ante solicitudes simultáneas
+            citaGuardada = ejecutarConBloqueoEmpleado(empleado.getId(), () -> {
+                if ((bloqueoAsesor || verificarConflictoPrevio) &&
+                        !validarDisponibilidad(empleado.getId(), fechaHoraInicio, fechaHoraFin)) {
+                    throw new HorarioOcupadoException(MENSAJE_HORARIO_OCUPADO);
+                }
+                return guardarSinSolapamiento(cita);
+            });
+            indiceOcupacion.registrar(citaGuardada);
+        }
+        cacheDisponibilidad.invalidarRango(empleado.getId(), fechaHoraInicio, fechaHoraFin);
+        notificadorHorarios.publicar(citaGuardada, "creada");
+        return citaGuardada;
+    }
+
+    /**
+     * Reserva temporalmente un horario mientras el cliente completa sus datos
+     * Aplica las mismas validaciones que la creación de la cita; durante la reserva ningún otro cliente
+     * puede agendar ni reservar ese rango
+     *
+     * @param candidato Empleado, servicio e inicio del horario elegido
+     * @return Reserva creada con su fecha de vencimiento
+     * @throws HorarioOcupadoException Si el horario ya tiene una cita o una reserva vigente
+     * @throws RuntimeException Si alguna otra validación falla
+     */
+    public ReservaHorario reservarHorario(CandidatoHorarioDTO candidato) {
+        if (candidato.getEmpleadoId() == null || candidato.getServicioId() == null || candidato.getFechaHoraInicio() == null) {
+            throw new RuntimeException("Los campos empleadoId, servicioId y fechaHoraInicio son requeridos");
+        }
+        Servicio servicio = servicioRepository.findById(candidato.getServicioId())
+                .orElseThrow(() -> new RuntimeException("Servicio no encontrado con id: " + candidato.getServicioId()));
+        Long empleadoId = candidato.getEmpleadoId();
+        LocalDateTime inicio = candidato.getFechaHoraInicio();
+        LocalDateTime fin = inicio.plusMinutes(servicio.getDuracionMinutos());
+
+        if (!validarDisponibilidad(empleadoId, inicio, fin)) {
+            throw new HorarioOcupadoException(MENSAJE_HORARIO_OCUPADO);
+        }
+        if (!validarHorarioLaboral(empleadoId, inicio, fin)) {
+            throw new RuntimeException("El horario seleccionado está fuera del horario laboral del empleado.");
+        }
+        if (indiceDiasEspeciales.bloquea(empleadoId, inicio, fin)) {
+            throw new RuntimeException("El empleado no está disponible en el horario seleccionado por festivo, vacaciones, permiso o incapacidad.");
+        }
+
+        ReservaHorario reserva = reservasTemporales.reservar(empleadoId, servicio.getId(), inicio, fin);
+        cacheDisponibilidad.invalidarRango(empleadoId, inicio, fin);
+        return reserva;
+    }
+
+    /**
+     * Convierte una reserva temporal en cita con los datos del cliente
+     * La reserva sigue ocupando el horario hasta que la cita queda guardada; si la creación falla
+     * la reserva vuelve a quedar activa hasta su vencimiento
+     *
+     * @param reservaId ID de la reserva
+     * @param datosCliente Datos del cliente (nombre, documento y celular); empleado, servicio e inicio se toman de la reserva
+     * @return Cita creada
+     * @throws RuntimeException Si la reserva no existe o venció, o si alguna validación falla
+     */
+    public Cita confirmarReserva(String reservaId, CitaRequest datosCliente) {
+        ReservaHorario reserva = reservasTemporales.iniciarConfirmacion(reservaId);
+        Cita cita;
+        try {
+            datosCliente.setEmpleadoId(reserva.getEmpleadoId());
+            datosCliente.setServicioId(reserva.getServicioId());
+            datosCliente.setFechaHoraInicio(reserva.getFechaHoraInicio());
+            datosCliente.setEstado("programada");
+            cita = crearCita(datosCliente, reservaId);
+        } catch (RuntimeException e) {
+            reservasTemporales.cancelarConfirmacion(reserva);
+            throw e;
+        }
+        reservasTemporales.liberar(reservaId);
+        return cita;
+    }
+
+    /**
+     * Libera una reserva temporal antes de su vencimiento (el cliente abandonó el proceso)
+     *
+     * @param reservaId ID de la reserva
+     * @throws RuntimeException Si la reserva no existe
+     */
+    public void liberarReserva(String reservaId) {
+        ReservaHorario reserva = reservasTemporales.liberar(reservaId);
+        if (reserva == null) {
+            throw new RuntimeException("Reserva no encontrada");
+        }
+        cacheDisponibilidad.invalidarRango(reserva.getEmpleadoId(), reserva.getFechaHoraInicio(), reserva.getFechaHoraFin());
+    }
+
+    /**
+     * Crea una serie de citas recurrentes del mismo cliente con el mismo empleado y servicio
+     * Valida todas las ocurrencias en una sola pasada: carga una vez los horarios laborales y una sola vez
+     * las citas activas de todo el rango; luego inserta las ocurrencias aceptadas en lote, en una transacción.
+     * Las ocurrencias que no se pueden agendar no impiden crear las demás y se reportan con su motivo
+     *
+     * @param request Datos del cliente, empleado, servicio, primera cita y recurrencia
+     * @return Mapa con las citas creadas ("creadas") y las ocurrencias rechazadas con su motivo ("rechazadas")
+     * @throws RuntimeException Si los datos de la serie no son válidos
+     * @throws HorarioOcupadoException Si otra solicitud ocupó alguno de los horarios mientras se guardaba la serie
+     */
+    public Map<String, Object> crearSerie(SerieCitasRequest request) {
+        // 1. Validar los datos de la serie
+        if (request.getFechaHoraInicio() == null) {
+            throw new RuntimeException("La fecha y hora de inicio no pueden ser nulas");
+        }
+        if (request.getClienteDocumento() == null || request.getClienteDocumento().trim().isEmpty()) {
+            throw new RuntimeException("El documento del cliente es obligatorio");
+        }
+        if (request.getRepeticiones() == null || request.getRepeticiones() < 1 || request.getRepeticiones() > MAX_REPETICIONES_SERIE) {
+            throw new RuntimeException("La cantidad de repeticiones debe estar entre 1 y " + MAX_REPETICIONES_SERIE);
+        }
+        int intervaloSemanas = request.getIntervaloSemanas() != null ? request.getIntervaloSemanas() : 1;
+        if (intervaloSemanas < 1) {
+            throw new RuntimeException("El intervalo entre citas debe ser de al menos una semana");
+        }
+
+        // 2. Validar que el empleado y el servicio existen
+        Empleado empleado = empleadoRepository.findById(request.getEmpleadoId())
+                .orElseThrow(() -> new RuntimeException("Empleado no encontrado con id: " + request.getEmpleadoId()));
+        Servicio servicio = servicioRepository.findById(request.getServicioId())
+                .orElseThrow(() -> new RuntimeException("Servicio no encontrado con id: " + request.getServicioId()));
+
+        // 3. Cargar una sola vez los horarios laborales y las citas activas de todo el rango de la serie
+        LocalDateTime primerInicio = request.getFechaHoraInicio();
+        LocalDateTime ultimoFin = primerInicio.plusWeeks((long) (request.getRepeticiones() - 1) * intervaloSemanas)
+                .plusMinutes(servicio.getDuracionMinutos());
+        Map<Integer, List<HorarioLaboral>> horariosPorDia = horarioLaboralRepository
+                .findByEmpleadoIdAndActivoTrue(empleado.getId())
+                .stream()
+                .collect(Collectors.groupingBy(HorarioLaboral::getDiaSemana));
+        // Los intervalos ocupados se expresan en segundos desde el día de la primera cita
+        LocalDate base = primerInicio.toLocalDate();
+        long[] ocupados = MotorDisponibilidad.fusionarOcupados(base,
+                citaRepository.findRangosEnIntervalo(empleado.getId(), primerInicio, ultimoFin));
+
+        // 4. Verificar cada ocurrencia en memoria
+        Cliente cliente = validarCliente(request.getClienteNombre(), request.getClienteDocumento(), request.getClienteCelular());
+        List<Cita> aceptadas = new ArrayList<>();
+        List<VeredictoHorarioDTO> rechazadas = new ArrayList<>();
+        for (int i = 0; i < request.getRepeticiones(); i++) {
+            LocalDateTime inicio = primerInicio.plusWeeks((long) i * intervaloSemanas);
+            LocalDateTime fin = inicio.plusMinutes(servicio.getDuracionMinutos());
+            LocalDate fecha = inicio.toLocalDate();
+
+            String motivo = null;
+            List<HorarioLaboral> plantilla = horariosPorDia.get(fecha.getDayOfWeek().getValue());
+            if (plantilla == null || !MotorDisponibilidad.cabeEnHorario(plantilla, segundosDesde(fecha, inicio), segundosDesde(fecha, fin))) {
+                motivo = "El horario seleccionado está fuera del horario laboral del empleado";
+            } else if (indiceDiasEspeciales.bloquea(empleado.getId(), inicio, fin)) {
+                motivo = "El empleado tiene festivo, vacaciones, permiso o incapacidad en ese horario";
+            } else if (!MotorDisponibilidad.estaLibre(ocupados, segundosDesde(base, inicio), segundosDesde(base, fin))) {
+                motivo = "Ya existe una cita programada en ese rango de tiempo";
+            } else if (reservasTemporales.bloquea(empleado.getId(), inicio, fin, null)) {
+                motivo = "El horario está reservado temporalmente por otro cliente";
+            }
+
+            if (motivo != null) {
+                rechazadas.add(new VeredictoHorarioDTO(
+                        new CandidatoHorarioDTO(empleado.getId(), servicio.getId(), inicio), fin, false, motivo));
+            } else {
+                aceptadas.add(nuevaCita(cliente, empleado, servicio, inicio));
+            }
+        }
+
+        // 5. Insertar en lote las ocurrencias aceptadas; la restricción de exclusión decide ante solicitudes simultáneas
+        List<Cita> creadas = aceptadas.isEmpty()
+                ? List.of()
+                : ejecutarConBloqueoEmpleado(empleado.getId(), () -> guardarLoteSinSolapamiento(aceptadas));
+        for (Cita cita : creadas) {
+            indiceOcupacion.registrar(cita);
+            invalidarCache(cita);
+            notificadorHorarios.publicar(cita, "creada");
+        }
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("creadas", creadas);
+        resultado.put("rechazadas", rechazadas);
+        return resultado;
+    }
+
+    /**
+     * Calcula los horarios de inicio de un combo de servicios seguidos para una fecha
+     * Carga en una sola consulta las citas del día de todos los empleados del combo y las recorre una vez
+     *
+     * @param request Fecha, empleado general y servicios del combo en orden
+     * @return Horarios de inicio del primer servicio en los que cabe el combo completo
+     * @throws RuntimeException Si los datos del combo no son válidos
+     */
+    public List<LocalTime> obtenerHorariosCombo(ComboCitasRequest request) {
+        if (request.getFecha() == null) {
+            throw new RuntimeException("La fecha es requerida");
+        }
+        List<PasoCombo> pasos = resolverPasosCombo(request);
+        AgendaCombo agenda = cargarAgendaCombo(pasos, request.getFecha());
+        int[] duraciones = pasos.stream().mapToInt(paso -> paso.servicio().getDuracionMinutos()).toArray();
+        return MotorDisponibilidad.calcularHorariosCombo(agenda.horarios(), agenda.ocupados(), duraciones);
+    }
+
+    /**
+     * Agenda un combo de servicios seguidos: cada cita inicia cuando termina la anterior
+     * Todas las citas se verifican en memoria contra la agenda del día y se insertan en lote en una sola
+     * transacción, de modo que otra reserva no puede quedar intercalada entre ellas: se crean todas o ninguna.
+     * Con el modo de bloqueo asesor se bloquean los empleados del combo en orden ascendente de ID
+     *
+     * @param request Datos del cliente, empleado general, inicio del primer servicio y servicios en orden
+     * @return Citas creadas en el orden del combo
+     * @throws HorarioOcupadoException Si alguno de los tramos ya está ocupado
+     * @throws RuntimeException Si alguna otra validación falla
+     */
+    public List<Cita> crearCombo(ComboCitasRequest request) {
+        // 1. Validar los datos del combo
+        if (request.getFechaHoraInicio() == null) {
+            throw new RuntimeException("La fecha y hora de inicio no pueden ser nulas");
+        }
+        if (request.getClienteDocumento() == null || request.getClienteDocumento().trim().isEmpty()) {
+            throw new RuntimeException("El documento del cliente es obligatorio");
+        }
+        List<PasoCombo> pasos = resolverPasosCombo(request);
+
+        // 2. Cargar la agenda del día de todos los empleados del combo
+        LocalDate fecha = request.getFechaHoraInicio().toLocalDate();
+        AgendaCombo agenda = cargarAgendaCombo(pasos, fecha);
+
+        // 3. Verificar cada tramo en memoria
+        Cliente cliente = validarCliente(request.getClienteNombre(), request.getClienteDocumento(), request.getClienteCelular());
+        List<Cita> citas = new ArrayList<>(pasos.size());
+        LocalDateTime inicio = request.getFechaHoraInicio();
+        for (int i = 0; i < pasos.size(); i++) {
+            PasoCombo paso = pasos.get(i);
+            LocalDateTime fin = inicio.plusMinutes(paso.servicio().getDuracionMinutos());
+            long desde = segundosDesde(fecha, inicio);
+            long hasta = segundosDesde(fecha, fin);
+            if (!MotorDisponibilidad.cabeEnHorario(agenda.horarios().get(i), desde, hasta)) {
+                throw new RuntimeException("El servicio " + paso.servicio().getNombre()
+                        + " queda fuera del horario laboral del empleado o en un festivo, vacaciones, permiso o incapacidad.");
+            }
+            if (!MotorDisponibilidad.estaLibre(agenda.ocupados().get(i), desde, hasta)) {
+                throw new HorarioOcupadoException(MENSAJE_HORARIO_OCUPADO);
+            }
+            citas.add(nuevaCita(cliente, paso.empleado(), paso.servicio(), inicio));
+            inicio = fin;
+        }
+
+        // 4. Insertar todas las citas en una transacción; la restricción de exclusión decide ante solicitudes simultáneas
+        Set<Long> empleadoIds = new TreeSet<>();
+        pasos.forEach(paso -> empleadoIds.add(paso.empleado().getId()));
+        List<Cita> creadas = ejecutarConBloqueoEmpleados(empleadoIds, () -> guardarLoteSinSolapamiento(citas));
+        for (Cita cita : creadas) {
+            indiceOcupacion.registrar(cita);
+            invalidarCache(cita);
+            notificadorHorarios.publicar(cita, "creada");
+        }
+        return creadas;
     }
 
     /**
      * Valida la disponibilidad de un empleado en un rango de tiempo específico
-     * Verifica que no existan citas que se solapen con el horario propuesto
+     * Verifica que no existan citas activas que se solapen con el horario propuesto
      *
      * @param empleadoId ID del empleado a validar
      * @param inicio Fecha y hora de inicio propuesta
@@ -129,8 +545,7 @@ public class CitaService {
      * @return true si el empleado está disponible, false si hay conflictos
      */
     private boolean validarDisponibilidad(Long empleadoId, LocalDateTime inicio, LocalDateTime fin) {
-        List<Cita> citasConflictivas = citaRepository.findCitasEnConflicto(empleadoId, inicio, fin);
-        return citasConflictivas.isEmpty();
+        return !citaRepository.existeConflicto(empleadoId, inicio, fin);
     }
 
     /**
@@ -167,6 +582,7 @@ public class CitaService {
     /**
      * Obtiene los horarios disponibles de un empleado para una fecha y servicio específicos
      * Calcula intervalos de 30 minutos dentro del horario laboral que estén disponibles
+     * El resultado se guarda en CacheDisponibilidad hasta que cambie una cita u horario de ese día
      *
      * @param empleadoId ID del empleado
      * @param fecha Fecha para la cual se buscan horarios disponibles
@@ -174,35 +590,41 @@ public class CitaService {
      * @return Lista de horarios disponibles para agendar
      */
     public List<LocalTime> obtenerHorariosDisponibles(Long empleadoId, LocalDate fecha, Long servicioId) {
+        return cacheDisponibilidad.obtener(empleadoId, fecha, servicioId,
+                () -> calcularHorariosDisponibles(empleadoId, fecha, servicioId));
+    }
+
+    /**
+     * Calcula los horarios disponibles sin pasar por la caché
+     * Carga una sola vez las citas del día y las recorre en memoria con MotorDisponibilidad,
+     * por lo que el número de consultas no crece con la duración del turno
+     * Visible en el paquete para que los benchmarks JMH (src/jmh) lo midan sin pasar por la caché
+     *
+     * @param empleadoId ID del empleado
+     * @param fecha Fecha para la cual se buscan horarios disponibles
+     * @param servicioId ID del servicio que determina la duración de la cita
+     * @return Lista inmutable de horarios disponibles para agendar
+     */
+    List<LocalTime> calcularHorariosDisponibles(Long empleadoId, LocalDate fecha, Long servicioId) {
         Servicio servicio = servicioRepository.findById(servicioId)
                 .orElseThrow(() -> new RuntimeException("Servicio no encontrado"));
 
-        List<HorarioLaboral> horariosLaborales = horarioLaboralRepository
-                .findByEmpleadoIdAndDiaSemanaAndActivoTrue(empleadoId, fecha.getDayOfWeek().getValue());
-
-        List<LocalTime> horariosDisponibles = new ArrayList<>();
-
-        // Para cada horario laboral del empleado en ese día
-        for (HorarioLaboral horario : horariosLaborales) {
-            LocalTime horaActual = horario.getHoraInicio();
+        // Horarios del día de la semana menos los días especiales (festivos, vacaciones, permisos) de esa fecha
+        List<HorarioLaboral> horariosLaborales = indiceDiasEspeciales.horariosEfectivos(empleadoId, fecha,
+                horarioLaboralRepository.findByEmpleadoIdAndDiaSemanaAndActivoTrue(empleadoId, fecha.getDayOfWeek().getValue()));
 
-            // Generar horarios cada 30 minutos mientras quepa el servicio completo
-            while (horaActual.plusMinutes(servicio.getDuracionMinutos()).isBefore(horario.getHoraFin()) ||
-                    horaActual.plusMinutes(servicio.getDuracionMinutos()).equals(horario.getHoraFin())) {
-
-                LocalDateTime inicioPropuesto = fecha.atTime(horaActual);
-                LocalDateTime finPropuesto = inicioPropuesto.plusMinutes(servicio.getDuracionMinutos());
-
-                // Verificar disponibilidad en este horario específico
-                if (validarDisponibilidad(empleadoId, inicioPropuesto, finPropuesto)) {
-                    horariosDisponibles.add(horaActual);
-                }
-
-                horaActual = horaActual.plusMinutes(30); // Intervalos de 30 minutos
-            }
+        // Si no trabaja ese día no hace falta consultar las citas
+        if (horariosLaborales.isEmpty()) {
+            return List.of();
         }
 
-        return horariosDisponibles;
+        // Una sola consulta con todas las citas que tocan el día, más las reservas temporales vigentes
+        List<RangoCitaDTO> citasDelDia = new ArrayList<>(citaRepository.findRangosEnIntervalo(
+                empleadoId, fecha.atStartOfDay(), fecha.atTime(LocalTime.MAX)));
+        citasDelDia.addAll(reservasTemporales.enIntervalo(List.of(empleadoId), fecha.atStartOfDay(), fecha.atTime(LocalTime.MAX)));
+
+        long[] ocupados = MotorDisponibilidad.fusionarOcupados(fecha, citasDelDia);
+        return List.copyOf(MotorDisponibilidad.calcularHorariosLibres(horariosLaborales, ocupados, servicio.getDuracionMinutos()));
     }
 
     /**
@@ -215,14 +637,190 @@ public class CitaService {
      * @throws RuntimeException Si la cita no existe
      */
     public Cita actualizarEstadoCita(Long citaId, String nuevoEstado) {
+        return actualizarEstadoCita(citaId, nuevoEstado, null);
+    }
+
+    /**
+     * Actualiza el estado de una cita verificando que nadie la haya modificado desde que se leyó
+     *
+     * @param citaId ID de la cita a actualizar
+     * @param nuevoEstado Nuevo estado a asignar a la cita
+     * @param versionEsperada Versión de la cita que tenía el cliente, o null para no verificarla
+     * @return Cita actualizada
+     * @throws ObjectOptimisticLockingFailureException Si la cita cambió desde la versión esperada
+     * @throws RuntimeException Si la cita no existe
+     */
+    public Cita actualizarEstadoCita(Long citaId, String nuevoEstado, Long versionEsperada) {
         return citaRepository.findById(citaId)
                 .map(cita -> {
+                    if (versionEsperada != null && !versionEsperada.equals(cita.getVersion())) {
+                        throw new ObjectOptimisticLockingFailureException(Cita.class, citaId);
+                    }
+                    String estadoAnterior = cita.getEstado();
                     cita.setEstado(nuevoEstado);
-                    return citaRepository.save(cita);
+                    Cita citaActualizada = guardarSinSolapamiento(cita);
+                    indiceOcupacion.cambiarEstado(citaActualizada, estadoAnterior);
+                    invalidarCache(citaActualizada);
+                    notificadorHorarios.publicar(citaActualizada, "actualizada");
+                    return citaActualizada;
                 })
                 .orElseThrow(() -> new RuntimeException("Cita no encontrada"));
     }
 
+    /**
+     * Cambia el estado de varias citas con un solo UPDATE
+     * Las citas se indican con la versión que tenía el cliente; las que otra persona modificó entretanto no se
+     * cambian y se devuelven como conflictos con su versión y estado actuales. Con empleadoId y fecha, en lugar
+     * de la lista, se cambian todas las citas programadas de ese empleado que inician ese día
+     *
+     * @param request Nuevo estado y citas con su versión, o empleado y fecha
+     * @return Mapa con las citas actualizadas ("actualizadas") y las que perdieron la carrera ("conflictos")
+     * @throws HorarioOcupadoException Si al reactivar alguna cita se solaparía con otra; en ese caso no se cambia ninguna
+     * @throws RuntimeException Si los datos de la solicitud no son válidos
+     */
+    public Map<String, Object> actualizarEstadoLote(CambioEstadoLoteRequest request) {
+        String nuevoEstado = request.getEstado();
+        if (nuevoEstado == null || !ESTADOS_VALIDOS.contains(nuevoEstado)) {
+            throw new RuntimeException("Estado no válido; debe ser programada, cumplida, cancelada o no_presento");
+        }
+        List<VersionCitaDTO> solicitadas = request.getCitas();
+        boolean porDia = solicitadas == null || solicitadas.isEmpty();
+        if (porDia && (request.getEmpleadoId() == null || request.getFecha() == null)) {
+            throw new RuntimeException("Indique las citas con su versión, o un empleadoId y una fecha");
+        }
+        if (!porDia && solicitadas.size() > MAX_CITAS_CAMBIO_ESTADO) {
+            throw new RuntimeException("Se pueden cambiar máximo " + MAX_CITAS_CAMBIO_ESTADO + " citas por solicitud");
+        }
+
+        // 1. Un solo UPDATE que devuelve cada fila cambiada con su estado anterior
+        List<Map<String, Object>> filas;
+        try {
+            if (porDia) {
+                filas = jdbcTemplate.queryForList(CAMBIAR_ESTADO_PROGRAMADAS_DEL_DIA, request.getEmpleadoId(),
+                        request.getFecha().atStartOfDay(), request.getFecha().plusDays(1).atStartOfDay(), nuevoEstado);
+            } else {
+                Long[] ids = new Long[solicitadas.size()];
+                Long[] versiones = new Long[solicitadas.size()];
+                for (int i = 0; i < solicitadas.size(); i++) {
+                    if (solicitadas.get(i).getId() == null || solicitadas.get(i).getVersion() == null) {
+                        throw new RuntimeException("Cada cita debe indicar id y version");
+                    }
+                    ids[i] = solicitadas.get(i).getId();
+                    versiones[i] = solicitadas.get(i).getVersion();
+                }
+                filas = jdbcTemplate.queryForList(CAMBIAR_ESTADO_POR_VERSION, ids, versiones, nuevoEstado);
+            }
+        } catch (DataIntegrityViolationException e) {
+            if (HorarioOcupadoException.esSolapamiento(e)) {
+                throw new HorarioOcupadoException("Alguna de las citas se solaparía con otra cita activa del empleado; no se cambió ninguna", e);
+            }
+            throw e;
+        }
+
+        // 2. Ajustar el índice, la caché y los suscriptores con las filas cambiadas
+        List<Map<String, Object>> actualizadas = new ArrayList<>(filas.size());
+        Set<Long> idsActualizados = new HashSet<>();
+        for (Map<String, Object> fila : filas) {
+            Cita cita = citaDeFila(fila);
+            String estadoAnterior = (String) fila.get("estado_anterior");
+            indiceOcupacion.cambiarEstado(cita, estadoAnterior);
+            invalidarCache(cita);
+            notificadorHorarios.publicar(cita, "actualizada");
+            idsActualizados.add(cita.getId());
+
+            Map<String, Object> actualizada = new LinkedHashMap<>();
+            actualizada.put("id", cita.getId());
+            actualizada.put("estadoAnterior", estadoAnterior);
+            actualizada.put("estado", cita.getEstado());
+            actualizada.put("version", cita.getVersion());
+            actualizadas.add(actualizada);
+        }
+
+        // 3. Informar las citas indicadas que no se cambiaron, con su versión y estado actuales
+        List<Map<String, Object>> conflictos = new ArrayList<>();
+        if (!porDia && idsActualizados.size() < solicitadas.size()) {
+            Long[] perdidas = solicitadas.stream().map(VersionCitaDTO::getId)
+                    .filter(id -> !idsActualizados.contains(id)).distinct().toArray(Long[]::new);
+            Map<Long, Map<String, Object>> actuales = new HashMap<>();
+            for (Map<String, Object> fila : jdbcTemplate.queryForList(CONSULTAR_VERSIONES, (Object) perdidas)) {
+                actuales.put(((Number) fila.get("id")).longValue(), fila);
+            }
+            for (Long id : perdidas) {
+                Map<String, Object> conflicto = new LinkedHashMap<>();
+                conflicto.put("id", id);
+                Map<String, Object> actual = actuales.get(id);
+                if (actual == null) {
+                    conflicto.put("motivo", "Cita no encontrada");
+                } else {
+                    conflicto.put("motivo", "La cita fue modificada por otra persona");
+                    conflicto.put("estadoActual", actual.get("estado"));
+                    conflicto.put("versionActual", actual.get("version"));
+                }
+                conflictos.add(conflicto);
+            }
+        }
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("actualizadas", actualizadas);
+        resultado.put("conflictos", conflictos);
+        return resultado;
+    }
+
+    /**
+     * Reprograma una cita programada a un nuevo inicio con el mismo empleado y servicio
+     * Actualiza las fechas de la misma fila en una sola transacción, sin eliminarla y volver a crearla, así el
+     * horario original no queda libre en ningún momento. Solo se verifica el nuevo rango y sin contar la propia
+     * cita, con las mismas garantías de concurrencia que la creación
+     *
+     * @param citaId ID de la cita a reprogramar
+     * @param nuevoInicio Nueva fecha y hora de inicio
+     * @return Cita reprogramada
+     * @throws HorarioOcupadoException Si otra cita o una reserva temporal ocupa el nuevo rango
+     * @throws RuntimeException Si la cita no existe, no está programada o el nuevo horario no es válido
+     */
+    public Cita reprogramarCita(Long citaId, LocalDateTime nuevoInicio) {
+        if (nuevoInicio == null) {
+            throw new RuntimeException("La nueva fecha y hora de inicio no pueden ser nulas");
+        }
+        Cita cita = citaRepository.findById(citaId)
+                .orElseThrow(() -> new RuntimeException("Cita no encontrada"));
+        if (!"programada".equals(cita.getEstado())) {
+            throw new RuntimeException("Solo se pueden reprogramar citas programadas");
+        }
+
+        Long empleadoId = cita.getEmpleado().getId();
+        LocalDateTime inicioAnterior = cita.getFechaHoraInicio();
+        LocalDateTime finAnterior = cita.getFechaHoraFin();
+        LocalDateTime nuevoFin = nuevoInicio.plus(Duration.between(inicioAnterior, finAnterior));
+
+        // El índice de ocupación incluye el rango actual de la propia cita, por eso aquí no se consulta
+        if (reservasTemporales.bloquea(empleadoId, nuevoInicio, nuevoFin, null)) {
+            throw new HorarioOcupadoException("El horario seleccionado está reservado temporalmente por otro cliente.");
+        }
+        if (!validarHorarioLaboral(empleadoId, nuevoInicio, nuevoFin)) {
+            throw new RuntimeException("El horario seleccionado está fuera del horario laboral del empleado.");
+        }
+        if (indiceDiasEspeciales.bloquea(empleadoId, nuevoInicio, nuevoFin)) {
+            throw new RuntimeException("El empleado no está disponible en el horario seleccionado por festivo, vacaciones, permiso o incapacidad.");
+        }
+
+        // Las fechas se cambian después de la verificación para que la consulta no escriba antes el cambio pendiente
+        Cita reprogramada = ejecutarConBloqueoEmpleado(empleadoId, () -> {
+            if ((bloqueoAsesor || verificarConflictoPrevio) &&
+                    citaRepository.existeConflictoExcluyendo(citaId, empleadoId, nuevoInicio, nuevoFin)) {
+                throw new HorarioOcupadoException(MENSAJE_HORARIO_OCUPADO);
+            }
+            cita.setFechaHoraInicio(nuevoInicio);
+            cita.setFechaHoraFin(nuevoFin);
+            return guardarSinSolapamiento(cita);
+        });
+        indiceOcupacion.mover(reprogramada, inicioAnterior, finAnterior);
+        cacheDisponibilidad.invalidarRango(empleadoId, inicioAnterior, finAnterior);
+        invalidarCache(reprogramada);
+        notificadorHorarios.publicarReprogramacion(reprogramada, inicioAnterior, finAnterior);
+        return reprogramada;
+    }
+
     /**
      * Elimina una cita del sistema
      *
@@ -233,5 +831,278 @@ public class CitaService {
         Cita cita = citaRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Cita no encontrada"));
         citaRepository.delete(cita);
+        indiceOcupacion.liberar(cita);
+        invalidarCache(cita);
+        notificadorHorarios.publicar(cita, "eliminada");
+    }
+
+    /**
+     * Resuelve el empleado y el servicio de cada paso de un combo, consultando una sola vez cada uno
+     */
+    private List<PasoCombo> resolverPasosCombo(ComboCitasRequest request) {
+        List<PasoComboDTO> solicitados = request.getServicios();
+        if (solicitados == null || solicitados.isEmpty()) {
+            throw new RuntimeException("El combo debe incluir al menos un servicio");
+        }
+        if (solicitados.size() > MAX_SERVICIOS_COMBO) {
+            throw new RuntimeException("Un combo puede incluir máximo " + MAX_SERVICIOS_COMBO + " servicios");
+        }
+
+        Map<Long, Empleado> empleados = new HashMap<>();
+        Map<Long, Servicio> servicios = new HashMap<>();
+        List<PasoCombo> pasos = new ArrayList<>(solicitados.size());
+        for (PasoComboDTO solicitado : solicitados) {
+            Long empleadoId = solicitado.getEmpleadoId() != null ? solicitado.getEmpleadoId() : request.getEmpleadoId();
+            if (empleadoId == null || solicitado.getServicioId() == null) {
+                throw new RuntimeException("Cada servicio del combo necesita servicioId y un empleado (propio o el general del combo)");
+            }
+            Empleado empleado = empleados.computeIfAbsent(empleadoId, id -> empleadoRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Empleado no encontrado con id: " + id)));
+            Servicio servicio = servicios.computeIfAbsent(solicitado.getServicioId(), id -> servicioRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Servicio no encontrado con id: " + id)));
+            pasos.add(new PasoCombo(empleado, servicio));
+        }
+        return pasos;
+    }
+
+    /**
+     * Carga los horarios efectivos y los intervalos ocupados (citas y reservas temporales) de cada paso de un combo
+     * Las citas de todos los empleados del combo se obtienen en una sola consulta
+     */
+    private AgendaCombo cargarAgendaCombo(List<PasoCombo> pasos, LocalDate fecha) {
+        Set<Long> empleadoIds = new LinkedHashSet<>();
+        pasos.forEach(paso -> empleadoIds.add(paso.empleado().getId()));
+        LocalDateTime inicioDia = fecha.atStartOfDay();
+        LocalDateTime finDia = fecha.plusDays(1).atStartOfDay();
+
+        List<OcupacionCitaDTO> ocupaciones = new ArrayList<>(citaRepository.findRangosDeEmpleadosEnIntervalo(empleadoIds, inicioDia, finDia));
+        ocupaciones.addAll(reservasTemporales.enIntervalo(empleadoIds, inicioDia, finDia));
+        Map<Long, List<OcupacionCitaDTO>> porEmpleado = ocupaciones.stream()
+                .collect(Collectors.groupingBy(OcupacionCitaDTO::getEmpleadoId));
+
+        Map<Long, List<HorarioLaboral>> horariosPorEmpleado = new HashMap<>();
+        Map<Long, long[]> ocupadosPorEmpleado = new HashMap<>();
+        for (Long empleadoId : empleadoIds) {
+            horariosPorEmpleado.put(empleadoId, indiceDiasEspeciales.horariosEfectivos(empleadoId, fecha,
+                    horarioLaboralRepository.findByEmpleadoIdAndDiaSemanaAndActivoTrue(empleadoId, fecha.getDayOfWeek().getValue())));
+            ocupadosPorEmpleado.put(empleadoId, MotorDisponibilidad.fusionarOcupados(fecha,
+                    porEmpleado.getOrDefault(empleadoId, List.of())));
+        }
+
+        List<List<HorarioLaboral>> horarios = new ArrayList<>(pasos.size());
+        List<long[]> ocupados = new ArrayList<>(pasos.size());
+        for (PasoCombo paso : pasos) {
+            horarios.add(horariosPorEmpleado.get(paso.empleado().getId()));
+            ocupados.add(ocupadosPorEmpleado.get(paso.empleado().getId()));
+        }
+        return new AgendaCombo(horarios, ocupados);
+    }
+
+    /**
+     * Ejecuta una reserva (verificación de conflictos y guardado) serializada por empleado
+     * Con el modo de bloqueo asesor la reserva corre en una transacción que primero toma
+     * pg_advisory_xact_lock(empleadoId); el bloqueo se libera al confirmar o revertir la transacción,
+     * y las reservas de empleados distintos siguen en paralelo. El tiempo de espera del bloqueo se
+     * publica en la métrica agenda.citas.bloqueo.espera, sin etiqueta por empleado para no crear una serie por cada uno
+     *
+     * @param empleadoId ID del empleado cuya agenda se modifica
+     * @param reserva Verificación y guardado a ejecutar
+     * @return Resultado de la reserva
+     */
+    private <T> T ejecutarConBloqueoEmpleado(Long empleadoId, Supplier<T> reserva) {
+        return ejecutarConBloqueoEmpleados(List.of(empleadoId), reserva);
+    }
+
+    /**
+     * Ejecuta una reserva que modifica la agenda de varios empleados a la vez
+     * Los bloqueos se toman en el orden recibido; quien llama debe entregarlos ordenados por ID para que
+     * dos reservas con los mismos empleados no se bloqueen mutuamente
+     *
+     * @param empleadoIds IDs de los empleados, ordenados ascendentemente
+     * @param reserva Verificación y guardado a ejecutar
+     * @return Resultado de la reserva
+     */
+    private <T> T ejecutarConBloqueoEmpleados(Collection<Long> empleadoIds, Supplier<T> reserva) {
+        if (!bloqueoAsesor) {
+            return reserva.get();
+        }
+        return transactionTemplate.execute(estado -> {
+            for (Long empleadoId : empleadoIds) {
+                long inicio = System.nanoTime();
+                citaRepository.bloquearEmpleado(empleadoId);
+                Timer.builder("agenda.citas.bloqueo.espera")
+                        .description("Tiempo de espera del bloqueo asesor de la agenda de un empleado")
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            }
+            return reserva.get();
+        });
+    }
+
+    /**
+     * Espera el resultado de una reserva encolada en ColaReservasEmpleado
+     * Los errores de la cola se relanzan tal cual para que el controlador los traduzca como en el camino directo.
+     * La espera está acotada: al vencer, la solicitud se marca como fallida para que la cola la descarte si aún
+     * no la ha guardado
+     *
+     * @param resultado Futuro devuelto por la cola
+     * @return Cita guardada
+     * @throws ReservaEnEsperaException Si la cola no guardó la cita a tiempo
+     */
+    private Cita esperarCola(CompletableFuture<Cita> resultado) {
+        try {
+            return resultado.get(esperaColaSegundos, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            if (resultado.completeExceptionally(new ReservaEnEsperaException(MENSAJE_COLA_SATURADA, e))) {
+                throw new ReservaEnEsperaException(MENSAJE_COLA_SATURADA, e);
+            }
+            // La cola terminó justo al vencer la espera
+            return esperarCola(resultado);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            resultado.completeExceptionally(new ReservaEnEsperaException(MENSAJE_COLA_SATURADA, e));
+            throw new ReservaEnEsperaException(MENSAJE_COLA_SATURADA, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new ReservaEnEsperaException(MENSAJE_COLA_SATURADA, e.getCause());
+        }
+    }
+
+    /**
+     * Guarda una cita traduciendo la violación de la restricción de exclusión a HorarioOcupadoException
+     * Cubre el caso en que otra solicitud reservó el mismo horario después de la verificación previa.
+     * El INSERT se fuerza con saveAndFlush: con el bloqueo asesor esta transacción participa de la exterior y,
+     * con ids por secuencia, save() lo dejaría para el commit exterior, fuera de este catch
+     *
+     * @param cita Cita a guardar
+     * @return Cita guardada
+     * @throws HorarioOcupadoException Si la base de datos rechaza la cita por solaparse con otra
+     */
+    private Cita guardarSinSolapamiento(Cita cita) {
+        try {
+            Cita guardada = transactionTemplate.execute(estado -> {
+                asignarCliente(cita);
+                return citaRepository.saveAndFlush(cita);
+            });
+            filtroClientes.registrar(cita.getClienteDocumento(), cita.getClienteCelular());
+            return guardada;
+        } catch (DataIntegrityViolationException e) {
+            if (HorarioOcupadoException.esSolapamiento(e)) {
+                throw new HorarioOcupadoException(MENSAJE_HORARIO_OCUPADO, e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Guarda varias citas en una sola transacción con inserciones JDBC por lotes
+     * Si alguna se solapa con otra cita la transacción se revierte completa
+     *
+     * @param citas Citas a guardar
+     * @return Citas guardadas
+     * @throws HorarioOcupadoException Si la base de datos rechaza alguna cita por solaparse con otra
+     */
+    private List<Cita> guardarLoteSinSolapamiento(List<Cita> citas) {
+        try {
+            List<Cita> guardadas = transactionTemplate.execute(estado -> {
+                citas.forEach(this::asignarCliente);
+                return citaRepository.saveAllAndFlush(citas);
+            });
+            guardadas.forEach(cita -> filtroClientes.registrar(cita.getClienteDocumento(), cita.getClienteCelular()));
+            return guardadas;
+        } catch (DataIntegrityViolationException e) {
+            if (HorarioOcupadoException.esSolapamiento(e)) {
+                throw new HorarioOcupadoException(MENSAJE_HORARIO_OCUPADO, e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Valida los datos del cliente de una reserva y lo arma en memoria, sin ID
+     * El ID se asigna al guardar la cita, en su misma transacción, con {@link #asignarCliente}
+     */
+    private Cliente validarCliente(String nombre, String documento, String celular) {
+        if (nombre == null || nombre.trim().isEmpty()) {
+            throw new RuntimeException("El nombre del cliente es obligatorio");
+        }
+        if (celular == null || celular.trim().isEmpty()) {
+            throw new RuntimeException("El celular del cliente es obligatorio");
+        }
+        return new Cliente(null, documento, celular, nombre);
+    }
+
+    /**
+     * Asigna a la cita su cliente registrado, creándolo si es la primera vez
+     * Debe ejecutarse dentro de la transacción que guarda la cita. Se asocia la fila guardada y no los datos de
+     * la solicitud: si el cliente ya existía conserva su nombre, y la respuesta y los eventos deben mostrarlo igual
+     */
+    private void asignarCliente(Cita cita) {
+        Cliente cliente = cita.getCliente();
+        if (cliente.getId() == null) {
+            Long clienteId = clienteRepository.obtenerOCrear(cliente.getDocumento(), cliente.getCelular(), cliente.getNombre());
+            cita.setCliente(clienteRepository.findById(clienteId)
+                    .orElseThrow(() -> new RuntimeException("No fue posible registrar el cliente")));
+        }
     }
+
+    /**
+     * Crea una cita programada sin guardar, con la fecha de fin y el costo tomados del servicio
+     */
+    private Cita nuevaCita(Cliente cliente, Empleado empleado, Servicio servicio, LocalDateTime fechaHoraInicio) {
+        Cita cita = new Cita();
+        cita.setCliente(cliente);
+        cita.setEmpleado(empleado);
+        cita.setServicio(servicio);
+        cita.setFechaHoraInicio(fechaHoraInicio);
+        cita.setFechaHoraFin(fechaHoraInicio.plusMinutes(servicio.getDuracionMinutos()));
+        cita.setCostoTotal(servicio.getCosto());
+        cita.setRecordatorioEnviado(false);
+        return cita;
+    }
+
+    /**
+     * Arma una cita sin estado de persistencia con las columnas devueltas por un cambio de estado por lote
+     * Solo tiene los datos que usan el índice de ocupación, la caché y las notificaciones
+     */
+    private Cita citaDeFila(Map<String, Object> fila) {
+        Empleado empleado = new Empleado();
+        empleado.setId(((Number) fila.get("empleado_id")).longValue());
+        Cita cita = new Cita();
+        cita.setId(((Number) fila.get("id")).longValue());
+        cita.setEmpleado(empleado);
+        cita.setFechaHoraInicio(((Timestamp) fila.get("fecha_hora_inicio")).toLocalDateTime());
+        cita.setFechaHoraFin(((Timestamp) fila.get("fecha_hora_fin")).toLocalDateTime());
+        cita.setEstado((String) fila.get("estado"));
+        cita.setVersion(((Number) fila.get("version")).longValue());
+        return cita;
+    }
+
+    /**
+     * Convierte un momento a segundos relativos al inicio de un día, igual que MotorDisponibilidad
+     */
+    private long segundosDesde(LocalDate fecha, LocalDateTime momento) {
+        return Duration.between(fecha.atStartOfDay(), momento).getSeconds();
+    }
+
+    /**
+     * Descarta la disponibilidad en caché de los días que abarca una cita modificada
+     *
+     * @param cita Cita creada, modificada o eliminada
+     */
+    private void invalidarCache(Cita cita) {
+        cacheDisponibilidad.invalidarRango(cita.getEmpleado().getId(), cita.getFechaHoraInicio(), cita.getFechaHoraFin());
+    }
+
+    /**
+     * Empleado y servicio de un paso de un combo
+     */
+    private record PasoCombo(Empleado empleado, Servicio servicio) {}
+
+    /**
+     * Horarios efectivos e intervalos ocupados del empleado de cada paso de un combo, en el orden del combo
+     */
+    private record AgendaCombo(List<List<HorarioLaboral>> horarios, List<long[]> ocupados) {}
 }
\ No newline at end of file
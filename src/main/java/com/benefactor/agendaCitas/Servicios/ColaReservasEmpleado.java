@@ -0,0 +1,311 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.benefactor.agendaCitas.Repository.CitaRepository;
+import com.benefactor.agendaCitas.Repository.ClienteRepository;
+import com.benefactor.agendaCitas.model.Cita;
+import com.benefactor.agendaCitas.model.Cliente;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cola de reservas con un solo escritor por empleado
+ *
+ * <p>Modo opcional de CitaService (agenda.citas.cola-empleado) para las aperturas de agenda, cuando cientos
+ * de solicitudes simultáneas compiten por los mismos pocos empleados. Cada reserva se deja en el buzón de
+ * su empleado y el llamador recibe un CompletableFuture. Un solo hilo a la vez vacía cada buzón: valida las
+ * reservas en orden contra la vista en memoria (índice de ocupación, reservas temporales y las reservas ya
+ * aceptadas del mismo lote) y guarda las aceptadas en lotes pequeños, en una transacción por lote.</p>
+ *
+ * <p>Así las reservas de un mismo empleado dejan de competir entre sí por filas y conexiones: se procesan en
+ * secuencia y con los datos del empleado recientes en memoria. Los empleados distintos siguen en paralelo,
+ * repartidos en un grupo pequeño de hilos propio. La restricción de exclusión de la tabla cita sigue siendo
+ * la que decide ante reservas hechas por otros caminos.</p>
+ */
+@Service
+public class ColaReservasEmpleado {
+
+    private final Map<Long, Buzon> buzones = new ConcurrentHashMap<>();
+    private final ExecutorService escritores;
+    private final int tamanoLote;
+    private final int capacidadBuzon;
+    private final Timer escrituras;
+    private final DistributionSummary tamanos;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private ClienteRepository clienteRepository;
+
+    @Autowired
+    private IndiceOcupacion indiceOcupacion;
+
+    @Autowired
+    private FiltroClientes filtroClientes;
+
+    @Autowired
+    private ReservasTemporales reservasTemporales;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    public ColaReservasEmpleado(MeterRegistry registry,
+                                @Value("${agenda.citas.cola.hilos:4}") int hilos,
+                                @Value("${agenda.citas.cola.tamano-lote:20}") int tamanoLote,
+                                @Value("${agenda.citas.cola.capacidad:500}") int capacidadBuzon) {
+        this.tamanoLote = tamanoLote;
+        this.capacidadBuzon = capacidadBuzon;
+        this.escritores = Executors.newFixedThreadPool(hilos, tarea -> {
+            Thread hilo = new Thread(tarea, "reservas-empleado");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+
+        this.escrituras = Timer.builder("agenda.citas.cola.escritura")
+                .description("Tiempo de guardar cada lote de reservas de un empleado").register(registry);
+        this.tamanos = DistributionSummary.builder("agenda.citas.cola.lote")
+                .description("Reservas aceptadas por lote guardado").register(registry);
+    }
+
+    /**
+     * Deja una cita ya validada (empleado, servicio, horario laboral y días especiales) en el buzón de su empleado
+     *
+     * @param cita Cita a guardar
+     * @param reservaPropia ID de la reserva temporal que se está confirmando, o null
+     * @return Futuro que se completa con la cita guardada, o con HorarioOcupadoException si el horario ya está ocupado
+     */
+    public CompletableFuture<Cita> encolar(Cita cita, String reservaPropia) {
+        Solicitud solicitud = new Solicitud(cita, reservaPropia, new CompletableFuture<>());
+        Buzon buzon = buzones.computeIfAbsent(cita.getEmpleado().getId(), id -> new Buzon(capacidadBuzon));
+        if (!buzon.pendientes.offer(solicitud)) {
+            solicitud.resultado().completeExceptionally(
+                    new ReservaEnEsperaException("Hay demasiadas reservas en proceso para este empleado; intente más tarde"));
+            return solicitud.resultado();
+        }
+        programar(buzon);
+        return solicitud.resultado();
+    }
+
+    /**
+     * Detiene los hilos de escritura al apagar la aplicación
+     */
+    @PreDestroy
+    public void cerrar() {
+        escritores.shutdown();
+    }
+
+    // ========== MÉTODOS AUXILIARES ==========
+
+    /**
+     * Programa el vaciado del buzón si ningún hilo lo está procesando
+     */
+    private void programar(Buzon buzon) {
+        if (buzon.procesando.compareAndSet(false, true)) {
+            try {
+                escritores.execute(() -> vaciar(buzon));
+            } catch (RejectedExecutionException e) {
+                buzon.procesando.set(false);
+                fallarPendientes(buzon, new ReservaEnEsperaException("El servicio de reservas se está deteniendo", e));
+            }
+        }
+    }
+
+    /**
+     * Procesa el buzón lote por lote hasta dejarlo vacío; solo un hilo a la vez ejecuta este método por buzón
+     */
+    private void vaciar(Buzon buzon) {
+        List<Solicitud> lote = new ArrayList<>(tamanoLote);
+        try {
+            while (buzon.pendientes.drainTo(lote, tamanoLote) > 0) {
+                procesarLote(lote);
+                lote.clear();
+            }
+        } catch (Throwable e) {
+            // Ninguna solicitud puede quedar sin respuesta: se fallan las del lote en curso y las que esperaban
+            System.err.println("Error procesando reservas del buzón: " + e);
+            ReservaEnEsperaException error = new ReservaEnEsperaException(CitaService.MENSAJE_COLA_SATURADA, e);
+            lote.forEach(solicitud -> solicitud.resultado().completeExceptionally(error));
+            fallarPendientes(buzon, error);
+        } finally {
+            buzon.procesando.set(false);
+        }
+        // Una reserva pudo llegar entre el último drainTo y la liberación del indicador
+        if (!buzon.pendientes.isEmpty()) {
+            programar(buzon);
+        }
+    }
+
+    /**
+     * Valida en orden las reservas de un lote y guarda las aceptadas en una sola transacción
+     * Si la base de datos rechaza el lote por un solapamiento creado por otro camino, se guardan una por una
+     */
+    private void procesarLote(List<Solicitud> lote) {
+        List<Solicitud> aceptadas = new ArrayList<>(lote.size());
+        for (Solicitud solicitud : lote) {
+            // El llamador dejó de esperar (su espera venció): la reserva se descarta sin guardarla
+            if (solicitud.resultado().isDone()) {
+                continue;
+            }
+            try {
+                if (estaOcupado(solicitud, aceptadas)) {
+                    solicitud.resultado().completeExceptionally(new HorarioOcupadoException(CitaService.MENSAJE_HORARIO_OCUPADO));
+                } else {
+                    aceptadas.add(solicitud);
+                }
+            } catch (RuntimeException e) {
+                solicitud.resultado().completeExceptionally(e);
+            }
+        }
+        if (aceptadas.isEmpty()) {
+            return;
+        }
+
+        List<Cita> citas = aceptadas.stream().map(Solicitud::cita).toList();
+        long inicio = System.nanoTime();
+        List<Cita> guardadas;
+        try {
+            guardadas = transactionTemplate.execute(estado -> {
+                citas.forEach(this::asignarCliente);
+                return citaRepository.saveAllAndFlush(citas);
+            });
+        } catch (DataIntegrityViolationException e) {
+            aceptadas.forEach(this::guardarSola);
+            return;
+        } catch (RuntimeException e) {
+            aceptadas.forEach(solicitud -> solicitud.resultado().completeExceptionally(e));
+            return;
+        } finally {
+            escrituras.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            tamanos.record(aceptadas.size());
+        }
+        // Fuera del try: el lote ya se confirmó y ningún error posterior debe reportarlo como fallido
+        for (int i = 0; i < aceptadas.size(); i++) {
+            completar(aceptadas.get(i), guardadas.get(i));
+        }
+    }
+
+    /**
+     * Verifica una reserva contra la vista en memoria y, si el índice no cubre el día o marca el rango como ocupado,
+     * contra la base de datos
+     */
+    private boolean estaOcupado(Solicitud solicitud, List<Solicitud> aceptadas) {
+        Cita cita = solicitud.cita();
+        Long empleadoId = cita.getEmpleado().getId();
+        for (Solicitud aceptada : aceptadas) {
+            if (aceptada.cita().getFechaHoraInicio().isBefore(cita.getFechaHoraFin())
+                    && aceptada.cita().getFechaHoraFin().isAfter(cita.getFechaHoraInicio())) {
+                return true;
+            }
+        }
+        if (reservasTemporales.bloquea(empleadoId, cita.getFechaHoraInicio(), cita.getFechaHoraFin(), solicitud.reservaPropia())) {
+            return true;
+        }
+        // El índice solo evita la consulta cuando el rango está libre; si lo marca ocupado puede estar desactualizado
+        boolean cubierto = indiceOcupacion.cubre(cita.getFechaHoraInicio().toLocalDate())
+                && indiceOcupacion.cubre(cita.getFechaHoraFin().toLocalDate());
+        if (cubierto && !indiceOcupacion.estaOcupado(empleadoId, cita.getFechaHoraInicio(), cita.getFechaHoraFin())) {
+            return false;
+        }
+        return citaRepository.existeConflicto(empleadoId, cita.getFechaHoraInicio(), cita.getFechaHoraFin());
+    }
+
+    /**
+     * Guarda una reserva de un lote rechazado en su propia transacción
+     */
+    private void guardarSola(Solicitud solicitud) {
+        Cita cita = solicitud.cita();
+        // El id y la versión asignados durante el lote revertido ya no existen, y el cliente pudo crearse en él:
+        // se vuelve a resolver a partir de sus datos sin tocar la entidad asociada en el lote
+        cita.setId(null);
+        cita.setVersion(null);
+        Cliente cliente = cita.getCliente();
+        cita.setCliente(new Cliente(null, cliente.getDocumento(), cliente.getCelular(), cliente.getNombre()));
+        try {
+            completar(solicitud, transactionTemplate.execute(estado -> {
+                asignarCliente(cita);
+                return citaRepository.saveAndFlush(cita);
+            }));
+        } catch (DataIntegrityViolationException e) {
+            solicitud.resultado().completeExceptionally(HorarioOcupadoException.esSolapamiento(e)
+                    ? new HorarioOcupadoException(CitaService.MENSAJE_HORARIO_OCUPADO, e)
+                    : e);
+        } catch (RuntimeException e) {
+            solicitud.resultado().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Asigna a la cita su cliente registrado, creándolo si es la primera vez, dentro de la transacción del lote
+     * Se asocia la fila guardada para que la respuesta muestre el nombre que conserva un cliente ya existente
+     */
+    private void asignarCliente(Cita cita) {
+        Cliente cliente = cita.getCliente();
+        if (cliente.getId() == null) {
+            Long clienteId = clienteRepository.obtenerOCrear(cliente.getDocumento(), cliente.getCelular(), cliente.getNombre());
+            cita.setCliente(clienteRepository.findById(clienteId)
+                    .orElseThrow(() -> new RuntimeException("No fue posible registrar el cliente")));
+        }
+    }
+
+    /**
+     * Registra la cita guardada en el índice y en el filtro de clientes antes del siguiente lote y entrega el
+     * resultado al llamador
+     */
+    private void completar(Solicitud solicitud, Cita guardada) {
+        try {
+            indiceOcupacion.registrar(guardada);
+            filtroClientes.registrar(guardada.getClienteDocumento(), guardada.getClienteCelular());
+        } catch (RuntimeException e) {
+            // La cita ya está guardada; la vista en memoria se corrige en la siguiente reconstrucción
+            System.err.println("Error registrando la cita " + guardada.getId() + " en memoria: " + e.getMessage());
+        }
+        solicitud.resultado().complete(guardada);
+    }
+
+    /**
+     * Falla las solicitudes que aún esperan en el buzón
+     */
+    private void fallarPendientes(Buzon buzon, RuntimeException error) {
+        Solicitud solicitud;
+        while ((solicitud = buzon.pendientes.poll()) != null) {
+            solicitud.resultado().completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Reserva pendiente con el futuro que espera el llamador
+     */
+    private record Solicitud(Cita cita, String reservaPropia, CompletableFuture<Cita> resultado) {}
+
+    /**
+     * Reservas pendientes de un empleado e indicador de que un hilo las está procesando
+     */
+    private static class Buzon {
+        private final BlockingQueue<Solicitud> pendientes;
+        private final AtomicBoolean procesando = new AtomicBoolean(false);
+
+        Buzon(int capacidad) {
+            this.pendientes = new ArrayBlockingQueue<>(capacidad);
+        }
+    }
+}
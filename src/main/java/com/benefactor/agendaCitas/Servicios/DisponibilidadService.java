@@ -0,0 +1,567 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.benefactor.agendaCitas.DTO.CandidatoHorarioDTO;
+import com.benefactor.agendaCitas.DTO.HorarioLibreDTO;
+import com.benefactor.agendaCitas.DTO.OcupacionCitaDTO;
+import com.benefactor.agendaCitas.DTO.RangoCitaDTO;
+import com.benefactor.agendaCitas.DTO.VeredictoHorarioDTO;
+import com.benefactor.agendaCitas.Repository.CitaRepository;
+import com.benefactor.agendaCitas.Repository.EmpleadoRepository;
+import com.benefactor.agendaCitas.Repository.HorarioLaboralRepository;
+import com.benefactor.agendaCitas.Repository.ServicioRepository;
+import com.benefactor.agendaCitas.model.Empleado;
+import com.benefactor.agendaCitas.model.HorarioLaboral;
+import com.benefactor.agendaCitas.model.Servicio;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Servicio para búsquedas de disponibilidad que combinan varios empleados o varios días
+ * Reutiliza MotorDisponibilidad para calcular los horarios libres de cada empleado y carga
+ * los datos por lotes para que el número de consultas no dependa de la cantidad de empleados
+ *
+ * @Service Indica que esta clase es un componente de servicio de Spring
+ */
+@Service
+public class DisponibilidadService {
+
+    /**
+     * Máximo de días que puede abarcar una búsqueda de disponibilidad
+     */
+    private static final int MAX_DIAS_BUSQUEDA = 31;
+
+    /**
+     * Máximo de resultados que puede solicitar una búsqueda
+     */
+    private static final int MAX_RESULTADOS = 50;
+
+    /**
+     * Cantidad de días que se cargan por consulta al buscar la próxima disponibilidad
+     */
+    private static final int DIAS_POR_BLOQUE = 7;
+
+    /**
+     * Máximo de horarios candidatos que se pueden verificar en una sola solicitud
+     */
+    private static final int MAX_CANDIDATOS_LOTE = 300;
+
+    /**
+     * Cantidad máxima de días hacia adelante que revisa la búsqueda de próxima disponibilidad
+     */
+    @Value("${agenda.disponibilidad.horizonte-dias:60}")
+    private int horizonteDias;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private EmpleadoRepository empleadoRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private HorarioLaboralRepository horarioLaboralRepository;
+
+    @Autowired
+    private IndiceDiasEspeciales indiceDiasEspeciales;
+
+    @Autowired
+    private ReservasTemporales reservasTemporales;
+
+    /**
+     * Busca los primeros horarios libres para un servicio entre todos los empleados activos
+     * Recorre los días en orden; para cada día calcula la lista de horarios libres de cada empleado
+     * y las combina con una cola de prioridad, deteniéndose en cuanto reúne la cantidad solicitada
+     *
+     * @param servicioId ID del servicio que determina la duración de la cita
+     * @param fechaInicio Primer día de la búsqueda
+     * @param fechaFin Último día de la búsqueda (inclusive)
+     * @param limite Cantidad máxima de horarios a retornar
+     * @return Horarios libres ordenados por fecha y hora de inicio
+     * @throws RuntimeException Si los parámetros no son válidos o el servicio no existe
+     */
+    public List<HorarioLibreDTO> buscarPrimerosDisponibles(Long servicioId, LocalDate fechaInicio,
+                                                           LocalDate fechaFin, int limite) {
+        if (fechaFin.isBefore(fechaInicio)) {
+            throw new RuntimeException("La fecha de fin no puede ser anterior a la fecha de inicio");
+        }
+        if (ChronoUnit.DAYS.between(fechaInicio, fechaFin) >= MAX_DIAS_BUSQUEDA) {
+            throw new RuntimeException("El rango de búsqueda no puede superar " + MAX_DIAS_BUSQUEDA + " días");
+        }
+        if (limite < 1 || limite > MAX_RESULTADOS) {
+            throw new RuntimeException("El límite debe estar entre 1 y " + MAX_RESULTADOS);
+        }
+
+        Servicio servicio = servicioRepository.findById(servicioId)
+                .orElseThrow(() -> new RuntimeException("Servicio no encontrado con id: " + servicioId));
+
+        // Empleados activos y sus horarios laborales agrupados por día de la semana (una consulta cada uno)
+        Map<Long, Empleado> empleados = empleadoRepository.findByActivoTrue().stream()
+                .collect(Collectors.toMap(Empleado::getId, empleado -> empleado));
+        if (empleados.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Map<Integer, List<HorarioLaboral>>> horariosPorEmpleado = agruparHorarios(
+                horarioLaboralRepository.findByEmpleadoIdInAndActivoTrue(empleados.keySet()));
+
+        LocalDateTime ahora = LocalDateTime.now();
+        List<HorarioLibreDTO> resultado = new ArrayList<>();
+
+        for (LocalDate fecha = fechaInicio; !fecha.isAfter(fechaFin) && resultado.size() < limite; fecha = fecha.plusDays(1)) {
+            int diaSemana = fecha.getDayOfWeek().getValue();
+
+            // Empleados que trabajan este día, descontando días especiales; si ninguno trabaja no se consulta la base de datos
+            Map<Long, List<HorarioLaboral>> horariosDelDia = new HashMap<>();
+            for (Map.Entry<Long, Map<Integer, List<HorarioLaboral>>> entry : horariosPorEmpleado.entrySet()) {
+                List<HorarioLaboral> plantilla = entry.getValue().get(diaSemana);
+                if (plantilla != null) {
+                    List<HorarioLaboral> efectivos = indiceDiasEspeciales.horariosEfectivos(entry.getKey(), fecha, plantilla);
+                    if (!efectivos.isEmpty()) {
+                        horariosDelDia.put(entry.getKey(), efectivos);
+                    }
+                }
+            }
+            if (horariosDelDia.isEmpty()) {
+                continue;
+            }
+            List<Long> empleadosDelDia = new ArrayList<>(horariosDelDia.keySet());
+
+            // Una sola consulta con las citas del día de todos los empleados que trabajan
+            Map<Long, List<OcupacionCitaDTO>> citasPorEmpleado =
+                    ocupacionesEnIntervalo(empleadosDelDia, fecha.atStartOfDay(), fecha.atTime(LocalTime.MAX))
+                    .stream()
+                    .collect(Collectors.groupingBy(OcupacionCitaDTO::getEmpleadoId));
+
+            // Cola de prioridad con un cursor por empleado, ordenada por el siguiente horario libre
+            PriorityQueue<CursorHorarios> cola = new PriorityQueue<>(
+                    Comparator.comparing((CursorHorarios cursor) -> cursor.actual())
+                            .thenComparing(cursor -> cursor.empleadoId));
+
+            for (Long empleadoId : empleadosDelDia) {
+                long[] ocupados = MotorDisponibilidad.fusionarOcupados(
+                        fecha, citasPorEmpleado.getOrDefault(empleadoId, List.of()));
+                List<LocalTime> libres = MotorDisponibilidad.calcularHorariosLibres(
+                        horariosDelDia.get(empleadoId), ocupados, servicio.getDuracionMinutos());
+
+                CursorHorarios cursor = new CursorHorarios(empleadoId, fecha, ordenarSinDuplicados(libres));
+                cursor.saltarAnterioresA(ahora);
+                if (cursor.tieneActual()) {
+                    cola.add(cursor);
+                }
+            }
+
+            while (!cola.isEmpty() && resultado.size() < limite) {
+                CursorHorarios cursor = cola.poll();
+                LocalDateTime inicio = cursor.actual();
+                resultado.add(new HorarioLibreDTO(cursor.empleadoId, empleados.get(cursor.empleadoId).getNombre(),
+                        inicio, inicio.plusMinutes(servicio.getDuracionMinutos())));
+
+                cursor.avanzar();
+                if (cursor.tieneActual()) {
+                    cola.add(cursor);
+                }
+            }
+        }
+
+        return resultado;
+    }
+
+    /**
+     * Calcula para un mes qué días tienen al menos un horario libre para un servicio
+     * Usa una sola consulta de citas para todo el mes y la plantilla semanal de horarios laborales,
+     * en lugar de calcular cada día por separado contra la base de datos
+     *
+     * <p>El resultado codifica los días como una máscara de bits: el bit 0 corresponde al día 1,
+     * el bit 1 al día 2 y así sucesivamente. Los días anteriores a hoy nunca se marcan.</p>
+     *
+     * @param servicioId ID del servicio que determina la duración de la cita
+     * @param mes Mes a consultar
+     * @param empleadoId ID de un empleado para limitar el cálculo (opcional, null para todos los activos)
+     * @param porEmpleado Si es true incluye también la máscara de cada empleado
+     * @return Mapa con la máscara del mes y, opcionalmente, la de cada empleado
+     * @throws RuntimeException Si el servicio no existe
+     */
+    public Map<String, Object> calcularResumenMensual(Long servicioId, YearMonth mes, Long empleadoId, boolean porEmpleado) {
+        Servicio servicio = servicioRepository.findById(servicioId)
+                .orElseThrow(() -> new RuntimeException("Servicio no encontrado con id: " + servicioId));
+
+        List<Long> empleadoIds = empleadoId != null
+                ? List.of(empleadoId)
+                : empleadoRepository.findByActivoTrue().stream().map(Empleado::getId).collect(Collectors.toList());
+
+        Map<String, Object> resumen = new HashMap<>();
+        resumen.put("mes", mes.toString());
+        resumen.put("servicioId", servicioId);
+
+        Map<Long, Integer> mascarasPorEmpleado = new HashMap<>();
+        int mascaraMes = 0;
+
+        if (!empleadoIds.isEmpty()) {
+            Map<Long, Map<Integer, List<HorarioLaboral>>> horariosPorEmpleado = agruparHorarios(
+                    horarioLaboralRepository.findByEmpleadoIdInAndActivoTrue(empleadoIds));
+
+            LocalDate primerDia = mes.atDay(1);
+            LocalDate ultimoDia = mes.atEndOfMonth();
+
+            // Una sola consulta con las citas de todo el mes, repartidas luego por empleado y día
+            Map<Long, Map<LocalDate, List<OcupacionCitaDTO>>> citasPorEmpleadoYDia = agruparCitasPorDia(
+                    ocupacionesEnIntervalo(empleadoIds, primerDia.atStartOfDay(), ultimoDia.atTime(LocalTime.MAX)),
+                    primerDia, ultimoDia);
+
+            LocalDateTime ahora = LocalDateTime.now();
+            LocalDate hoy = ahora.toLocalDate();
+
+            for (Long id : empleadoIds) {
+                Map<Integer, List<HorarioLaboral>> horarios = horariosPorEmpleado.getOrDefault(id, Map.of());
+                Map<LocalDate, List<OcupacionCitaDTO>> citasPorDia = citasPorEmpleadoYDia.getOrDefault(id, Map.of());
+                int mascara = 0;
+
+                for (LocalDate fecha = primerDia.isBefore(hoy) ? hoy : primerDia; !fecha.isAfter(ultimoDia); fecha = fecha.plusDays(1)) {
+                    List<HorarioLaboral> plantilla = horarios.get(fecha.getDayOfWeek().getValue());
+                    if (plantilla == null) {
+                        continue;
+                    }
+                    List<HorarioLaboral> horariosDelDia = indiceDiasEspeciales.horariosEfectivos(id, fecha, plantilla);
+                    if (horariosDelDia.isEmpty()) {
+                        continue;
+                    }
+                    long[] ocupados = MotorDisponibilidad.fusionarOcupados(fecha, citasPorDia.getOrDefault(fecha, List.of()));
+
+                    boolean disponible;
+                    if (fecha.equals(hoy)) {
+                        // Para hoy solo cuentan los horarios que aún no han comenzado
+                        disponible = MotorDisponibilidad.calcularHorariosLibres(horariosDelDia, ocupados, servicio.getDuracionMinutos())
+                                .stream().anyMatch(hora -> !hora.isBefore(ahora.toLocalTime()));
+                    } else {
+                        disponible = MotorDisponibilidad.existeHorarioLibre(horariosDelDia, ocupados, servicio.getDuracionMinutos());
+                    }
+                    if (disponible) {
+                        mascara |= 1 << (fecha.getDayOfMonth() - 1);
+                    }
+                }
+
+                mascarasPorEmpleado.put(id, mascara);
+                mascaraMes |= mascara;
+            }
+        }
+
+        resumen.put("diasDisponibles", mascaraMes);
+        if (porEmpleado) {
+            resumen.put("empleados", mascarasPorEmpleado);
+        }
+        return resumen;
+    }
+
+    /**
+     * Busca el próximo horario libre de un empleado para un servicio a partir de este momento
+     * Avanza día por día hasta el horizonte configurado; las citas se cargan en bloques de una semana
+     * y los días sin horario laboral se saltan sin consultar la base de datos
+     *
+     * @param servicioId ID del servicio que determina la duración de la cita
+     * @param empleadoId ID del empleado
+     * @return Optional con el primer horario libre, o vacío si no hay ninguno dentro del horizonte
+     * @throws RuntimeException Si el servicio o el empleado no existen
+     */
+    public Optional<HorarioLibreDTO> buscarProximaDisponibilidad(Long servicioId, Long empleadoId) {
+        Servicio servicio = servicioRepository.findById(servicioId)
+                .orElseThrow(() -> new RuntimeException("Servicio no encontrado con id: " + servicioId));
+        Empleado empleado = empleadoRepository.findById(empleadoId)
+                .orElseThrow(() -> new RuntimeException("Empleado no encontrado con id: " + empleadoId));
+
+        Map<Integer, List<HorarioLaboral>> horariosPorDia = agruparHorarios(
+                horarioLaboralRepository.findByEmpleadoIdAndActivoTrue(empleadoId))
+                .getOrDefault(empleadoId, Map.of());
+        if (horariosPorDia.isEmpty()) {
+            return Optional.empty();
+        }
+
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDate hoy = ahora.toLocalDate();
+        LocalDate ultimoDia = hoy.plusDays(horizonteDias - 1L);
+
+        for (LocalDate inicioBloque = hoy; !inicioBloque.isAfter(ultimoDia); inicioBloque = inicioBloque.plusDays(DIAS_POR_BLOQUE)) {
+            LocalDate finBloque = inicioBloque.plusDays(DIAS_POR_BLOQUE - 1L);
+            if (finBloque.isAfter(ultimoDia)) {
+                finBloque = ultimoDia;
+            }
+
+            // Si el empleado no trabaja ningún día del bloque no hace falta consultar sus citas
+            if (!trabajaAlgunDia(horariosPorDia, inicioBloque, finBloque)) {
+                continue;
+            }
+            List<RangoCitaDTO> citasDelBloque = new ArrayList<>(citaRepository.findRangosEnIntervalo(
+                    empleadoId, inicioBloque.atStartOfDay(), finBloque.atTime(LocalTime.MAX)));
+            citasDelBloque.addAll(reservasTemporales.enIntervalo(
+                    List.of(empleadoId), inicioBloque.atStartOfDay(), finBloque.atTime(LocalTime.MAX)));
+
+            for (LocalDate fecha = inicioBloque; !fecha.isAfter(finBloque); fecha = fecha.plusDays(1)) {
+                List<HorarioLaboral> plantilla = horariosPorDia.get(fecha.getDayOfWeek().getValue());
+                if (plantilla == null) {
+                    continue;
+                }
+                List<HorarioLaboral> horariosDelDia = indiceDiasEspeciales.horariosEfectivos(empleadoId, fecha, plantilla);
+                if (horariosDelDia.isEmpty()) {
+                    continue;
+                }
+
+                LocalDateTime inicioDia = fecha.atStartOfDay();
+                LocalDateTime finDia = fecha.atTime(LocalTime.MAX);
+                List<RangoCitaDTO> citasDelDia = citasDelBloque.stream()
+                        .filter(cita -> cita.getFechaHoraInicio().isBefore(finDia) && cita.getFechaHoraFin().isAfter(inicioDia))
+                        .collect(Collectors.toList());
+
+                long[] ocupados = MotorDisponibilidad.fusionarOcupados(fecha, citasDelDia);
+                LocalDate dia = fecha;
+                Optional<LocalDateTime> primero = MotorDisponibilidad
+                        .calcularHorariosLibres(horariosDelDia, ocupados, servicio.getDuracionMinutos())
+                        .stream()
+                        .map(dia::atTime)
+                        .filter(inicio -> !inicio.isBefore(ahora))
+                        .min(Comparator.naturalOrder());
+
+                if (primero.isPresent()) {
+                    LocalDateTime inicio = primero.get();
+                    return Optional.of(new HorarioLibreDTO(empleadoId, empleado.getNombre(),
+                            inicio, inicio.plusMinutes(servicio.getDuracionMinutos())));
+                }
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Verifica en una sola solicitud si cada horario candidato se puede agendar
+     * Aplica las mismas reglas que la creación de citas (horario laboral, días especiales, citas activas y reservas temporales),
+     * pero carga los servicios y horarios una vez y las citas una vez por día para todos los empleados del día
+     *
+     * @param candidatos Horarios candidatos (empleado, servicio e inicio) a verificar
+     * @return Un veredicto por candidato, en el mismo orden en que se recibieron
+     * @throws RuntimeException Si la lista está vacía o supera el máximo permitido
+     */
+    public List<VeredictoHorarioDTO> verificarLote(List<CandidatoHorarioDTO> candidatos) {
+        if (candidatos == null || candidatos.isEmpty()) {
+            throw new RuntimeException("Debe enviar al menos un horario candidato");
+        }
+        if (candidatos.size() > MAX_CANDIDATOS_LOTE) {
+            throw new RuntimeException("No se pueden verificar más de " + MAX_CANDIDATOS_LOTE + " horarios por solicitud");
+        }
+
+        // Servicios y horarios laborales de todos los candidatos (una consulta cada uno)
+        Set<Long> servicioIds = candidatos.stream().map(CandidatoHorarioDTO::getServicioId)
+                .filter(id -> id != null).collect(Collectors.toSet());
+        Set<Long> empleadoIds = candidatos.stream().map(CandidatoHorarioDTO::getEmpleadoId)
+                .filter(id -> id != null).collect(Collectors.toSet());
+        Map<Long, Servicio> servicios = servicioRepository.findAllById(servicioIds).stream()
+                .collect(Collectors.toMap(Servicio::getId, servicio -> servicio));
+        Map<Long, Map<Integer, List<HorarioLaboral>>> horariosPorEmpleado = empleadoIds.isEmpty()
+                ? Map.of()
+                : agruparHorarios(horarioLaboralRepository.findByEmpleadoIdInAndActivoTrue(empleadoIds));
+
+        VeredictoHorarioDTO[] veredictos = new VeredictoHorarioDTO[candidatos.size()];
+        LocalDateTime[] fines = new LocalDateTime[candidatos.size()];
+        Map<LocalDate, List<Integer>> pendientesPorDia = new TreeMap<>();
+
+        // Reglas que no necesitan las citas: se resuelven en memoria antes de consultar la base de datos
+        for (int i = 0; i < candidatos.size(); i++) {
+            CandidatoHorarioDTO candidato = candidatos.get(i);
+            if (candidato.getEmpleadoId() == null || candidato.getServicioId() == null || candidato.getFechaHoraInicio() == null) {
+                veredictos[i] = new VeredictoHorarioDTO(candidato, null, false,
+                        "Los campos empleadoId, servicioId y fechaHoraInicio son requeridos");
+                continue;
+            }
+            Servicio servicio = servicios.get(candidato.getServicioId());
+            if (servicio == null) {
+                veredictos[i] = new VeredictoHorarioDTO(candidato, null, false,
+                        "Servicio no encontrado con id: " + candidato.getServicioId());
+                continue;
+            }
+
+            LocalDateTime inicio = candidato.getFechaHoraInicio();
+            LocalDateTime fin = inicio.plusMinutes(servicio.getDuracionMinutos());
+            LocalDate fecha = inicio.toLocalDate();
+            fines[i] = fin;
+
+            List<HorarioLaboral> plantilla = horariosPorEmpleado
+                    .getOrDefault(candidato.getEmpleadoId(), Map.of())
+                    .get(fecha.getDayOfWeek().getValue());
+            if (plantilla == null || !MotorDisponibilidad.cabeEnHorario(plantilla, segundosDelDia(fecha, inicio), segundosDelDia(fecha, fin))) {
+                veredictos[i] = new VeredictoHorarioDTO(candidato, fin, false,
+                        "El horario seleccionado está fuera del horario laboral del empleado");
+                continue;
+            }
+            if (indiceDiasEspeciales.bloquea(candidato.getEmpleadoId(), inicio, fin)) {
+                veredictos[i] = new VeredictoHorarioDTO(candidato, fin, false,
+                        "El empleado tiene festivo, vacaciones, permiso o incapacidad en ese horario");
+                continue;
+            }
+            pendientesPorDia.computeIfAbsent(fecha, dia -> new ArrayList<>()).add(i);
+        }
+
+        // Una sola consulta de citas por día con todos los empleados que tienen candidatos ese día
+        for (Map.Entry<LocalDate, List<Integer>> entry : pendientesPorDia.entrySet()) {
+            LocalDate fecha = entry.getKey();
+            List<Integer> indices = entry.getValue();
+
+            Set<Long> empleadosDelDia = indices.stream().map(i -> candidatos.get(i).getEmpleadoId()).collect(Collectors.toSet());
+            LocalDateTime finMaximo = indices.stream().map(i -> fines[i]).max(Comparator.naturalOrder()).get();
+            // Citas y reservas temporales por separado para informar el motivo correcto de cada rechazo
+            Map<Long, List<OcupacionCitaDTO>> citasPorEmpleado =
+                    citaRepository.findRangosDeEmpleadosEnIntervalo(empleadosDelDia, fecha.atStartOfDay(), finMaximo)
+                    .stream()
+                    .collect(Collectors.groupingBy(OcupacionCitaDTO::getEmpleadoId));
+            Map<Long, List<OcupacionCitaDTO>> reservasPorEmpleado =
+                    reservasTemporales.enIntervalo(empleadosDelDia, fecha.atStartOfDay(), finMaximo)
+                    .stream()
+                    .collect(Collectors.groupingBy(OcupacionCitaDTO::getEmpleadoId));
+
+            Map<Long, long[]> citasFusionadas = new HashMap<>();
+            Map<Long, long[]> reservasFusionadas = new HashMap<>();
+            for (Integer i : indices) {
+                CandidatoHorarioDTO candidato = candidatos.get(i);
+                long[] ocupados = citasFusionadas.computeIfAbsent(candidato.getEmpleadoId(), id ->
+                        MotorDisponibilidad.fusionarOcupados(fecha, citasPorEmpleado.getOrDefault(id, List.of())));
+                long[] reservados = reservasFusionadas.computeIfAbsent(candidato.getEmpleadoId(), id ->
+                        MotorDisponibilidad.fusionarOcupados(fecha, reservasPorEmpleado.getOrDefault(id, List.of())));
+
+                long desde = segundosDelDia(fecha, candidato.getFechaHoraInicio());
+                long hasta = segundosDelDia(fecha, fines[i]);
+                String motivo = null;
+                if (!MotorDisponibilidad.estaLibre(ocupados, desde, hasta)) {
+                    motivo = "Ya existe una cita programada en ese rango de tiempo";
+                } else if (!MotorDisponibilidad.estaLibre(reservados, desde, hasta)) {
+                    motivo = "El horario está reservado temporalmente por otro cliente";
+                }
+                veredictos[i] = new VeredictoHorarioDTO(candidato, fines[i], motivo == null, motivo);
+            }
+        }
+
+        return Arrays.asList(veredictos);
+    }
+
+    // ========== MÉTODOS AUXILIARES ==========
+
+    /**
+     * Rangos ocupados de varios empleados en un intervalo: citas activas más reservas temporales vigentes
+     */
+    private List<OcupacionCitaDTO> ocupacionesEnIntervalo(Collection<Long> empleadoIds, LocalDateTime inicio, LocalDateTime fin) {
+        List<OcupacionCitaDTO> ocupaciones = new ArrayList<>(
+                citaRepository.findRangosDeEmpleadosEnIntervalo(empleadoIds, inicio, fin));
+        ocupaciones.addAll(reservasTemporales.enIntervalo(empleadoIds, inicio, fin));
+        return ocupaciones;
+    }
+
+    /**
+     * Convierte un momento a segundos relativos al inicio del día, igual que MotorDisponibilidad
+     */
+    private long segundosDelDia(LocalDate fecha, LocalDateTime momento) {
+        return Duration.between(fecha.atStartOfDay(), momento).getSeconds();
+    }
+
+    /**
+     * Indica si alguno de los días del rango tiene horario laboral según la plantilla semanal
+     */
+    private boolean trabajaAlgunDia(Map<Integer, List<HorarioLaboral>> horariosPorDia, LocalDate desde, LocalDate hasta) {
+        for (LocalDate fecha = desde; !fecha.isAfter(hasta); fecha = fecha.plusDays(1)) {
+            if (horariosPorDia.containsKey(fecha.getDayOfWeek().getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reparte las citas por empleado y por cada día del rango que tocan
+     * Una cita que cruza la medianoche queda asociada a ambos días
+     */
+    private Map<Long, Map<LocalDate, List<OcupacionCitaDTO>>> agruparCitasPorDia(List<OcupacionCitaDTO> citas,
+                                                                               LocalDate primerDia, LocalDate ultimoDia) {
+        Map<Long, Map<LocalDate, List<OcupacionCitaDTO>>> agrupadas = new HashMap<>();
+        for (OcupacionCitaDTO cita : citas) {
+            LocalDate desde = cita.getFechaHoraInicio().toLocalDate();
+            LocalDate hasta = cita.getFechaHoraFin().toLocalDate();
+            for (LocalDate dia = desde.isBefore(primerDia) ? primerDia : desde;
+                 !dia.isAfter(hasta) && !dia.isAfter(ultimoDia); dia = dia.plusDays(1)) {
+                agrupadas.computeIfAbsent(cita.getEmpleadoId(), id -> new HashMap<>())
+                        .computeIfAbsent(dia, d -> new ArrayList<>())
+                        .add(cita);
+            }
+        }
+        return agrupadas;
+    }
+
+    /**
+     * Agrupa horarios laborales por empleado y día de la semana
+     */
+    private Map<Long, Map<Integer, List<HorarioLaboral>>> agruparHorarios(List<HorarioLaboral> horarios) {
+        Map<Long, Map<Integer, List<HorarioLaboral>>> agrupados = new HashMap<>();
+        for (HorarioLaboral horario : horarios) {
+            agrupados.computeIfAbsent(horario.getEmpleado().getId(), id -> new HashMap<>())
+                    .computeIfAbsent(horario.getDiaSemana(), dia -> new ArrayList<>())
+                    .add(horario);
+        }
+        return agrupados;
+    }
+
+    /**
+     * Ordena los horarios libres y elimina los repetidos cuando un empleado tiene turnos solapados
+     */
+    private List<LocalTime> ordenarSinDuplicados(List<LocalTime> horarios) {
+        return horarios.stream().distinct().sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * Cursor sobre la lista ordenada de horarios libres de un empleado en un día
+     */
+    private static class CursorHorarios {
+        private final Long empleadoId;
+        private final LocalDate fecha;
+        private final List<LocalTime> horarios;
+        private int posicion;
+
+        CursorHorarios(Long empleadoId, LocalDate fecha, List<LocalTime> horarios) {
+            this.empleadoId = empleadoId;
+            this.fecha = fecha;
+            this.horarios = horarios;
+        }
+
+        boolean tieneActual() {
+            return posicion < horarios.size();
+        }
+
+        LocalDateTime actual() {
+            return fecha.atTime(horarios.get(posicion));
+        }
+
+        void avanzar() {
+            posicion++;
+        }
+
+        void saltarAnterioresA(LocalDateTime momento) {
+            while (tieneActual() && actual().isBefore(momento)) {
+                posicion++;
+            }
+        }
+    }
+}
@@ -1,13 +1,16 @@
 package com.benefactor.agendaCitas.Servicios;
 
 import com.benefactor.agendaCitas.DTO.EmpleadoDTO;
+import com.benefactor.agendaCitas.model.DiaEspecial;
 import com.benefactor.agendaCitas.model.Empleado;
 import com.benefactor.agendaCitas.model.HorarioLaboral;
+import com.benefactor.agendaCitas.Repository.DiaEspecialRepository;
 import com.benefactor.agendaCitas.Repository.EmpleadoRepository;
 import com.benefactor.agendaCitas.Repository.HorarioLaboralRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.Optional;
@@ -30,6 +33,15 @@ public class EmpleadoService {
     @Autowired
     private HorarioLaboralRepository horarioLaboralRepository;
 
+    @Autowired
+    private DiaEspecialRepository diaEspecialRepository;
+
+    @Autowired
+    private CacheDisponibilidad cacheDisponibilidad;
+
+    @Autowired
+    private IndiceDiasEspeciales indiceDiasEspeciales;
+
     // ========== MÉTODOS CON DTOs (PARA LA API) ==========
 
     /**
@@ -207,7 +219,9 @@ public class EmpleadoService {
         horario.setEmpleado(empleado);
         horario.setActivo(true);
 
-        return horarioLaboralRepository.save(horario);
+        HorarioLaboral horarioGuardado = horarioLaboralRepository.save(horario);
+        cacheDisponibilidad.invalidarDiaSemana(empleadoId, horarioGuardado.getDiaSemana());
+        return horarioGuardado;
     }
 
     /**
@@ -231,6 +245,7 @@ public class EmpleadoService {
                 .orElseThrow(() -> new RuntimeException("Horario no encontrado"));
         horario.setActivo(false);
         horarioLaboralRepository.save(horario);
+        cacheDisponibilidad.invalidarDiaSemana(horario.getEmpleado().getId(), horario.getDiaSemana());
     }
 
     /**
@@ -256,6 +271,7 @@ public class EmpleadoService {
             horario.setEmpleado(empleado);
             horario.setActivo(true);
             horarioLaboralRepository.save(horario);
+            cacheDisponibilidad.invalidarDiaSemana(empleadoId, horario.getDiaSemana());
         }
     }
 
@@ -271,6 +287,7 @@ public class EmpleadoService {
             horario.setActivo(false);
             horarioLaboralRepository.save(horario);
         }
+        cacheDisponibilidad.invalidarEmpleado(empleadoId);
     }
 
     /**
@@ -286,6 +303,78 @@ public class EmpleadoService {
                 .findFirst();
     }
 
+    // ========== MÉTODOS DE DÍAS ESPECIALES ==========
+
+    /**
+     * Obtiene los días especiales de un empleado desde hoy en adelante
+     *
+     * @param empleadoId ID del empleado
+     * @return Lista de días especiales ordenados por fecha
+     */
+    public List<DiaEspecial> obtenerDiasEspeciales(Long empleadoId) {
+        return diaEspecialRepository.findByEmpleadoIdAndFechaGreaterThanEqualOrderByFechaAsc(empleadoId, LocalDate.now());
+    }
+
+    /**
+     * Registra un festivo, vacaciones, permiso o incapacidad para un empleado
+     * Los días parciales requieren hora de inicio y fin; los de todo el día las ignoran
+     *
+     * @param empleadoId ID del empleado
+     * @param diaEspecial Día especial a registrar
+     * @return Día especial guardado
+     * @throws RuntimeException Si las validaciones fallan o el empleado no existe
+     */
+    public DiaEspecial agregarDiaEspecial(Long empleadoId, DiaEspecial diaEspecial) {
+        if (diaEspecial.getFecha() == null) {
+            throw new RuntimeException("El campo 'fecha' es requerido");
+        }
+        if (diaEspecial.getTipo() == null || !List.of("festivo", "vacaciones", "permiso", "enfermedad").contains(diaEspecial.getTipo())) {
+            throw new RuntimeException("El campo 'tipo' debe ser: festivo, vacaciones, permiso o enfermedad");
+        }
+
+        if (Boolean.FALSE.equals(diaEspecial.getTodoElDia())) {
+            if (diaEspecial.getHoraInicio() == null || diaEspecial.getHoraFin() == null) {
+                throw new RuntimeException("Las horas de inicio y fin son requeridas cuando no es todo el día");
+            }
+            if (!diaEspecial.getHoraFin().isAfter(diaEspecial.getHoraInicio())) {
+                throw new RuntimeException("La hora de fin debe ser mayor que la hora de inicio");
+            }
+        } else {
+            diaEspecial.setTodoElDia(true);
+            diaEspecial.setHoraInicio(null);
+            diaEspecial.setHoraFin(null);
+        }
+
+        Empleado empleado = empleadoRepository.findById(empleadoId)
+                .orElseThrow(() -> new RuntimeException("Empleado no encontrado"));
+        diaEspecial.setEmpleado(empleado);
+
+        DiaEspecial diaGuardado = diaEspecialRepository.save(diaEspecial);
+        invalidarDiaEspecial(empleadoId, diaGuardado.getFecha());
+        return diaGuardado;
+    }
+
+    /**
+     * Elimina un día especial, devolviendo ese horario a la disponibilidad del empleado
+     *
+     * @param diaEspecialId ID del día especial
+     * @throws RuntimeException Si el día especial no existe
+     */
+    public void eliminarDiaEspecial(Long diaEspecialId) {
+        DiaEspecial diaEspecial = diaEspecialRepository.findById(diaEspecialId)
+                .orElseThrow(() -> new RuntimeException("Día especial no encontrado"));
+        diaEspecialRepository.delete(diaEspecial);
+        invalidarDiaEspecial(diaEspecial.getEmpleado().getId(), diaEspecial.getFecha());
+    }
+
+    /**
+     * Recarga el mes del índice de días especiales y descarta la disponibilidad en caché de ese día
+     */
+    private void invalidarDiaEspecial(Long empleadoId, LocalDate fecha) {
+        indiceDiasEspeciales.invalidar(fecha);
+        cacheDisponibilidad.invalidarRango(empleadoId, fecha.atStartOfDay(), fecha.atStartOfDay());
+    }
+
     // ========== MÉTODOS DE VERIFICACIÓN DE DISPONIBILIDAD ==========
 
     /**
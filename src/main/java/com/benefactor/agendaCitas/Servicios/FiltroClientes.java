@@ -0,0 +1,230 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom en memoria con los clientes conocidos (documento y celular)
+ *
+ * <p>La consulta pública recibe documento y celular sin autenticación, así que es fácil recorrerla con
+ * documentos al azar y cada intento fallido costaba una consulta a la base de datos. El filtro responde
+ * "seguro no existe" sin tocar PostgreSQL; si responde "puede existir" se consulta normalmente.</p>
+ *
+ * <p>Se construye al arrancar a partir de la tabla cliente y se reconstruye cada noche (y tras cada
+ * importación) para ajustar su tamaño al número de clientes. Mientras no se ha construido, todas las
+ * consultas van a la base de datos.</p>
+ *
+ * <p>El filtro es propio de cada instancia. Los clientes que registra esta instancia entran al filtro al
+ * guardar su cita, antes de responder la reserva; los registrados por otras instancias o por SQL directo
+ * se incorporan en la siguiente revisión de la tabla (agenda.filtro-clientes.actualizacion-ms), que lee
+ * solo los ids nuevos. Durante ese intervalo la consulta pública de esta instancia aún puede no encontrarlos.</p>
+ */
+@Service
+public class FiltroClientes {
+
+    private final int capacidadMinima;
+    private final double falsosPositivos;
+    private final Counter descartadas;
+
+    // Filtro vigente; null hasta la primera construcción
+    private volatile Filtro actual;
+
+    // Filtro que se está llenando; los clientes registrados mientras tanto se agregan también a él
+    private volatile Filtro enConstruccion;
+
+    // Mayor id de cliente leído y id desde el que lee la siguiente revisión; solo se usan con el monitor tomado
+    private long ultimoId;
+    private long revisarDesde;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public FiltroClientes(MeterRegistry registry,
+                          @Value("${agenda.filtro-clientes.capacidad:100000}") int capacidadMinima,
+                          @Value("${agenda.filtro-clientes.falsos-positivos:0.01}") double falsosPositivos) {
+        this.capacidadMinima = capacidadMinima;
+        this.falsosPositivos = falsosPositivos;
+        this.descartadas = Counter.builder("agenda.clientes.filtro.descartadas")
+                .description("Consultas públicas de clientes desconocidos respondidas sin la base de datos").register(registry);
+    }
+
+    /**
+     * Construye el filtro con todos los clientes de la tabla cliente y reemplaza el vigente
+     * Se ejecuta al terminar el arranque, cada día según agenda.filtro-clientes.cron y después de importar citas
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${agenda.filtro-clientes.cron:0 30 3 * * *}")
+    public synchronized void construir() {
+        try {
+            Long total = jdbcTemplate.queryForObject("SELECT count(*) FROM cliente", Long.class);
+            // Se dimensiona para el doble de los clientes actuales, dejando margen hasta la siguiente reconstrucción
+            long capacidad = Math.max(capacidadMinima, 2 * (total != null ? total : 0));
+            Filtro nuevo = crearFiltro(capacidad);
+            // Se publica antes de leer la tabla: un cliente que no alcance a leerse ya se registra en el nuevo filtro
+            enConstruccion = nuevo;
+            long[] maximo = {0};
+            jdbcTemplate.query("SELECT id, documento, celular FROM cliente", fila -> {
+                nuevo.agregar(clave(fila.getString("documento"), fila.getString("celular")));
+                maximo[0] = Math.max(maximo[0], fila.getLong("id"));
+            });
+
+            actual = nuevo;
+            // La siguiente revisión vuelve a leer desde la marca anterior, si la había, por las inserciones aún sin confirmar
+            revisarDesde = ultimoId > 0 ? Math.min(ultimoId, maximo[0]) : maximo[0];
+            ultimoId = maximo[0];
+            System.out.println("🧮 Filtro de clientes construido con " + total + " clientes");
+        } catch (Exception e) {
+            System.err.println("Error construyendo el filtro de clientes: " + e.getMessage());
+        } finally {
+            enConstruccion = null;
+        }
+    }
+
+    /**
+     * Agrega al filtro los clientes creados desde la última revisión, incluidos los de otras instancias
+     * Solo lee los ids mayores que la marca de la revisión anterior, con el índice de la llave primaria
+     */
+    @Scheduled(fixedDelayString = "${agenda.filtro-clientes.actualizacion-ms:5000}",
+            initialDelayString = "${agenda.filtro-clientes.actualizacion-ms:5000}")
+    public synchronized void actualizar() {
+        Filtro vigente = actual;
+        if (vigente == null) {
+            return;
+        }
+        try {
+            long[] maximo = {ultimoId};
+            jdbcTemplate.query("SELECT id, documento, celular FROM cliente WHERE id > ? ORDER BY id", fila -> {
+                vigente.agregar(clave(fila.getString("documento"), fila.getString("celular")));
+                maximo[0] = Math.max(maximo[0], fila.getLong("id"));
+            }, revisarDesde);
+            // Cada revisión repite el tramo de la anterior: un id asignado antes que otros puede confirmarse después
+            revisarDesde = ultimoId;
+            ultimoId = maximo[0];
+        } catch (Exception e) {
+            System.err.println("Error actualizando el filtro de clientes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Agrega un cliente al filtro; se llama después de guardar su cita y antes de responder la reserva
+     *
+     * @param documento Documento del cliente
+     * @param celular Celular del cliente
+     */
+    public void registrar(String documento, String celular) {
+        String clave = clave(documento, celular);
+        // Primero el filtro en construcción y después el vigente: si la reconstrucción termina entre las dos
+        // lecturas, la segunda ya ve el filtro nuevo. En el orden inverso el cliente podía quedar en ninguno
+        Filtro nuevo = enConstruccion;
+        if (nuevo != null) {
+            nuevo.agregar(clave);
+        }
+        Filtro vigente = actual;
+        if (vigente != null) {
+            vigente.agregar(clave);
+        }
+    }
+
+    /**
+     * Indica si el cliente puede existir; false significa que seguro nunca ha agendado
+     *
+     * @param documento Documento del cliente
+     * @param celular Celular del cliente
+     * @return false si el filtro descarta al cliente, true si hay que consultar la base de datos
+     */
+    public boolean puedeExistir(String documento, String celular) {
+        Filtro vigente = actual;
+        if (vigente == null || vigente.puedeContener(clave(documento, celular))) {
+            return true;
+        }
+        descartadas.increment();
+        return false;
+    }
+
+    // ========== MÉTODOS AUXILIARES ==========
+
+    /**
+     * Crea un filtro vacío para la capacidad dada con la tasa de falsos positivos configurada
+     */
+    Filtro crearFiltro(long capacidad) {
+        return new Filtro(capacidad, falsosPositivos);
+    }
+
+    private static String clave(String documento, String celular) {
+        return Objects.toString(documento, "") + '\u0000' + Objects.toString(celular, "");
+    }
+
+    /**
+     * Arreglo de bits de tamaño fijo con k posiciones por clave (doble hash de Kirsch y Mitzenmacher)
+     * Las posiciones se encienden con operaciones atómicas, así que admite registros concurrentes sin bloqueos
+     */
+    static class Filtro {
+        private final AtomicLongArray bits;
+        private final long totalBits;
+        private final int funciones;
+
+        Filtro(long capacidad, double falsosPositivos) {
+            // m = -n ln p / (ln 2)^2 y k = (m / n) ln 2
+            long m = (long) Math.ceil(-capacidad * Math.log(falsosPositivos) / (Math.log(2) * Math.log(2)));
+            this.bits = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE, (m + 63) / 64));
+            this.totalBits = bits.length() * 64L;
+            this.funciones = Math.max(1, (int) Math.round((double) totalBits / capacidad * Math.log(2)));
+        }
+
+        void agregar(String clave) {
+            long h1 = mezclar(hash(clave));
+            long h2 = mezclar(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < funciones; i++) {
+                long posicion = Long.remainderUnsigned(h1 + i * h2, totalBits);
+                int palabra = (int) (posicion >>> 6);
+                long mascara = 1L << posicion;
+                long valor = bits.get(palabra);
+                while ((valor & mascara) == 0 && !bits.compareAndSet(palabra, valor, valor | mascara)) {
+                    valor = bits.get(palabra);
+                }
+            }
+        }
+
+        boolean puedeContener(String clave) {
+            long h1 = mezclar(hash(clave));
+            long h2 = mezclar(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < funciones; i++) {
+                long posicion = Long.remainderUnsigned(h1 + i * h2, totalBits);
+                if ((bits.get((int) (posicion >>> 6)) & (1L << posicion)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // FNV-1a de 64 bits sobre los caracteres de la clave
+        private static long hash(String clave) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < clave.length(); i++) {
+                h ^= clave.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+
+        // Mezcla final de MurmurHash3 para repartir los bits del hash
+        private static long mezclar(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
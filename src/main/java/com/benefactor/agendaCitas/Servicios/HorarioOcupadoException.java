@@ -0,0 +1,43 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import java.sql.SQLException;
+
+/**
+ * Excepción de negocio para cuando el horario solicitado ya está ocupado por otra cita del empleado
+ * Los controladores la traducen a 409 Conflict para distinguirla de los errores de validación (400)
+ *
+ * <p>Se lanza tanto cuando la verificación previa encuentra un conflicto como cuando la base de datos
+ * rechaza la cita por la restricción de exclusión cita_sin_solapamiento, que es la que evita
+ * las reservas dobles cuando dos solicitudes llegan al mismo tiempo.</p>
+ */
+public class HorarioOcupadoException extends RuntimeException {
+
+    /**
+     * Código SQLSTATE de PostgreSQL para violaciones de restricciones de exclusión
+     */
+    private static final String SQLSTATE_EXCLUSION = "23P01";
+
+    public HorarioOcupadoException(String mensaje) {
+        super(mensaje);
+    }
+
+    public HorarioOcupadoException(String mensaje, Throwable causa) {
+        super(mensaje, causa);
+    }
+
+    /**
+     * Indica si un error de base de datos proviene de la restricción de exclusión entre citas
+     * Recorre la cadena de causas hasta encontrar la SQLException original del driver
+     *
+     * @param error Excepción lanzada al guardar la cita
+     * @return true si la causa es una violación de exclusión (solapamiento de horarios)
+     */
+    public static boolean esSolapamiento(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof SQLException sql && SQLSTATE_EXCLUSION.equals(sql.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
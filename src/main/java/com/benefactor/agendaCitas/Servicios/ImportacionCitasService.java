@@ -0,0 +1,451 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.benefactor.agendaCitas.Repository.EmpleadoRepository;
+import com.benefactor.agendaCitas.Repository.ServicioRepository;
+import com.benefactor.agendaCitas.model.Empleado;
+import com.benefactor.agendaCitas.model.Servicio;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Importación masiva de citas desde un archivo CSV
+ *
+ * <p>Pensada para migrar la agenda de una sede desde otra herramienta. El archivo se lee línea por línea:
+ * los nombres de empleado y servicio se resuelven a IDs con mapas en memoria y cada fila válida se envía
+ * directamente con COPY a una tabla temporal, sin pasar por CitaService ni por JPA.</p>
+ *
+ * <p>Los solapamientos con las citas existentes se validan en SQL sobre la tabla temporal completa; los
+ * solapamientos entre filas del mismo archivo se resuelven con una pasada en orden de línea por empleado,
+ * y las filas aceptadas se copian a cita con un solo INSERT ... SELECT. Todo ocurre en una transacción: si algo falla no queda ninguna cita importada.</p>
+ *
+ * <p>Columnas del CSV (la primera línea es el encabezado, en cualquier orden):
+ * cliente_nombre, cliente_documento, cliente_celular, empleado, servicio, fecha_hora_inicio y,
+ * opcionalmente, estado. La fecha admite los formatos yyyy-MM-ddTHH:mm y yyyy-MM-dd HH:mm.</p>
+ */
+@Service
+public class ImportacionCitasService {
+
+    /**
+     * Máximo de filas rechazadas que se detallan en la respuesta; el total siempre se informa
+     */
+    private static final int MAX_RECHAZOS_DETALLADOS = 1000;
+
+    private static final List<String> COLUMNAS_REQUERIDAS = List.of(
+            "cliente_nombre", "cliente_documento", "cliente_celular", "empleado", "servicio", "fecha_hora_inicio");
+
+    private static final Set<String> ESTADOS_VALIDOS = Set.of("programada", "cumplida", "cancelada", "no_presento");
+
+    private static final String CREAR_TABLA_TEMPORAL =
+            "CREATE TEMP TABLE cita_importacion (" +
+            "linea INTEGER NOT NULL, cliente_nombre VARCHAR(100) NOT NULL, cliente_documento VARCHAR(20) NOT NULL, " +
+            "cliente_celular VARCHAR(20) NOT NULL, empleado_id BIGINT NOT NULL, servicio_id BIGINT NOT NULL, " +
+            "fecha_hora_inicio TIMESTAMP NOT NULL, fecha_hora_fin TIMESTAMP NOT NULL, estado VARCHAR(20) NOT NULL, " +
+            "costo_total DECIMAL(10,2) NOT NULL, motivo TEXT) ON COMMIT DROP";
+
+    private static final String COPIAR_FILAS =
+            "COPY cita_importacion (linea, cliente_nombre, cliente_documento, cliente_celular, empleado_id, " +
+            "servicio_id, fecha_hora_inicio, fecha_hora_fin, estado, costo_total) FROM STDIN WITH (FORMAT csv)";
+
+    // Filas activas que se solapan con una cita activa ya existente del mismo empleado
+    private static final String RECHAZAR_CONFLICTOS_EXISTENTES =
+            "UPDATE cita_importacion s SET motivo = 'Se solapa con una cita existente del empleado' " +
+            "WHERE s.estado IN ('programada', 'cumplida') AND EXISTS (" +
+            "SELECT 1 FROM cita c WHERE c.empleado_id = s.empleado_id AND c.estado IN ('programada', 'cumplida') " +
+            "AND c.fecha_hora_inicio < s.fecha_hora_fin AND c.fecha_hora_fin > s.fecha_hora_inicio)";
+
+    // Filas activas aún aceptadas, por empleado y en el orden del archivo, para la pasada de solapamientos internos
+    private static final String LEER_ACTIVAS =
+            "SELECT linea, empleado_id, fecha_hora_inicio, fecha_hora_fin FROM cita_importacion " +
+            "WHERE motivo IS NULL AND estado IN ('programada', 'cumplida') ORDER BY empleado_id, linea";
+
+    // Marca en una sola sentencia las filas rechazadas por la pasada, con la línea aceptada con la que se solapan
+    private static final String MARCAR_CONFLICTOS_INTERNOS =
+            "UPDATE cita_importacion s SET motivo = 'Se solapa con la línea ' || r.otra " +
+            "FROM unnest(?::integer[], ?::integer[]) AS r(linea, otra) WHERE s.linea = r.linea";
+
+    // Un cliente por documento y celular de las filas aceptadas, con el nombre de su última línea
+    private static final String INSERTAR_CLIENTES =
+            "INSERT INTO cliente (documento, celular, nombre, fecha_creacion) " +
+            "SELECT DISTINCT ON (cliente_documento, cliente_celular) cliente_documento, cliente_celular, cliente_nombre, " +
+            "CURRENT_TIMESTAMP FROM cita_importacion WHERE motivo IS NULL " +
+            "ORDER BY cliente_documento, cliente_celular, linea DESC " +
+            "ON CONFLICT (documento, celular) DO NOTHING";
+
+    private static final String INSERTAR_ACEPTADAS =
+            "INSERT INTO cita (cliente_id, empleado_id, servicio_id, " +
+            "fecha_hora_inicio, fecha_hora_fin, estado, costo_total, recordatorio_enviado, fecha_creacion) " +
+            "SELECT cl.id, s.empleado_id, s.servicio_id, " +
+            "s.fecha_hora_inicio, s.fecha_hora_fin, s.estado, s.costo_total, false, CURRENT_TIMESTAMP " +
+            "FROM cita_importacion s JOIN cliente cl ON cl.documento = s.cliente_documento AND cl.celular = s.cliente_celular " +
+            "WHERE s.motivo IS NULL ORDER BY s.linea";
+
+    @Autowired
+    private EmpleadoRepository empleadoRepository;
+
+    @Autowired
+    private ServicioRepository servicioRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private IndiceOcupacion indiceOcupacion;
+
+    @Autowired
+    private CacheDisponibilidad cacheDisponibilidad;
+
+    @Autowired
+    private FiltroClientes filtroClientes;
+
+    /**
+     * Importa las citas de un archivo CSV en una sola transacción
+     *
+     * @param archivo Contenido del CSV en UTF-8
+     * @return Mapa con el total de filas leídas, las importadas, el total de rechazadas y el detalle
+     *         de las primeras rechazadas (línea y motivo)
+     * @throws RuntimeException Si el encabezado no es válido o la carga falla
+     */
+    public Map<String, Object> importar(InputStream archivo) {
+        // Resolución de nombres a entidades en memoria: una consulta por tabla en lugar de una por fila
+        Map<String, Empleado> empleados = new HashMap<>();
+        empleadoRepository.findAll().forEach(empleado -> empleados.put(normalizar(empleado.getNombre()), empleado));
+        Map<String, Servicio> servicios = new HashMap<>();
+        servicioRepository.findAll().forEach(servicio -> servicios.put(normalizar(servicio.getNombre()), servicio));
+
+        ResultadoImportacion resultado = transactionTemplate.execute(estado ->
+                jdbcTemplate.execute((ConnectionCallback<ResultadoImportacion>) conexion -> {
+                    ResultadoImportacion parcial = new ResultadoImportacion();
+                    try (Statement sql = conexion.createStatement()) {
+                        sql.execute(CREAR_TABLA_TEMPORAL);
+                        copiarFilas(conexion.unwrap(PGConnection.class), archivo, empleados, servicios, parcial);
+
+                        sql.execute("CREATE INDEX ON cita_importacion (empleado_id, fecha_hora_inicio)");
+                        sql.execute("ANALYZE cita_importacion");
+                        sql.executeUpdate(RECHAZAR_CONFLICTOS_EXISTENTES);
+                        rechazarConflictosInternos(conexion);
+                        sql.executeUpdate(INSERTAR_CLIENTES);
+                        parcial.importadas = sql.executeUpdate(INSERTAR_ACEPTADAS);
+
+                        try (ResultSet rechazadas = sql.executeQuery(
+                                "SELECT linea, motivo FROM cita_importacion WHERE motivo IS NOT NULL ORDER BY linea")) {
+                            while (rechazadas.next()) {
+                                parcial.rechazar(rechazadas.getInt("linea"), rechazadas.getString("motivo"));
+                            }
+                        }
+                    }
+                    return parcial;
+                }));
+
+        // Las citas importadas no pasan por CitaService: reconstruir el índice y el filtro de clientes y descartar la caché de los empleados
+        if (resultado.importadas > 0) {
+            indiceOcupacion.construir();
+            filtroClientes.construir();
+            resultado.empleadoIds.forEach(cacheDisponibilidad::invalidarEmpleado);
+        }
+        System.out.println("📥 Importación de citas: " + resultado.importadas + " importadas, "
+                + resultado.totalRechazadas + " rechazadas de " + resultado.filasLeidas + " filas");
+
+        Map<String, Object> respuesta = new LinkedHashMap<>();
+        respuesta.put("filasLeidas", resultado.filasLeidas);
+        respuesta.put("importadas", resultado.importadas);
+        respuesta.put("totalRechazadas", resultado.totalRechazadas);
+        respuesta.put("rechazadas", resultado.rechazadasPorLinea());
+        return respuesta;
+    }
+
+    // ========== MÉTODOS AUXILIARES ==========
+
+    /**
+     * Rechaza las filas que se solapan con una fila anterior aceptada del mismo empleado
+     * Recorre las filas de cada empleado en el orden del archivo y acepta una fila solo si no se solapa con
+     * las ya aceptadas, de modo que una fila rechazada (por una cita existente o por otra línea) nunca
+     * provoca el rechazo de las siguientes. Las aceptadas de un empleado son disjuntas, así que basta
+     * comparar con la última que comienza antes del fin de la fila
+     */
+    private void rechazarConflictosInternos(Connection conexion) throws SQLException {
+        List<Integer> lineas = new ArrayList<>();
+        List<Integer> otras = new ArrayList<>();
+        try (PreparedStatement consulta = conexion.prepareStatement(LEER_ACTIVAS)) {
+            consulta.setFetchSize(10_000);
+            try (ResultSet filas = consulta.executeQuery()) {
+                SolapamientosInternos pasada = new SolapamientosInternos();
+                while (filas.next()) {
+                    int linea = filas.getInt("linea");
+                    Integer otra = pasada.evaluar(filas.getLong("empleado_id"), linea,
+                            filas.getTimestamp("fecha_hora_inicio").toLocalDateTime(),
+                            filas.getTimestamp("fecha_hora_fin").toLocalDateTime());
+                    if (otra != null) {
+                        lineas.add(linea);
+                        otras.add(otra);
+                    }
+                }
+            }
+        }
+        if (lineas.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement marcar = conexion.prepareStatement(MARCAR_CONFLICTOS_INTERNOS)) {
+            marcar.setArray(1, conexion.createArrayOf("integer", lineas.toArray()));
+            marcar.setArray(2, conexion.createArrayOf("integer", otras.toArray()));
+            marcar.executeUpdate();
+        }
+    }
+
+    /**
+     * Lee el CSV línea por línea y envía cada fila válida a la tabla temporal con COPY sin acumularlas en memoria
+     * Las filas con datos inválidos o nombres desconocidos se rechazan aquí mismo
+     */
+    private void copiarFilas(PGConnection conexion, InputStream archivo, Map<String, Empleado> empleados,
+                             Map<String, Servicio> servicios, ResultadoImportacion resultado) throws SQLException {
+        CopyIn copia = conexion.getCopyAPI().copyIn(COPIAR_FILAS);
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(archivo, StandardCharsets.UTF_8))) {
+            String encabezado = lector.readLine();
+            if (encabezado == null) {
+                throw new RuntimeException("El archivo está vacío");
+            }
+            Map<String, Integer> columnas = leerEncabezado(encabezado);
+
+            String linea;
+            int numeroLinea = 1;
+            while ((linea = lector.readLine()) != null) {
+                numeroLinea++;
+                if (linea.isBlank()) {
+                    continue;
+                }
+                resultado.filasLeidas++;
+
+                String[] fila = convertirFila(separarCampos(linea), columnas, empleados, servicios, numeroLinea, resultado);
+                if (fila != null) {
+                    byte[] registro = unirCampos(fila).getBytes(StandardCharsets.UTF_8);
+                    copia.writeToCopy(registro, 0, registro.length);
+                }
+            }
+            copia.endCopy();
+        } catch (IOException e) {
+            throw new RuntimeException("Error leyendo el archivo CSV: " + e.getMessage());
+        } finally {
+            if (copia.isActive()) {
+                copia.cancelCopy();
+            }
+        }
+    }
+
+    /**
+     * Valida una fila del CSV y la convierte a los campos de la tabla temporal
+     *
+     * @return Campos en el orden de COPIAR_FILAS, o null si la fila se rechazó
+     */
+    private String[] convertirFila(List<String> campos, Map<String, Integer> columnas, Map<String, Empleado> empleados,
+                                   Map<String, Servicio> servicios, int numeroLinea, ResultadoImportacion resultado) {
+        String clienteNombre = campo(campos, columnas, "cliente_nombre");
+        String clienteDocumento = campo(campos, columnas, "cliente_documento");
+        String clienteCelular = campo(campos, columnas, "cliente_celular");
+        if (clienteNombre.isEmpty() || clienteDocumento.isEmpty() || clienteCelular.isEmpty()) {
+            resultado.rechazar(numeroLinea, "Los datos del cliente (nombre, documento y celular) son obligatorios");
+            return null;
+        }
+
+        Empleado empleado = empleados.get(normalizar(campo(campos, columnas, "empleado")));
+        if (empleado == null) {
+            resultado.rechazar(numeroLinea, "Empleado no encontrado: " + campo(campos, columnas, "empleado"));
+            return null;
+        }
+        Servicio servicio = servicios.get(normalizar(campo(campos, columnas, "servicio")));
+        if (servicio == null) {
+            resultado.rechazar(numeroLinea, "Servicio no encontrado: " + campo(campos, columnas, "servicio"));
+            return null;
+        }
+
+        LocalDateTime inicio;
+        try {
+            inicio = LocalDateTime.parse(campo(campos, columnas, "fecha_hora_inicio").replace(' ', 'T'));
+        } catch (DateTimeParseException e) {
+            resultado.rechazar(numeroLinea, "Fecha y hora de inicio inválida: " + campo(campos, columnas, "fecha_hora_inicio"));
+            return null;
+        }
+
+        String estado = columnas.containsKey("estado") ? normalizar(campo(campos, columnas, "estado")) : "";
+        if (estado.isEmpty()) {
+            estado = "programada";
+        } else if (!ESTADOS_VALIDOS.contains(estado)) {
+            resultado.rechazar(numeroLinea, "Estado no válido: " + estado);
+            return null;
+        }
+
+        resultado.empleadoIds.add(empleado.getId());
+        return new String[]{
+                String.valueOf(numeroLinea), clienteNombre, clienteDocumento, clienteCelular,
+                String.valueOf(empleado.getId()), String.valueOf(servicio.getId()),
+                inicio.toString(), inicio.plusMinutes(servicio.getDuracionMinutos()).toString(),
+                estado, servicio.getCosto().toPlainString()
+        };
+    }
+
+    /**
+     * Ubica cada columna del encabezado y verifica que estén todas las requeridas
+     */
+    private Map<String, Integer> leerEncabezado(String encabezado) {
+        Map<String, Integer> columnas = new HashMap<>();
+        List<String> nombres = separarCampos(encabezado.replace("\uFEFF", ""));
+        for (int i = 0; i < nombres.size(); i++) {
+            columnas.put(normalizar(nombres.get(i)), i);
+        }
+        for (String requerida : COLUMNAS_REQUERIDAS) {
+            if (!columnas.containsKey(requerida)) {
+                throw new RuntimeException("Falta la columna " + requerida + " en el encabezado del CSV");
+            }
+        }
+        return columnas;
+    }
+
+    private String campo(List<String> campos, Map<String, Integer> columnas, String columna) {
+        int indice = columnas.get(columna);
+        return indice < campos.size() ? campos.get(indice).trim() : "";
+    }
+
+    /**
+     * Separa una línea CSV en campos, respetando comillas dobles y comillas escapadas ("")
+     */
+    private List<String> separarCampos(String linea) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+
+    /**
+     * Une los campos en una línea CSV para COPY, entre comillas para admitir comas y comillas en los datos
+     */
+    private String unirCampos(String[] campos) {
+        StringBuilder linea = new StringBuilder();
+        for (int i = 0; i < campos.length; i++) {
+            if (i > 0) {
+                linea.append(',');
+            }
+            linea.append('"').append(campos[i].replace("\"", "\"\"")).append('"');
+        }
+        return linea.append('\n').toString();
+    }
+
+    private String normalizar(String texto) {
+        return texto == null ? "" : texto.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Pasada voraz de solapamientos internos sobre las filas de cada empleado en el orden del archivo
+     * Las filas deben llegar agrupadas por empleado; al cambiar de empleado se olvidan las aceptadas
+     */
+    static class SolapamientosInternos {
+        private final TreeMap<LocalDateTime, Aceptada> aceptadas = new TreeMap<>();
+        private long empleadoActual = -1;
+
+        /**
+         * Evalúa una fila y la acepta si no se solapa con las ya aceptadas del empleado
+         *
+         * @return Línea aceptada con la que se solapa, o null si la fila queda aceptada
+         */
+        Integer evaluar(long empleadoId, int linea, LocalDateTime inicio, LocalDateTime fin) {
+            if (empleadoId != empleadoActual) {
+                empleadoActual = empleadoId;
+                aceptadas.clear();
+            }
+            Map.Entry<LocalDateTime, Aceptada> anterior = aceptadas.lowerEntry(fin);
+            if (anterior != null && anterior.getValue().fin().isAfter(inicio)) {
+                return anterior.getValue().linea();
+            }
+            aceptadas.put(inicio, new Aceptada(fin, linea));
+            return null;
+        }
+
+        /**
+         * Fila aceptada: fin del rango y línea del archivo
+         */
+        private record Aceptada(LocalDateTime fin, int linea) {}
+    }
+
+    /**
+     * Totales y rechazos acumulados durante una importación
+     * El detalle conserva las primeras líneas rechazadas sin importar en qué orden se rechazaron
+     */
+    static class ResultadoImportacion {
+        private int filasLeidas;
+        private int importadas;
+        private int totalRechazadas;
+        // Montículo de máximos por línea: al llenarse se descarta la línea más alta
+        private final PriorityQueue<Map<String, Object>> rechazadas = new PriorityQueue<>(
+                Comparator.comparingInt((Map<String, Object> rechazo) -> (Integer) rechazo.get("linea")).reversed());
+        private final Set<Long> empleadoIds = new HashSet<>();
+
+        void rechazar(int linea, String motivo) {
+            totalRechazadas++;
+            if (rechazadas.size() < MAX_RECHAZOS_DETALLADOS) {
+                rechazadas.add(Map.of("linea", linea, "motivo", motivo));
+            } else if ((Integer) rechazadas.peek().get("linea") > linea) {
+                rechazadas.poll();
+                rechazadas.add(Map.of("linea", linea, "motivo", motivo));
+            }
+        }
+
+        /**
+         * Detalle de los rechazos conservados, ordenado por línea
+         */
+        List<Map<String, Object>> rechazadasPorLinea() {
+            List<Map<String, Object>> ordenadas = new ArrayList<>(rechazadas);
+            ordenadas.sort(Comparator.comparingInt(rechazo -> (Integer) rechazo.get("linea")));
+            return ordenadas;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.benefactor.agendaCitas.Repository.DiaEspecialRepository;
+import com.benefactor.agendaCitas.model.DiaEspecial;
+import com.benefactor.agendaCitas.model.HorarioLaboral;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice en memoria de los días especiales (festivos, vacaciones, permisos e incapacidades) por empleado
+ *
+ * <p>Los días especiales se cargan de a un mes completo con una sola consulta. Para cada empleado
+ * se guardan como intervalos semiabiertos [inicio, fin) ya fusionados y ordenados en un arreglo plano
+ * de segundos, de modo que saber si un rango está bloqueado es una búsqueda binaria.</p>
+ *
+ * <p>Al arrancar se cargan el mes actual y el siguiente; los demás meses se cargan la primera vez
+ * que se consultan. Los meses pasados se descartan cada noche y un mes se recarga cuando
+ * se crea o elimina un día especial que cae en él.</p>
+ */
+@Service
+public class IndiceDiasEspeciales {
+
+    private static final long SEGUNDOS_DIA = 24 * 60 * 60;
+    private static final long[] SIN_BLOQUEOS = new long[0];
+
+    @Autowired
+    private DiaEspecialRepository diaEspecialRepository;
+
+    // Mes -> empleado -> intervalos bloqueados {inicio0, fin0, inicio1, fin1, ...}
+    private final Map<YearMonth, Map<Long, long[]>> meses = new ConcurrentHashMap<>();
+
+    /**
+     * Precarga el mes actual y el siguiente al terminar el arranque de la aplicación
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void precargar() {
+        try {
+            YearMonth actual = YearMonth.now();
+            mes(actual);
+            mes(actual.plusMonths(1));
+            System.out.println("🗓️ Índice de días especiales precargado para " + actual + " y " + actual.plusMonths(1));
+        } catch (Exception e) {
+            System.err.println("Error precargando el índice de días especiales: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Descarta los meses ya pasados y deja cargado el mes siguiente
+     */
+    @Scheduled(cron = "0 0 0 * * *")
+    public void avanzarMes() {
+        try {
+            YearMonth actual = YearMonth.now();
+            meses.keySet().removeIf(mes -> mes.isBefore(actual));
+            mes(actual.plusMonths(1));
+        } catch (Exception e) {
+            System.err.println("Error avanzando el índice de días especiales: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Indica si algún día especial del empleado se solapa con el rango propuesto
+     *
+     * @param empleadoId ID del empleado
+     * @param inicio Inicio del rango propuesto
+     * @param fin Fin del rango propuesto
+     * @return true si el rango toca un bloqueo del empleado
+     */
+    public boolean bloquea(Long empleadoId, LocalDateTime inicio, LocalDateTime fin) {
+        long desde = segundos(inicio);
+        long hasta = segundos(fin);
+        for (YearMonth mes = YearMonth.from(inicio); !mes.isAfter(YearMonth.from(fin)); mes = mes.plusMonths(1)) {
+            long[] bloqueos = mes(mes).get(empleadoId);
+            if (bloqueos == null) {
+                continue;
+            }
+            // Último intervalo que comienza antes del fin del rango; al estar fusionados es el único candidato
+            int i = ultimoQueIniciaAntesDe(bloqueos, hasta);
+            if (i >= 0 && bloqueos[i + 1] > desde) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Obtiene los intervalos bloqueados de un empleado en un día, en segundos del día
+     *
+     * @param empleadoId ID del empleado
+     * @param fecha Día consultado
+     * @return Arreglo plano {inicio0, fin0, ...} ordenado, vacío si el día no tiene bloqueos
+     */
+    public long[] bloqueosDelDia(Long empleadoId, LocalDate fecha) {
+        long[] bloqueos = mes(YearMonth.from(fecha)).get(empleadoId);
+        if (bloqueos == null) {
+            return SIN_BLOQUEOS;
+        }
+        long inicioDia = segundos(fecha.atStartOfDay());
+        long finDia = inicioDia + SEGUNDOS_DIA;
+
+        // Se parte del intervalo que viene del día anterior si aún no ha terminado, o del siguiente
+        int i = ultimoQueIniciaAntesDe(bloqueos, inicioDia);
+        if (i < 0 || bloqueos[i + 1] <= inicioDia) {
+            i += 2;
+        }
+
+        long[] delDia = new long[bloqueos.length];
+        int n = 0;
+        for (; i < bloqueos.length && bloqueos[i] < finDia; i += 2) {
+            delDia[n++] = Math.max(bloqueos[i], inicioDia) - inicioDia;
+            delDia[n++] = Math.min(bloqueos[i + 1], finDia) - inicioDia;
+        }
+        return n == 0 ? SIN_BLOQUEOS : Arrays.copyOf(delDia, n);
+    }
+
+    /**
+     * Resta los días especiales del empleado a sus horarios laborales de una fecha
+     *
+     * @param empleadoId ID del empleado
+     * @param fecha Día consultado
+     * @param horarios Horarios laborales del empleado para ese día de la semana
+     * @return Ventanas de trabajo efectivas; vacía si el día está bloqueado por completo
+     */
+    public List<HorarioLaboral> horariosEfectivos(Long empleadoId, LocalDate fecha, List<HorarioLaboral> horarios) {
+        return MotorDisponibilidad.restarBloqueos(horarios, bloqueosDelDia(empleadoId, fecha));
+    }
+
+    /**
+     * Descarta el mes de una fecha para que se recargue desde la base de datos en la próxima consulta
+     * Se usa al crear o eliminar un día especial
+     *
+     * @param fecha Fecha del día especial modificado
+     */
+    public void invalidar(LocalDate fecha) {
+        meses.remove(YearMonth.from(fecha));
+    }
+
+    // ========== MÉTODOS AUXILIARES ==========
+
+    private Map<Long, long[]> mes(YearMonth mes) {
+        return meses.computeIfAbsent(mes, this::cargarMes);
+    }
+
+    /**
+     * Carga con una sola consulta los días especiales del mes y los fusiona por empleado
+     */
+    private Map<Long, long[]> cargarMes(YearMonth mes) {
+        Map<Long, List<long[]>> porEmpleado = new HashMap<>();
+        for (DiaEspecial dia : diaEspecialRepository.findByFechaBetween(mes.atDay(1), mes.atEndOfMonth())) {
+            long inicioDia = segundos(dia.getFecha().atStartOfDay());
+            long inicio = inicioDia;
+            long fin = inicioDia + SEGUNDOS_DIA;
+
+            // Un permiso parcial sin horas completas se trata como bloqueo de todo el día
+            if (Boolean.FALSE.equals(dia.getTodoElDia()) && dia.getHoraInicio() != null && dia.getHoraFin() != null) {
+                inicio = inicioDia + dia.getHoraInicio().toSecondOfDay();
+                fin = inicioDia + dia.getHoraFin().toSecondOfDay();
+                if (fin <= inicio) {
+                    continue;
+                }
+            }
+            porEmpleado.computeIfAbsent(dia.getEmpleado().getId(), id -> new ArrayList<>()).add(new long[]{inicio, fin});
+        }
+
+        Map<Long, long[]> indice = new HashMap<>();
+        porEmpleado.forEach((empleadoId, rangos) -> indice.put(empleadoId, fusionar(rangos)));
+        return indice;
+    }
+
+    /**
+     * Ordena y fusiona intervalos semiabiertos que se tocan o se solapan
+     */
+    private static long[] fusionar(List<long[]> rangos) {
+        rangos.sort(Comparator.comparingLong(rango -> rango[0]));
+        long[] fusionados = new long[rangos.size() * 2];
+        int n = 0;
+        for (long[] rango : rangos) {
+            if (n > 0 && rango[0] <= fusionados[n - 1]) {
+                fusionados[n - 1] = Math.max(fusionados[n - 1], rango[1]);
+            } else {
+                fusionados[n++] = rango[0];
+                fusionados[n++] = rango[1];
+            }
+        }
+        return Arrays.copyOf(fusionados, n);
+    }
+
+    /**
+     * Búsqueda binaria del último intervalo cuyo inicio es anterior al instante dado
+     *
+     * @return Posición del inicio del intervalo en el arreglo plano, o -2 si no hay ninguno
+     */
+    private static int ultimoQueIniciaAntesDe(long[] bloqueos, long instante) {
+        int bajo = 0;
+        int alto = bloqueos.length / 2 - 1;
+        int encontrado = -1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (bloqueos[medio * 2] < instante) {
+                encontrado = medio;
+                bajo = medio + 1;
+            } else {
+                alto = medio - 1;
+            }
+        }
+        return encontrado * 2;
+    }
+
+    private static long segundos(LocalDateTime momento) {
+        return momento.toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,296 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.benefactor.agendaCitas.DTO.OcupacionCitaDTO;
+import com.benefactor.agendaCitas.Repository.CitaRepository;
+import com.benefactor.agendaCitas.Repository.EmpleadoRepository;
+import com.benefactor.agendaCitas.model.Cita;
+import com.benefactor.agendaCitas.model.Empleado;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice de ocupación en memoria por empleado y día con resolución de un minuto
+ *
+ * <p>Cada día de cada empleado se representa con un mapa de bits de 1440 posiciones
+ * (una por minuto) almacenado en un arreglo de 23 palabras de 64 bits. El índice cubre
+ * una ventana móvil de días a partir de hoy, se construye al arrancar la aplicación y se
+ * actualiza en el mismo momento en que se crean, cancelan o eliminan citas.</p>
+ *
+ * <p>El índice es propio de cada instancia y no ve los cambios hechos por otras instancias ni por SQL
+ * directo, así que solo sirve para ahorrar consultas cuando indica que un rango está libre (la
+ * restricción de la base de datos sigue decidiendo al guardar). Si indica que está ocupado, quien
+ * lo consulta debe confirmarlo contra la base de datos antes de rechazar la cita.</p>
+ */
+@Service
+public class IndiceOcupacion {
+
+    private static final int MINUTOS_DIA = 24 * 60;
+    private static final int PALABRAS_DIA = (MINUTOS_DIA + 63) / 64;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private EmpleadoRepository empleadoRepository;
+
+    /**
+     * Cantidad de días, contando desde hoy, que cubre el índice
+     */
+    @Value("${agenda.indice-ocupacion.dias:60}")
+    private int diasVentana;
+
+    // Empleado -> día -> minutos ocupados
+    private volatile Map<Long, Map<LocalDate, long[]>> ocupacion = new ConcurrentHashMap<>();
+
+    // Primer día cubierto por el índice; null mientras no se haya construido
+    private volatile LocalDate inicioVentana;
+
+    /**
+     * Construye el índice completo a partir de las citas activas de los empleados activos
+     * Se ejecuta al terminar el arranque de la aplicación
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void construir() {
+        try {
+            LocalDate hoy = LocalDate.now();
+            Map<Long, Map<LocalDate, long[]>> nuevo = new ConcurrentHashMap<>();
+            for (Empleado empleado : empleadoRepository.findByActivoTrue()) {
+                nuevo.put(empleado.getId(), new ConcurrentHashMap<>());
+            }
+            cargarCitas(nuevo, hoy, hoy.plusDays(diasVentana));
+
+            ocupacion = nuevo;
+            inicioVentana = hoy;
+            System.out.println("🗂️ Índice de ocupación construido para " + nuevo.size() + " empleados y " + diasVentana + " días");
+        } catch (Exception e) {
+            System.err.println("Error construyendo el índice de ocupación: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Desplaza la ventana del índice al iniciar cada día
+     * Descarta los días pasados y carga el día que entra al final de la ventana
+     */
+    @Scheduled(cron = "0 0 0 * * *")
+    public void avanzarVentana() {
+        if (inicioVentana == null) {
+            construir();
+            return;
+        }
+        try {
+            LocalDate hoy = LocalDate.now();
+            LocalDate finAnterior = inicioVentana.plusDays(diasVentana);
+            LocalDate finNuevo = hoy.plusDays(diasVentana);
+
+            for (Map<LocalDate, long[]> dias : ocupacion.values()) {
+                dias.keySet().removeIf(dia -> dia.isBefore(hoy));
+            }
+            if (finNuevo.isAfter(finAnterior)) {
+                cargarCitas(ocupacion, finAnterior, finNuevo);
+            }
+            inicioVentana = hoy;
+        } catch (Exception e) {
+            System.err.println("Error avanzando la ventana del índice de ocupación: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Indica si el índice tiene información para el día especificado
+     *
+     * @param fecha Día a verificar
+     * @return true si el día está dentro de la ventana ya construida
+     */
+    public boolean cubre(LocalDate fecha) {
+        LocalDate inicio = inicioVentana;
+        return inicio != null && !fecha.isBefore(inicio) && fecha.isBefore(inicio.plusDays(diasVentana));
+    }
+
+    /**
+     * Verifica si algún minuto completo del rango propuesto ya está ocupado según el índice
+     * Retorna false si algún día del rango no está cubierto, dejando la decisión a la base de datos
+     *
+     * @param empleadoId ID del empleado
+     * @param inicio Inicio del rango propuesto
+     * @param fin Fin del rango propuesto
+     * @return true si el rango se cruza con una cita registrada en el índice; puede estar desactualizado,
+     *         así que debe confirmarse con CitaRepository.existeConflicto antes de rechazar
+     */
+    public boolean estaOcupado(Long empleadoId, LocalDateTime inicio, LocalDateTime fin) {
+        if (!cubre(inicio.toLocalDate()) || !cubre(fin.toLocalDate())) {
+            return false;
+        }
+        Map<LocalDate, long[]> dias = ocupacion.get(empleadoId);
+        if (dias == null) {
+            return false;
+        }
+
+        for (LocalDate dia = inicio.toLocalDate(); dia.atStartOfDay().isBefore(fin); dia = dia.plusDays(1)) {
+            long[] bits = dias.get(dia);
+            if (bits == null) {
+                continue;
+            }
+            // Solo se consideran los minutos completos del rango para no rechazar por fracciones
+            LocalDateTime base = dia.atStartOfDay();
+            int desde = Math.max(0, minutosRedondeadosArriba(base, inicio));
+            int hasta = Math.min(MINUTOS_DIA, minutosRedondeadosAbajo(base, fin));
+            if (desde < hasta) {
+                synchronized (bits) {
+                    if (hayBitsEnRango(bits, desde, hasta)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registra en el índice el rango de una cita recién guardada si su estado ocupa tiempo
+     *
+     * @param cita Cita guardada
+     */
+    public void registrar(Cita cita) {
+        if (Cita.ocupaHorario(cita.getEstado())) {
+            marcar(ocupacion, cita.getEmpleado().getId(), cita.getFechaHoraInicio(), cita.getFechaHoraFin(), true);
+        }
+    }
+
+    /**
+     * Libera en el índice el rango de una cita eliminada
+     * Las citas que no ocupaban tiempo se ignoran para no liberar el rango de otra cita
+     *
+     * @param cita Cita eliminada
+     */
+    public void liberar(Cita cita) {
+        if (Cita.ocupaHorario(cita.getEstado())) {
+            marcar(ocupacion, cita.getEmpleado().getId(), cita.getFechaHoraInicio(), cita.getFechaHoraFin(), false);
+        }
+    }
+
+    /**
+     * Traslada en el índice una cita reprogramada: libera su rango anterior y marca el nuevo
+     *
+     * @param cita Cita con las fechas ya actualizadas
+     * @param inicioAnterior Inicio que tenía la cita antes de reprogramarla
+     * @param finAnterior Fin que tenía la cita antes de reprogramarla
+     */
+    public void mover(Cita cita, LocalDateTime inicioAnterior, LocalDateTime finAnterior) {
+        if (Cita.ocupaHorario(cita.getEstado())) {
+            Long empleadoId = cita.getEmpleado().getId();
+            marcar(ocupacion, empleadoId, inicioAnterior, finAnterior, false);
+            marcar(ocupacion, empleadoId, cita.getFechaHoraInicio(), cita.getFechaHoraFin(), true);
+        }
+    }
+
+    /**
+     * Ajusta el índice tras un cambio de estado de una cita
+     * Solo modifica los bits cuando el cambio pasa de ocupar tiempo a liberarlo o viceversa
+     *
+     * @param cita Cita con el estado ya actualizado
+     * @param estadoAnterior Estado que tenía la cita antes del cambio
+     */
+    public void cambiarEstado(Cita cita, String estadoAnterior) {
+        boolean ocupabaAntes = Cita.ocupaHorario(estadoAnterior);
+        boolean ocupaAhora = Cita.ocupaHorario(cita.getEstado());
+        if (ocupabaAntes != ocupaAhora) {
+            marcar(ocupacion, cita.getEmpleado().getId(), cita.getFechaHoraInicio(), cita.getFechaHoraFin(), ocupaAhora);
+        }
+    }
+
+    // ========== MÉTODOS AUXILIARES ==========
+
+    /**
+     * Carga en el índice las citas que se solapan con los días [desde, hasta)
+     * Las citas de empleados que no forman parte del índice se ignoran
+     */
+    private void cargarCitas(Map<Long, Map<LocalDate, long[]>> destino, LocalDate desde, LocalDate hasta) {
+        for (OcupacionCitaDTO cita : citaRepository.findOcupacionesEnIntervalo(desde.atStartOfDay(), hasta.atStartOfDay())) {
+            if (destino.containsKey(cita.getEmpleadoId())) {
+                marcar(destino, cita.getEmpleadoId(), cita.getFechaHoraInicio(), cita.getFechaHoraFin(), true);
+            }
+        }
+    }
+
+    /**
+     * Marca o limpia los minutos de un rango en cada uno de los días que abarca
+     * El rango se amplía al minuto completo para no dejar fracciones ocupadas sin marcar
+     */
+    private void marcar(Map<Long, Map<LocalDate, long[]>> destino, Long empleadoId,
+                        LocalDateTime inicio, LocalDateTime fin, boolean ocupado) {
+        Map<LocalDate, long[]> dias = ocupado
+                ? destino.computeIfAbsent(empleadoId, id -> new ConcurrentHashMap<>())
+                : destino.get(empleadoId);
+        if (dias == null) {
+            return;
+        }
+
+        for (LocalDate dia = inicio.toLocalDate(); dia.atStartOfDay().isBefore(fin); dia = dia.plusDays(1)) {
+            long[] bits = ocupado ? dias.computeIfAbsent(dia, d -> new long[PALABRAS_DIA]) : dias.get(dia);
+            if (bits == null) {
+                continue;
+            }
+            LocalDateTime base = dia.atStartOfDay();
+            int desde = Math.max(0, minutosRedondeadosAbajo(base, inicio));
+            int hasta = Math.min(MINUTOS_DIA, minutosRedondeadosArriba(base, fin));
+            if (desde < hasta) {
+                synchronized (bits) {
+                    asignarRango(bits, desde, hasta, ocupado);
+                }
+            }
+        }
+    }
+
+    private static int minutosRedondeadosAbajo(LocalDateTime base, LocalDateTime momento) {
+        return (int) Math.floorDiv(Duration.between(base, momento).getSeconds(), 60);
+    }
+
+    private static int minutosRedondeadosArriba(LocalDateTime base, LocalDateTime momento) {
+        Duration duracion = Duration.between(base, momento);
+        long segundos = duracion.getSeconds() + (duracion.getNano() > 0 ? 1 : 0);
+        return (int) -Math.floorDiv(-segundos, 60);
+    }
+
+    /**
+     * Enciende o apaga los bits [desde, hasta) trabajando palabra por palabra
+     */
+    private static void asignarRango(long[] bits, int desde, int hasta, boolean valor) {
+        for (int palabra = desde >>> 6; palabra <= (hasta - 1) >>> 6; palabra++) {
+            long mascara = mascara(palabra, desde, hasta);
+            bits[palabra] = valor ? bits[palabra] | mascara : bits[palabra] & ~mascara;
+        }
+    }
+
+    /**
+     * Verifica si hay algún bit encendido en [desde, hasta) trabajando palabra por palabra
+     */
+    private static boolean hayBitsEnRango(long[] bits, int desde, int hasta) {
+        for (int palabra = desde >>> 6; palabra <= (hasta - 1) >>> 6; palabra++) {
+            if ((bits[palabra] & mascara(palabra, desde, hasta)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Máscara con los bits de la palabra que caen dentro de [desde, hasta)
+     */
+    private static long mascara(int palabra, int desde, int hasta) {
+        int base = palabra << 6;
+        int bajo = Math.max(desde - base, 0);
+        int alto = Math.min(hasta - base, 64);
+        long hastaAlto = alto == 64 ? -1L : (1L << alto) - 1;
+        long hastaBajo = (1L << bajo) - 1;
+        return hastaAlto & ~hastaBajo;
+    }
+}
@@ -0,0 +1,261 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.benefactor.agendaCitas.DTO.RangoCitaDTO;
+import com.benefactor.agendaCitas.model.HorarioLaboral;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Motor de cálculo de disponibilidad en memoria
+ * Trabaja sobre datos ya cargados (horarios laborales y rangos de citas) sin acceder a la base de datos,
+ * de modo que el número de consultas por solicitud no depende de la duración del turno
+ *
+ * Los intervalos ocupados se representan en segundos relativos al inicio del día consultado
+ * y se consideran semiabiertos [inicio, fin), igual que CitaRepository.existeConflicto y la
+ * restricción cita_sin_solapamiento: una cita puede comenzar justo cuando termina otra
+ */
+public final class MotorDisponibilidad {
+
+    /**
+     * Separación en minutos entre los horarios candidatos que se ofrecen al cliente
+     */
+    public static final int INTERVALO_MINUTOS = 30;
+
+    private MotorDisponibilidad() {}
+
+    /**
+     * Ordena y fusiona los rangos de las citas en intervalos ocupados disjuntos
+     * Dos rangos que se tocan o se solapan se combinan en uno solo
+     *
+     * @param fecha Día de referencia para expresar los intervalos en segundos
+     * @param citas Rangos de las citas que tocan el día (en cualquier orden)
+     * @return Arreglo plano {inicio0, fin0, inicio1, fin1, ...} ordenado por inicio
+     */
+    public static long[] fusionarOcupados(LocalDate fecha, List<? extends RangoCitaDTO> citas) {
+        LocalDateTime base = fecha.atStartOfDay();
+        long[][] rangos = new long[citas.size()][];
+        for (int i = 0; i < citas.size(); i++) {
+            RangoCitaDTO cita = citas.get(i);
+            Duration inicio = Duration.between(base, cita.getFechaHoraInicio());
+            Duration fin = Duration.between(base, cita.getFechaHoraFin());
+            // El inicio se redondea hacia abajo y el fin hacia arriba para no perder solapamientos por fracciones de segundo
+            rangos[i] = new long[]{inicio.getSeconds(), fin.getSeconds() + (fin.getNano() > 0 ? 1 : 0)};
+        }
+        Arrays.sort(rangos, Comparator.comparingLong(rango -> rango[0]));
+
+        long[] fusionados = new long[rangos.length * 2];
+        int n = 0;
+        for (long[] rango : rangos) {
+            if (n > 0 && rango[0] <= fusionados[n - 1]) {
+                fusionados[n - 1] = Math.max(fusionados[n - 1], rango[1]);
+            } else {
+                fusionados[n++] = rango[0];
+                fusionados[n++] = rango[1];
+            }
+        }
+        return Arrays.copyOf(fusionados, n);
+    }
+
+    /**
+     * Calcula los horarios de inicio libres recorriendo una sola vez los intervalos ocupados por cada horario laboral
+     * Genera candidatos cada {@link #INTERVALO_MINUTOS} minutos mientras el servicio completo quepa en el horario
+     *
+     * @param horarios Horarios laborales del empleado para el día (se respeta su orden)
+     * @param ocupados Intervalos ocupados generados por {@link #fusionarOcupados}
+     * @param duracionMinutos Duración del servicio a agendar
+     * @return Lista de horarios de inicio disponibles
+     */
+    public static List<LocalTime> calcularHorariosLibres(List<HorarioLaboral> horarios, long[] ocupados, int duracionMinutos) {
+        List<LocalTime> libres = new ArrayList<>();
+        long duracion = duracionMinutos * 60L;
+        long paso = INTERVALO_MINUTOS * 60L;
+
+        for (HorarioLaboral horario : horarios) {
+            long finHorario = horario.getHoraFin().toSecondOfDay();
+            int idx = 0;
+
+            for (long inicio = horario.getHoraInicio().toSecondOfDay(); inicio + duracion <= finHorario; inicio += paso) {
+                long fin = inicio + duracion;
+
+                // Descartar intervalos que terminan antes del candidato; los candidatos crecen, así que el índice solo avanza
+                while (idx < ocupados.length && ocupados[idx + 1] <= inicio) {
+                    idx += 2;
+                }
+
+                if (idx >= ocupados.length || ocupados[idx] >= fin) {
+                    libres.add(LocalTime.ofSecondOfDay(inicio));
+                }
+            }
+        }
+        return libres;
+    }
+
+    /**
+     * Indica si existe al menos un horario libre en el día, deteniéndose en el primero que encuentra
+     * Usa el mismo recorrido y criterio que {@link #calcularHorariosLibres} sin construir la lista
+     *
+     * @param horarios Horarios laborales del empleado para el día
+     * @param ocupados Intervalos ocupados generados por {@link #fusionarOcupados}
+     * @param duracionMinutos Duración del servicio a agendar
+     * @return true si cabe el servicio en algún horario candidato
+     */
+    public static boolean existeHorarioLibre(List<HorarioLaboral> horarios, long[] ocupados, int duracionMinutos) {
+        long duracion = duracionMinutos * 60L;
+        long paso = INTERVALO_MINUTOS * 60L;
+
+        for (HorarioLaboral horario : horarios) {
+            long finHorario = horario.getHoraFin().toSecondOfDay();
+            int idx = 0;
+
+            for (long inicio = horario.getHoraInicio().toSecondOfDay(); inicio + duracion <= finHorario; inicio += paso) {
+                while (idx < ocupados.length && ocupados[idx + 1] <= inicio) {
+                    idx += 2;
+                }
+                if (idx >= ocupados.length || ocupados[idx] >= inicio + duracion) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Calcula los horarios de inicio de un combo de servicios seguidos, cada uno empezando cuando termina el anterior
+     * Los candidatos se generan cada {@link #INTERVALO_MINUTOS} minutos dentro de los horarios del primer paso y
+     * cada paso avanza su propio índice sobre sus intervalos ocupados, de modo que el día se recorre una sola vez
+     * por paso aunque los pasos sean atendidos por empleados distintos
+     *
+     * @param horarios Horarios laborales del día del empleado de cada paso, en el orden del combo
+     * @param ocupados Intervalos ocupados del empleado de cada paso, generados por {@link #fusionarOcupados}
+     * @param duracionesMinutos Duración de cada servicio, en el orden del combo
+     * @return Lista de horarios de inicio del primer servicio en los que cabe el combo completo
+     */
+    public static List<LocalTime> calcularHorariosCombo(List<List<HorarioLaboral>> horarios, List<long[]> ocupados,
+                                                        int[] duracionesMinutos) {
+        List<LocalTime> libres = new ArrayList<>();
+        int pasos = duracionesMinutos.length;
+        long[] desplazamientos = new long[pasos + 1];
+        for (int i = 0; i < pasos; i++) {
+            desplazamientos[i + 1] = desplazamientos[i] + duracionesMinutos[i] * 60L;
+        }
+        long paso = INTERVALO_MINUTOS * 60L;
+
+        for (HorarioLaboral horario : horarios.get(0)) {
+            long finHorario = horario.getHoraFin().toSecondOfDay();
+            int[] idx = new int[pasos];
+
+            candidatos:
+            for (long inicio = horario.getHoraInicio().toSecondOfDay(); inicio + desplazamientos[1] <= finHorario; inicio += paso) {
+                for (int i = 0; i < pasos; i++) {
+                    long desde = inicio + desplazamientos[i];
+                    long hasta = inicio + desplazamientos[i + 1];
+                    if (i > 0 && !cabeEnHorario(horarios.get(i), desde, hasta)) {
+                        continue candidatos;
+                    }
+                    // Los tramos de cada paso crecen con el candidato, así que su índice solo avanza
+                    long[] delPaso = ocupados.get(i);
+                    while (idx[i] < delPaso.length && delPaso[idx[i] + 1] <= desde) {
+                        idx[i] += 2;
+                    }
+                    if (idx[i] < delPaso.length && delPaso[idx[i]] < hasta) {
+                        continue candidatos;
+                    }
+                }
+                libres.add(LocalTime.ofSecondOfDay(inicio));
+            }
+        }
+        return libres;
+    }
+
+    /**
+     * Verifica si un rango queda libre frente a los intervalos ocupados mediante búsqueda binaria
+     * Usa el mismo criterio semiabierto que {@link #calcularHorariosLibres}: tocar un extremo no es conflicto
+     *
+     * @param ocupados Intervalos ocupados generados por {@link #fusionarOcupados}
+     * @param inicio Inicio del rango en segundos relativos al día
+     * @param fin Fin del rango en segundos relativos al día
+     * @return true si ningún intervalo ocupado se solapa con el rango
+     */
+    public static boolean estaLibre(long[] ocupados, long inicio, long fin) {
+        // Último intervalo que comienza antes del fin; al estar fusionados es el único que puede solaparse
+        int bajo = 0;
+        int alto = ocupados.length / 2 - 1;
+        int candidato = -1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (ocupados[medio * 2] < fin) {
+                candidato = medio;
+                bajo = medio + 1;
+            } else {
+                alto = medio - 1;
+            }
+        }
+        return candidato < 0 || ocupados[candidato * 2 + 1] <= inicio;
+    }
+
+    /**
+     * Verifica si un rango cabe completo dentro de alguno de los horarios laborales
+     *
+     * @param horarios Horarios laborales del empleado para el día
+     * @param inicio Inicio del rango en segundos relativos al día
+     * @param fin Fin del rango en segundos relativos al día
+     * @return true si algún horario contiene el rango completo
+     */
+    public static boolean cabeEnHorario(List<HorarioLaboral> horarios, long inicio, long fin) {
+        for (HorarioLaboral horario : horarios) {
+            if (horario.getHoraInicio().toSecondOfDay() <= inicio && fin <= horario.getHoraFin().toSecondOfDay()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Resta de los horarios laborales los bloqueos del día (festivos, vacaciones, permisos)
+     * Los bloqueos son semiabiertos [inicio, fin): un horario puede comenzar justo cuando termina un permiso
+     * Los horarios resultantes son objetos en memoria que no deben guardarse en la base de datos
+     *
+     * @param horarios Horarios laborales del empleado para el día
+     * @param bloqueos Intervalos bloqueados en segundos del día {inicio0, fin0, ...}, ordenados y disjuntos
+     * @return Los mismos horarios si no hay bloqueos, o las ventanas que quedan libres tras restarlos
+     */
+    public static List<HorarioLaboral> restarBloqueos(List<HorarioLaboral> horarios, long[] bloqueos) {
+        if (bloqueos.length == 0) {
+            return horarios;
+        }
+        List<HorarioLaboral> ventanas = new ArrayList<>();
+        for (HorarioLaboral horario : horarios) {
+            long inicio = horario.getHoraInicio().toSecondOfDay();
+            long finHorario = horario.getHoraFin().toSecondOfDay();
+
+            for (int i = 0; i < bloqueos.length && inicio < finHorario; i += 2) {
+                if (bloqueos[i + 1] <= inicio) {
+                    continue;
+                }
+                if (bloqueos[i] >= finHorario) {
+                    break;
+                }
+                if (bloqueos[i] > inicio) {
+                    ventanas.add(ventana(horario, inicio, bloqueos[i]));
+                }
+                inicio = Math.max(inicio, bloqueos[i + 1]);
+            }
+            if (inicio < finHorario) {
+                ventanas.add(ventana(horario, inicio, finHorario));
+            }
+        }
+        return ventanas;
+    }
+
+    private static HorarioLaboral ventana(HorarioLaboral horario, long inicio, long fin) {
+        return new HorarioLaboral(horario.getEmpleado(), horario.getDiaSemana(),
+                LocalTime.ofSecondOfDay(inicio), LocalTime.ofSecondOfDay(fin));
+    }
+}
@@ -0,0 +1,337 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.benefactor.agendaCitas.model.Cita;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Difusión de cambios de horarios por Server-Sent Events
+ *
+ * <p>Los clientes se suscriben a un empleado en un día y reciben un evento pequeño cada vez que
+ * una cita de ese día se crea, cambia de estado, se cancela o se elimina, en lugar de consultar
+ * la disponibilidad periódicamente. El cierre automático de citas vencidas envía un solo evento
+ * resumen por empleado y día.</p>
+ *
+ * <p>Quien modifica la cita nunca espera a los suscriptores: el evento se deja en una cola acotada
+ * por suscriptor y un grupo pequeño de hilos propio se encarga de enviarlo. Un suscriptor que no
+ * consume a tiempo se desconecta por dos vías: si su cola se llena, o si un envío queda bloqueado más
+ * de agenda.eventos.envio-maximo-segundos (el cliente dejó de leer y la escritura no avanza). En el
+ * segundo caso un vigilante cierra la conexión con error para que la escritura falle y el hilo de
+ * envío quede libre para los demás suscriptores.</p>
+ */
+@Service
+public class NotificadorHorarios {
+
+    /**
+     * Eventos pendientes que puede acumular un suscriptor antes de ser desconectado
+     */
+    private static final int CAPACIDAD_COLA = 32;
+
+    private final Map<ClaveDia, Set<Suscriptor>> suscriptores = new ConcurrentHashMap<>();
+    private final AtomicInteger totalSuscriptores = new AtomicInteger();
+    private final ExecutorService envios;
+    private final Counter descartados;
+    private final long timeoutMs;
+    private final long envioMaximoNanos;
+    private final int maximoSuscriptores;
+
+    public NotificadorHorarios(MeterRegistry registry,
+                               @Value("${agenda.eventos.timeout-minutos:30}") long timeoutMinutos,
+                               @Value("${agenda.eventos.maximo-suscriptores:1000}") int maximoSuscriptores,
+                               @Value("${agenda.eventos.hilos:2}") int hilos,
+                               @Value("${agenda.eventos.envio-maximo-segundos:10}") long envioMaximoSegundos) {
+        this.timeoutMs = timeoutMinutos * 60_000L;
+        this.envioMaximoNanos = TimeUnit.SECONDS.toNanos(envioMaximoSegundos);
+        this.maximoSuscriptores = maximoSuscriptores;
+        this.envios = Executors.newFixedThreadPool(hilos, tarea -> {
+            Thread hilo = new Thread(tarea, "eventos-horarios");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+
+        this.descartados = Counter.builder("agenda.eventos.descartados")
+                .description("Suscriptores desconectados por no consumir los eventos a tiempo").register(registry);
+        Gauge.builder("agenda.eventos.suscriptores", totalSuscriptores, AtomicInteger::get)
+                .description("Suscriptores conectados a los cambios de horarios").register(registry);
+    }
+
+    /**
+     * Registra un suscriptor para los cambios de un empleado en un día
+     *
+     * @param empleadoId ID del empleado
+     * @param fecha Día observado
+     * @return Emisor SSE que el controlador devuelve al cliente
+     * @throws RuntimeException Si se alcanzó el máximo de suscriptores
+     */
+    public SseEmitter suscribir(Long empleadoId, LocalDate fecha) {
+        if (totalSuscriptores.incrementAndGet() > maximoSuscriptores) {
+            totalSuscriptores.decrementAndGet();
+            throw new RuntimeException("Se alcanzó el máximo de suscriptores; intente más tarde");
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Suscriptor suscriptor = new Suscriptor(new ClaveDia(empleadoId, fecha), emitter);
+        // Se agrega dentro de compute para no perder la suscripción si otra conexión vacía el conjunto a la vez
+        suscriptores.compute(suscriptor.clave, (clave, delDia) -> {
+            Set<Suscriptor> conjunto = delDia != null ? delDia : ConcurrentHashMap.newKeySet();
+            conjunto.add(suscriptor);
+            return conjunto;
+        });
+
+        emitter.onCompletion(() -> quitar(suscriptor));
+        emitter.onTimeout(() -> quitar(suscriptor));
+        emitter.onError(error -> quitar(suscriptor));
+
+        // Primer evento para que el cliente sepa que quedó suscrito
+        entregar(suscriptor, new Evento("suscrito", Map.of("empleadoId", empleadoId, "fecha", fecha.toString())));
+        return emitter;
+    }
+
+    /**
+     * Notifica a los suscriptores de cada día que abarca la cita
+     * Nunca bloquea: solo deja el evento en la cola de cada suscriptor
+     *
+     * @param cita Cita creada, modificada o eliminada
+     * @param tipo Tipo de cambio: creada, actualizada, cancelada o eliminada
+     */
+    public void publicar(Cita cita, String tipo) {
+        if (suscriptores.isEmpty()) {
+            return;
+        }
+        publicarRango(cita, tipo, !"eliminada".equals(tipo) && Cita.ocupaHorario(cita.getEstado()),
+                cita.getFechaHoraInicio(), cita.getFechaHoraFin());
+    }
+
+    /**
+     * Notifica una cita reprogramada: el rango anterior queda libre y el nuevo ocupado
+     * Cada suscriptor recibe el evento del rango que toca su día
+     *
+     * @param cita Cita con las fechas ya actualizadas
+     * @param inicioAnterior Inicio que tenía la cita antes de reprogramarla
+     * @param finAnterior Fin que tenía la cita antes de reprogramarla
+     */
+    public void publicarReprogramacion(Cita cita, LocalDateTime inicioAnterior, LocalDateTime finAnterior) {
+        if (suscriptores.isEmpty()) {
+            return;
+        }
+        publicarRango(cita, "reprogramada", false, inicioAnterior, finAnterior);
+        publicarRango(cita, "reprogramada", Cita.ocupaHorario(cita.getEstado()), cita.getFechaHoraInicio(), cita.getFechaHoraFin());
+    }
+
+    /**
+     * Notifica en un solo evento las citas de un empleado en un día que el cierre automático pasó a otro estado
+     * Los horarios no cambian de ocupación (las citas ya terminaron), así que el evento solo lleva los IDs
+     *
+     * @param empleadoId ID del empleado
+     * @param fecha Día de las citas
+     * @param estado Estado al que pasaron las citas
+     * @param citaIds IDs de las citas cerradas
+     */
+    public void publicarCierre(Long empleadoId, LocalDate fecha, String estado, List<Long> citaIds) {
+        Set<Suscriptor> delDia = suscriptores.get(new ClaveDia(empleadoId, fecha));
+        if (delDia == null) {
+            return;
+        }
+        Map<String, Object> cierre = new LinkedHashMap<>();
+        cierre.put("tipo", "cerradas");
+        cierre.put("empleadoId", empleadoId);
+        cierre.put("fecha", fecha.toString());
+        cierre.put("estado", estado);
+        cierre.put("citaIds", citaIds);
+        Evento evento = new Evento("citas-cerradas", cierre);
+        delDia.forEach(suscriptor -> entregar(suscriptor, evento));
+    }
+
+    /**
+     * Envía un comentario periódico para detectar y liberar conexiones cerradas por el cliente
+     */
+    @Scheduled(fixedRate = 30_000)
+    public void enviarLatido() {
+        Evento latido = new Evento(null, "latido");
+        suscriptores.values().forEach(delDia -> delDia.forEach(suscriptor -> entregar(suscriptor, latido)));
+    }
+
+    /**
+     * Desconecta a los suscriptores con un envío bloqueado más tiempo del permitido
+     * Cerrar la conexión con error hace fallar la escritura en curso y libera el hilo de envío.
+     * Depende de que el programador tenga un hilo libre cada segundo (spring.task.scheduling.pool.size)
+     */
+    @Scheduled(fixedRate = 1_000)
+    public void vigilarEnvios() {
+        long ahora = System.nanoTime();
+        suscriptores.values().forEach(delDia -> delDia.forEach(suscriptor -> {
+            long desde = suscriptor.envioDesde;
+            if (desde != 0 && ahora - desde > envioMaximoNanos) {
+                descartados.increment();
+                quitar(suscriptor);
+                try {
+                    suscriptor.emitter.completeWithError(new IOException("El cliente no consume los eventos a tiempo"));
+                } catch (Exception e) {
+                    // La conexión ya estaba cerrada
+                }
+            }
+        }));
+    }
+
+    /**
+     * Cierra las conexiones abiertas y detiene los hilos de envío al apagar la aplicación
+     */
+    @PreDestroy
+    public void cerrar() {
+        envios.shutdownNow();
+        suscriptores.values().forEach(delDia -> delDia.forEach(suscriptor -> suscriptor.emitter.complete()));
+    }
+
+    // ========== MÉTODOS AUXILIARES ==========
+
+    /**
+     * Entrega un cambio de una cita a los suscriptores de cada día que abarca el rango
+     */
+    private void publicarRango(Cita cita, String tipo, boolean ocupado, LocalDateTime inicio, LocalDateTime fin) {
+        Long empleadoId = cita.getEmpleado().getId();
+
+        Map<String, Object> cambio = new LinkedHashMap<>();
+        cambio.put("tipo", tipo);
+        cambio.put("citaId", cita.getId());
+        cambio.put("empleadoId", empleadoId);
+        cambio.put("estado", cita.getEstado());
+        cambio.put("ocupado", ocupado);
+        cambio.put("fechaHoraInicio", inicio.toString());
+        cambio.put("fechaHoraFin", fin.toString());
+        Evento evento = new Evento("cambio-horario", cambio);
+
+        LocalDate ultimoDia = fin.toLocalDate();
+        for (LocalDate dia = inicio.toLocalDate(); !dia.isAfter(ultimoDia); dia = dia.plusDays(1)) {
+            Set<Suscriptor> delDia = suscriptores.get(new ClaveDia(empleadoId, dia));
+            if (delDia != null) {
+                delDia.forEach(suscriptor -> entregar(suscriptor, evento));
+            }
+        }
+    }
+
+    /**
+     * Deja el evento en la cola del suscriptor y programa su envío si no hay uno en curso
+     * Si la cola está llena el suscriptor se desconecta
+     */
+    private void entregar(Suscriptor suscriptor, Evento evento) {
+        if (!suscriptor.activo.get()) {
+            return;
+        }
+        if (!suscriptor.pendientes.offer(evento)) {
+            descartados.increment();
+            desconectar(suscriptor);
+            return;
+        }
+        programarEnvio(suscriptor);
+    }
+
+    private void programarEnvio(Suscriptor suscriptor) {
+        if (suscriptor.enviando.compareAndSet(false, true)) {
+            try {
+                envios.execute(() -> enviarPendientes(suscriptor));
+            } catch (RejectedExecutionException e) {
+                suscriptor.enviando.set(false);
+                desconectar(suscriptor);
+            }
+        }
+    }
+
+    /**
+     * Envía en orden los eventos pendientes de un suscriptor desde un hilo de envío
+     */
+    private void enviarPendientes(Suscriptor suscriptor) {
+        try {
+            Evento evento;
+            while (suscriptor.activo.get() && (evento = suscriptor.pendientes.poll()) != null) {
+                // Marca de inicio para el vigilante; distinta de cero aunque nanoTime devuelva 0
+                suscriptor.envioDesde = System.nanoTime() | 1;
+                if (evento.nombre() == null) {
+                    suscriptor.emitter.send(SseEmitter.event().comment(evento.datos().toString()));
+                } else {
+                    suscriptor.emitter.send(SseEmitter.event().name(evento.nombre()).data(evento.datos()));
+                }
+                suscriptor.envioDesde = 0;
+            }
+        } catch (Exception e) {
+            // El cliente cerró la conexión o el envío falló; no se reintenta
+            desconectar(suscriptor);
+        } finally {
+            suscriptor.envioDesde = 0;
+            suscriptor.enviando.set(false);
+        }
+        // Un evento pudo llegar entre el último poll y la liberación del indicador
+        if (suscriptor.activo.get() && !suscriptor.pendientes.isEmpty()) {
+            programarEnvio(suscriptor);
+        }
+    }
+
+    private void desconectar(Suscriptor suscriptor) {
+        quitar(suscriptor);
+        try {
+            suscriptor.emitter.complete();
+        } catch (Exception e) {
+            // La conexión ya estaba cerrada
+        }
+    }
+
+    private void quitar(Suscriptor suscriptor) {
+        if (suscriptor.activo.compareAndSet(true, false)) {
+            totalSuscriptores.decrementAndGet();
+            suscriptores.computeIfPresent(suscriptor.clave, (clave, delDia) -> {
+                delDia.remove(suscriptor);
+                return delDia.isEmpty() ? null : delDia;
+            });
+        }
+    }
+
+    /**
+     * Clave de suscripción: un empleado en un día concreto
+     */
+    private record ClaveDia(Long empleadoId, LocalDate fecha) {}
+
+    /**
+     * Evento pendiente de envío; sin nombre se envía como comentario
+     */
+    private record Evento(String nombre, Object datos) {}
+
+    /**
+     * Conexión de un cliente con su cola de eventos pendientes
+     */
+    private static class Suscriptor {
+        private final ClaveDia clave;
+        private final SseEmitter emitter;
+        private final Queue<Evento> pendientes = new ArrayBlockingQueue<>(CAPACIDAD_COLA);
+        private final AtomicBoolean activo = new AtomicBoolean(true);
+        private final AtomicBoolean enviando = new AtomicBoolean(false);
+        // Momento (System.nanoTime) en que comenzó el envío en curso; 0 si no hay ninguno
+        private volatile long envioDesde;
+
+        Suscriptor(ClaveDia clave, SseEmitter emitter) {
+            this.clave = clave;
+            this.emitter = emitter;
+        }
+    }
+}
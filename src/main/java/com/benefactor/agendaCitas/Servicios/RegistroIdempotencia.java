@@ -0,0 +1,115 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Registro en memoria de solicitudes con encabezado Idempotency-Key
+ *
+ * <p>Guarda, por clave, el resultado de la primera ejecución de una solicitud para que los reintentos
+ * de clientes con mala conexión reciban la misma respuesta sin volver a validar ni a tocar la base de datos.
+ * Si un reintento llega mientras la primera ejecución sigue en curso, espera su resultado en lugar de
+ * ejecutarse en paralelo.</p>
+ *
+ * <p>El registro está acotado en cantidad de claves y en tiempo de vida. Solo se conservan las respuestas
+ * exitosas y los conflictos (409); los demás errores se descartan para que un reintento vuelva a ejecutarse.</p>
+ */
+@Service
+public class RegistroIdempotencia {
+
+    /**
+     * Longitud máxima aceptada para una clave de idempotencia
+     */
+    public static final int LONGITUD_MAXIMA_CLAVE = 255;
+
+    private final Cache<String, Entrada> entradas;
+    private final Counter repeticiones;
+    private final long esperaSegundos;
+
+    public RegistroIdempotencia(MeterRegistry registry,
+                                @Value("${agenda.idempotencia.maximo-claves:10000}") long maximoClaves,
+                                @Value("${agenda.idempotencia.ttl-minutos:1440}") long ttlMinutos,
+                                @Value("${agenda.idempotencia.espera-segundos:30}") long esperaSegundos) {
+        this.esperaSegundos = esperaSegundos;
+        this.entradas = Caffeine.newBuilder()
+                .maximumSize(maximoClaves)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutos))
+                .build();
+        this.repeticiones = Counter.builder("agenda.idempotencia.repeticiones")
+                .description("Solicitudes respondidas con el resultado guardado de una ejecución anterior").register(registry);
+    }
+
+    /**
+     * Ejecuta una solicitud una sola vez por clave
+     *
+     * @param clave Valor del encabezado Idempotency-Key
+     * @param huella Resumen de los datos de la solicitud; una misma clave no puede reutilizarse con otros datos
+     * @param ejecucion Procesamiento de la solicitud, que ya traduce sus errores a una respuesta
+     * @return Respuesta de la primera ejecución para esa clave
+     */
+    public ResponseEntity<?> ejecutar(String clave, String huella, Supplier<ResponseEntity<?>> ejecucion) {
+        Entrada nueva = new Entrada(huella, new CompletableFuture<>());
+        Entrada existente = entradas.asMap().putIfAbsent(clave, nueva);
+        if (existente != null) {
+            return repetir(existente, huella);
+        }
+
+        ResponseEntity<?> respuesta;
+        try {
+            respuesta = ejecucion.get();
+        } catch (RuntimeException e) {
+            entradas.asMap().remove(clave, nueva);
+            nueva.resultado().completeExceptionally(e);
+            throw e;
+        }
+        if (!respuesta.getStatusCode().is2xxSuccessful() && respuesta.getStatusCode().value() != 409) {
+            entradas.asMap().remove(clave, nueva);
+        }
+        nueva.resultado().complete(respuesta);
+        return respuesta;
+    }
+
+    // ========== MÉTODOS AUXILIARES ==========
+
+    /**
+     * Responde un reintento con el resultado guardado, esperando a la primera ejecución si sigue en curso
+     */
+    private ResponseEntity<?> repetir(Entrada existente, String huella) {
+        if (!existente.huella().equals(huella)) {
+            return ResponseEntity.unprocessableEntity().body(Map.of("error",
+                    "La clave de idempotencia ya se usó con una solicitud diferente"));
+        }
+        try {
+            ResponseEntity<?> respuesta = existente.resultado().get(esperaSegundos, TimeUnit.SECONDS);
+            repeticiones.increment();
+            return respuesta;
+        } catch (TimeoutException e) {
+            return ResponseEntity.status(409).body(Map.of("error",
+                    "Una solicitud con la misma clave de idempotencia sigue en proceso"));
+        } catch (ExecutionException e) {
+            // La primera ejecución falló sin respuesta; se informa el mismo error
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getCause().getMessage())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(503).body(Map.of("error", "Solicitud interrumpida"));
+        }
+    }
+
+    /**
+     * Resultado (en curso o terminado) de la primera ejecución de una clave
+     */
+    private record Entrada(String huella, CompletableFuture<ResponseEntity<?>> resultado) {}
+}
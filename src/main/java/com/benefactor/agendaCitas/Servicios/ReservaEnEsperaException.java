@@ -0,0 +1,17 @@
+package com.benefactor.agendaCitas.Servicios;
+
+/**
+ * Excepción para cuando la cola de reservas no puede atender una cita a tiempo
+ * Los controladores la traducen a 503 Service Unavailable: el horario no se rechazó por estar
+ * ocupado, sino porque el servicio está saturado o deteniéndose, y el cliente puede reintentar
+ */
+public class ReservaEnEsperaException extends RuntimeException {
+
+    public ReservaEnEsperaException(String mensaje) {
+        super(mensaje);
+    }
+
+    public ReservaEnEsperaException(String mensaje, Throwable causa) {
+        super(mensaje, causa);
+    }
+}
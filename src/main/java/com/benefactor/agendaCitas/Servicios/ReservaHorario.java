@@ -0,0 +1,60 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.benefactor.agendaCitas.DTO.OcupacionCitaDTO;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reserva temporal de un horario mientras el cliente completa sus datos
+ * Ocupa el rango del empleado igual que una cita hasta que vence, se libera o se confirma
+ */
+public final class ReservaHorario implements OcupacionCitaDTO {
+
+    static final int ACTIVA = 0;
+    static final int CONFIRMANDO = 1;
+    static final int TERMINADA = 2;
+
+    private final String id;
+    private final Long empleadoId;
+    private final Long servicioId;
+    private final LocalDateTime fechaHoraInicio;
+    private final LocalDateTime fechaHoraFin;
+    private final long expiraMillis;
+    final AtomicInteger estado = new AtomicInteger(ACTIVA);
+
+    ReservaHorario(String id, Long empleadoId, Long servicioId,
+                   LocalDateTime fechaHoraInicio, LocalDateTime fechaHoraFin, long expiraMillis) {
+        this.id = id;
+        this.empleadoId = empleadoId;
+        this.servicioId = servicioId;
+        this.fechaHoraInicio = fechaHoraInicio;
+        this.fechaHoraFin = fechaHoraFin;
+        this.expiraMillis = expiraMillis;
+    }
+
+    /**
+     * Indica si la reserva sigue ocupando el horario en el instante dado
+     * Una reserva que se está confirmando no vence hasta que termine la confirmación
+     */
+    boolean vigente(long ahoraMillis) {
+        int actual = estado.get();
+        return actual == CONFIRMANDO || (actual == ACTIVA && expiraMillis > ahoraMillis);
+    }
+
+    boolean seSolapaCon(LocalDateTime inicio, LocalDateTime fin) {
+        return fechaHoraInicio.isBefore(fin) && fechaHoraFin.isAfter(inicio);
+    }
+
+    long getExpiraMillis() { return expiraMillis; }
+
+    // Getters
+    public String getId() { return id; }
+    @Override public Long getEmpleadoId() { return empleadoId; }
+    public Long getServicioId() { return servicioId; }
+    @Override public LocalDateTime getFechaHoraInicio() { return fechaHoraInicio; }
+    @Override public LocalDateTime getFechaHoraFin() { return fechaHoraFin; }
+    public LocalDateTime getExpira() { return LocalDateTime.ofInstant(Instant.ofEpochMilli(expiraMillis), ZoneId.systemDefault()); }
+}
@@ -0,0 +1,283 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.benefactor.agendaCitas.DTO.OcupacionCitaDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Reservas temporales de horarios en memoria
+ *
+ * <p>Entre que un cliente elige un horario y confirma sus datos, otro cliente podía tomar ese horario.
+ * Una reserva ocupa el rango (empleado, inicio, fin) durante unos minutos: la creación de citas y el
+ * cálculo de disponibilidad la tratan como una cita más, salvo para quien la confirma.</p>
+ *
+ * <p>Las reservas se guardan en mapas concurrentes y su vencimiento se controla con una rueda de tiempo
+ * de una ranura por segundo: cada reserva se encola en la ranura del segundo en que vence y un latido
+ * por segundo solo revisa las ranuras que ya pasaron, sin recorrer todas las reservas. Al consultar,
+ * una reserva vencida se ignora aunque la rueda todavía no la haya retirado.</p>
+ *
+ * <p>Las reservas no se persisten: con varias instancias de la aplicación cada una ve solo las suyas.</p>
+ */
+@Service
+public class ReservasTemporales {
+
+    /**
+     * Ranuras de la rueda de tiempo (segundos); las reservas más largas dan más de una vuelta
+     */
+    private static final int RANURAS = 512;
+
+    private final Map<String, ReservaHorario> porId = new ConcurrentHashMap<>();
+    private final Map<Long, Set<ReservaHorario>> porEmpleado = new ConcurrentHashMap<>();
+    private final Queue<ReservaHorario>[] rueda;
+    private final AtomicInteger total = new AtomicInteger();
+    private final long duracionMillis;
+    private final int maximoReservas;
+    private final LongSupplier reloj;
+    private volatile long ultimoSegundoRevisado;
+
+    @Autowired
+    private CacheDisponibilidad cacheDisponibilidad;
+
+    @Autowired
+    public ReservasTemporales(MeterRegistry registry,
+                              @Value("${agenda.reservas.ttl-minutos:5}") long ttlMinutos,
+                              @Value("${agenda.reservas.maximo:5000}") int maximoReservas) {
+        this(registry, ttlMinutos, maximoReservas, System::currentTimeMillis);
+    }
+
+    /**
+     * Crea el registro con un reloj propio en milisegundos; la rueda empieza en el segundo actual de ese reloj
+     */
+    @SuppressWarnings("unchecked")
+    ReservasTemporales(MeterRegistry registry, long ttlMinutos, int maximoReservas, LongSupplier reloj) {
+        this.reloj = reloj;
+        this.duracionMillis = ttlMinutos * 60_000L;
+        this.maximoReservas = maximoReservas;
+        this.rueda = new Queue[RANURAS];
+        for (int i = 0; i < RANURAS; i++) {
+            rueda[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.ultimoSegundoRevisado = reloj.getAsLong() / 1000;
+
+        Gauge.builder("agenda.reservas.activas", total, AtomicInteger::get)
+                .description("Reservas temporales de horarios vigentes o pendientes de retirar").register(registry);
+    }
+
+    /**
+     * Reserva un horario si no se solapa con otra reserva vigente del mismo empleado
+     * No verifica citas ni horario laboral; eso lo hace CitaService antes de llamar aquí
+     *
+     * @param empleadoId ID del empleado
+     * @param servicioId ID del servicio a agendar
+     * @param inicio Inicio del horario
+     * @param fin Fin del horario
+     * @return Reserva creada
+     * @throws HorarioOcupadoException Si otra reserva vigente ocupa parte del rango
+     * @throws RuntimeException Si se alcanzó el máximo de reservas simultáneas
+     */
+    public ReservaHorario reservar(Long empleadoId, Long servicioId, LocalDateTime inicio, LocalDateTime fin) {
+        if (total.incrementAndGet() > maximoReservas) {
+            total.decrementAndGet();
+            throw new RuntimeException("Se alcanzó el máximo de reservas temporales; intente más tarde");
+        }
+
+        long ahora = reloj.getAsLong();
+        ReservaHorario reserva = new ReservaHorario(UUID.randomUUID().toString(), empleadoId, servicioId,
+                inicio, fin, ahora + duracionMillis);
+        try {
+            // La verificación y el alta ocurren dentro de compute para que dos reservas del mismo empleado no se crucen
+            porEmpleado.compute(empleadoId, (id, delEmpleado) -> {
+                Set<ReservaHorario> conjunto = delEmpleado != null ? delEmpleado : ConcurrentHashMap.newKeySet();
+                for (ReservaHorario otra : conjunto) {
+                    if (otra.vigente(ahora) && otra.seSolapaCon(inicio, fin)) {
+                        throw new HorarioOcupadoException("El horario seleccionado está reservado temporalmente por otro cliente.");
+                    }
+                }
+                conjunto.add(reserva);
+                return conjunto;
+            });
+        } catch (HorarioOcupadoException e) {
+            total.decrementAndGet();
+            throw e;
+        }
+        porId.put(reserva.getId(), reserva);
+        rueda[ranura(reserva.getExpiraMillis() / 1000)].offer(reserva);
+        return reserva;
+    }
+
+    /**
+     * Indica si alguna reserva vigente de otro cliente ocupa parte del rango
+     *
+     * @param empleadoId ID del empleado
+     * @param inicio Inicio del rango
+     * @param fin Fin del rango
+     * @param reservaPropia ID de la reserva de quien consulta, que no cuenta como conflicto (puede ser null)
+     * @return true si el rango está reservado por otro
+     */
+    public boolean bloquea(Long empleadoId, LocalDateTime inicio, LocalDateTime fin, String reservaPropia) {
+        Set<ReservaHorario> delEmpleado = porEmpleado.get(empleadoId);
+        if (delEmpleado == null) {
+            return false;
+        }
+        long ahora = reloj.getAsLong();
+        for (ReservaHorario reserva : delEmpleado) {
+            if (reserva.vigente(ahora) && reserva.seSolapaCon(inicio, fin) && !reserva.getId().equals(reservaPropia)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reservas vigentes de varios empleados que se solapan con un intervalo
+     * Tienen la misma forma que las citas para sumarlas a los intervalos ocupados de MotorDisponibilidad
+     *
+     * @param empleadoIds IDs de los empleados
+     * @param inicio Inicio del intervalo
+     * @param fin Fin del intervalo
+     * @return Reservas vigentes en el intervalo
+     */
+    public List<OcupacionCitaDTO> enIntervalo(Collection<Long> empleadoIds, LocalDateTime inicio, LocalDateTime fin) {
+        List<OcupacionCitaDTO> resultado = new ArrayList<>();
+        if (porId.isEmpty()) {
+            return resultado;
+        }
+        long ahora = reloj.getAsLong();
+        for (Long empleadoId : empleadoIds) {
+            Set<ReservaHorario> delEmpleado = porEmpleado.get(empleadoId);
+            if (delEmpleado != null) {
+                for (ReservaHorario reserva : delEmpleado) {
+                    if (reserva.vigente(ahora) && reserva.seSolapaCon(inicio, fin)) {
+                        resultado.add(reserva);
+                    }
+                }
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Marca una reserva como en confirmación para convertirla en cita
+     * Mientras se confirma sigue ocupando el horario y no vence; solo una confirmación puede tomarla
+     *
+     * @param reservaId ID de la reserva
+     * @return Reserva tomada
+     * @throws RuntimeException Si la reserva no existe, ya venció o ya se está confirmando
+     */
+    public ReservaHorario iniciarConfirmacion(String reservaId) {
+        ReservaHorario reserva = porId.get(reservaId);
+        if (reserva == null || !reserva.vigente(reloj.getAsLong())
+                || !reserva.estado.compareAndSet(ReservaHorario.ACTIVA, ReservaHorario.CONFIRMANDO)) {
+            throw new RuntimeException("La reserva no existe, ya venció o ya fue confirmada");
+        }
+        // Pudo vencer entre la verificación y el cambio de estado
+        if (reserva.getExpiraMillis() <= reloj.getAsLong()) {
+            cancelarConfirmacion(reserva);
+            throw new RuntimeException("La reserva no existe, ya venció o ya fue confirmada");
+        }
+        return reserva;
+    }
+
+    /**
+     * Devuelve a activa una reserva cuya confirmación falló; si ya venció se retira
+     *
+     * @param reserva Reserva tomada con {@link #iniciarConfirmacion}
+     */
+    public void cancelarConfirmacion(ReservaHorario reserva) {
+        reserva.estado.compareAndSet(ReservaHorario.CONFIRMANDO, ReservaHorario.ACTIVA);
+        if (reserva.getExpiraMillis() <= reloj.getAsLong()) {
+            vencer(reserva);
+        }
+    }
+
+    /**
+     * Retira una reserva, ya sea porque se confirmó o porque el cliente la abandonó
+     *
+     * @param reservaId ID de la reserva
+     * @return Reserva retirada, o null si no existía
+     */
+    public ReservaHorario liberar(String reservaId) {
+        ReservaHorario reserva = porId.get(reservaId);
+        if (reserva == null) {
+            return null;
+        }
+        reserva.estado.set(ReservaHorario.TERMINADA);
+        quitar(reserva);
+        return reserva;
+    }
+
+    /**
+     * Avanza la rueda de tiempo hasta el segundo actual y retira las reservas vencidas
+     * Las reservas retiradas liberan su horario en la caché de disponibilidad
+     */
+    @Scheduled(fixedRate = 1000)
+    public void avanzarRueda() {
+        long ahora = reloj.getAsLong();
+        long segundoActual = ahora / 1000;
+        long desde = Math.max(ultimoSegundoRevisado + 1, segundoActual - RANURAS + 1);
+        for (long segundo = desde; segundo <= segundoActual; segundo++) {
+            Queue<ReservaHorario> ranura = rueda[ranura(segundo)];
+            // Solo se revisan las reservas presentes al empezar, para no procesar las que se vuelven a encolar
+            for (int pendientes = ranura.size(); pendientes > 0; pendientes--) {
+                ReservaHorario reserva = ranura.poll();
+                if (reserva == null) {
+                    break;
+                }
+                int estado = reserva.estado.get();
+                if (estado == ReservaHorario.TERMINADA) {
+                    continue;
+                }
+                if (estado == ReservaHorario.ACTIVA && reserva.getExpiraMillis() <= ahora) {
+                    vencer(reserva);
+                } else {
+                    // Aún no vence (otra vuelta de la rueda) o se está confirmando: revisar de nuevo más adelante
+                    long siguiente = Math.max(reserva.getExpiraMillis() / 1000, segundoActual + 1);
+                    rueda[ranura(siguiente)].offer(reserva);
+                }
+            }
+        }
+        ultimoSegundoRevisado = segundoActual;
+    }
+
+    // ========== MÉTODOS AUXILIARES ==========
+
+    private void vencer(ReservaHorario reserva) {
+        if (reserva.estado.compareAndSet(ReservaHorario.ACTIVA, ReservaHorario.TERMINADA)) {
+            quitar(reserva);
+            if (cacheDisponibilidad != null) {
+                cacheDisponibilidad.invalidarRango(reserva.getEmpleadoId(), reserva.getFechaHoraInicio(), reserva.getFechaHoraFin());
+            }
+        }
+    }
+
+    private void quitar(ReservaHorario reserva) {
+        if (porId.remove(reserva.getId(), reserva)) {
+            total.decrementAndGet();
+            porEmpleado.computeIfPresent(reserva.getEmpleadoId(), (id, delEmpleado) -> {
+                delEmpleado.remove(reserva);
+                return delEmpleado.isEmpty() ? null : delEmpleado;
+            });
+        }
+    }
+
+    private int ranura(long segundo) {
+        return (int) Math.floorMod(segundo, (long) RANURAS);
+    }
+}
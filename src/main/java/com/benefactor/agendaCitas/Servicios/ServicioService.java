@@ -22,6 +22,9 @@ public class ServicioService {
     @Autowired
     private ServicioRepository servicioRepository;
 
+    @Autowired
+    private CacheDisponibilidad cacheDisponibilidad;
+
     /**
      * Obtiene todos los servicios registrados en el sistema.
      *
@@ -107,6 +110,8 @@ public class ServicioService {
                     servicio.setActivo(servicioActualizado.getActivo());
 
                     Servicio servicioActualizadoEntity = servicioRepository.save(servicio);
+                    // La duración puede haber cambiado: la disponibilidad calculada para este servicio ya no es válida
+                    cacheDisponibilidad.invalidarServicio(servicioActualizadoEntity.getId());
                     System.out.println("✅ Servicio actualizado: " + servicioActualizadoEntity.getId());
                     return servicioActualizadoEntity;
                 })
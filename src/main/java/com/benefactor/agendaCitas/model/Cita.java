@@ -1,6 +1,7 @@
 package com.benefactor.agendaCitas.model;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -8,18 +9,19 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "cita")
 public class Cita {
+    // Secuencia con asignación en bloques de 50 (optimizador pooled) para que Hibernate pueda
+    // insertar citas en lotes JDBC; con IDENTITY cada INSERT debe ejecutarse solo para conocer su id
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cita_id_seq")
+    @SequenceGenerator(name = "cita_id_seq", sequenceName = "cita_id_seq", allocationSize = 50)
     private Long id;
 
-    @Column(name = "cliente_nombre", nullable = false, length = 100)
-    private String clienteNombre;
-
-    @Column(name = "cliente_documento", nullable = false, length = 20)
-    private String clienteDocumento;
-
-    @Column(name = "cliente_celular", nullable = false, length = 20)
-    private String clienteCelular;
+    // Nombre, documento y celular se guardan una sola vez en la tabla cliente; la respuesta JSON
+    // los sigue exponiendo como clienteNombre, clienteDocumento y clienteCelular
+    @ManyToOne
+    @JoinColumn(name = "cliente_id", nullable = false)
+    @JsonIgnore
+    private Cliente cliente;
 
     @ManyToOne
     @JoinColumn(name = "empleado_id", nullable = false)
@@ -36,7 +38,7 @@ public class Cita {
     private LocalDateTime fechaHoraFin;
 
     @Column(nullable = false, length = 20)
-    private String estado = "programada"; // programada, cumplida, cancelada
+    private String estado = "programada"; // programada, cumplida, cancelada, no_presento
 
     @Column(name = "costo_total", nullable = false, precision = 10, scale = 2)
     private BigDecimal costoTotal;
@@ -47,14 +49,18 @@ public class Cita {
     @Column(name = "recordatorio_enviado")
     private Boolean recordatorioEnviado = false;
 
+    // Control de concurrencia optimista: cada actualización incrementa la versión y la que parte
+    // de una versión vieja falla en lugar de sobrescribir el cambio hecho desde otra pantalla
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     // Constructores
     public Cita() {}
 
-    public Cita(String clienteNombre, String clienteCelular, Empleado empleado,
+    public Cita(Cliente cliente, Empleado empleado,
                 Servicio servicio, LocalDateTime fechaHoraInicio) {
-        this.clienteNombre = clienteNombre;
-        this.clienteDocumento = clienteDocumento;
-        this.clienteCelular = clienteCelular;
+        this.cliente = cliente;
         this.empleado = empleado;
         this.servicio = servicio;
         this.fechaHoraInicio = fechaHoraInicio;
@@ -62,23 +68,26 @@ public class Cita {
         this.costoTotal = servicio.getCosto();
     }
 
+    /**
+     * Indica si una cita en el estado dado bloquea el horario del empleado
+     * Las citas canceladas y las de clientes que no se presentaron liberan su horario
+     */
+    public static boolean ocupaHorario(String estado) {
+        return "programada".equals(estado) || "cumplida".equals(estado);
+    }
+
     // Getters y Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
-    public String getClienteNombre() { return clienteNombre; }
-    public void setClienteNombre(String clienteNombre) { this.clienteNombre = clienteNombre; }
+    public Cliente getCliente() { return cliente; }
+    public void setCliente(Cliente cliente) { this.cliente = cliente; }
 
-    public String getClienteDocumento() {
-        return clienteDocumento;
-    }
+    public String getClienteNombre() { return cliente != null ? cliente.getNombre() : null; }
 
-    public void setClienteDocumento(String clienteDocumento) {
-        this.clienteDocumento = clienteDocumento;
-    }
+    public String getClienteDocumento() { return cliente != null ? cliente.getDocumento() : null; }
 
-    public String getClienteCelular() { return clienteCelular; }
-    public void setClienteCelular(String clienteCelular) { this.clienteCelular = clienteCelular; }
+    public String getClienteCelular() { return cliente != null ? cliente.getCelular() : null; }
 
     public Empleado getEmpleado() { return empleado; }
     public void setEmpleado(Empleado empleado) { this.empleado = empleado; }
@@ -108,4 +117,7 @@ public class Cita {
 
     public Boolean getRecordatorioEnviado() { return recordatorioEnviado; }
     public void setRecordatorioEnviado(Boolean recordatorioEnviado) { this.recordatorioEnviado = recordatorioEnviado; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 }
\ No newline at end of file
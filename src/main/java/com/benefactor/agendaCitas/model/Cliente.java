@@ -0,0 +1,56 @@
+package com.benefactor.agendaCitas.model;
+
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Cliente identificado por documento y celular
+ * Las citas lo referencian en lugar de repetir nombre, documento y celular en cada fila
+ */
+@Entity
+@Table(name = "cliente", uniqueConstraints = @UniqueConstraint(name = "uk_cliente_documento_celular",
+        columnNames = {"documento", "celular"}))
+public class Cliente {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 20)
+    private String documento;
+
+    @Column(nullable = false, length = 20)
+    private String celular;
+
+    @Column(nullable = false, length = 100)
+    private String nombre;
+
+    @Column(name = "fecha_creacion")
+    private LocalDateTime fechaCreacion = LocalDateTime.now();
+
+    // Constructores
+    public Cliente() {}
+
+    public Cliente(Long id, String documento, String celular, String nombre) {
+        this.id = id;
+        this.documento = documento;
+        this.celular = celular;
+        this.nombre = nombre;
+    }
+
+    // Getters y Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getDocumento() { return documento; }
+    public void setDocumento(String documento) { this.documento = documento; }
+
+    public String getCelular() { return celular; }
+    public void setCelular(String celular) { this.celular = celular; }
+
+    public String getNombre() { return nombre; }
+    public void setNombre(String nombre) { this.nombre = nombre; }
+
+    public LocalDateTime getFechaCreacion() { return fechaCreacion; }
+    public void setFechaCreacion(LocalDateTime fechaCreacion) { this.fechaCreacion = fechaCreacion; }
+}
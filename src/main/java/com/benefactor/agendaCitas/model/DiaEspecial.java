@@ -0,0 +1,77 @@
+package com.benefactor.agendaCitas.model;
+
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+@Entity
+@Table(name = "dia_especial")
+public class DiaEspecial {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "empleado_id", nullable = false)
+    private Empleado empleado;
+
+    @Column(nullable = false)
+    private LocalDate fecha;
+
+    @Column(nullable = false, length = 20)
+    private String tipo; // festivo, vacaciones, permiso, enfermedad
+
+    @Column(length = 200)
+    private String descripcion;
+
+    @Column(name = "todo_el_dia")
+    private Boolean todoElDia = true;
+
+    @Column(name = "hora_inicio")
+    private LocalTime horaInicio; // Solo aplica cuando todoElDia = false
+
+    @Column(name = "hora_fin")
+    private LocalTime horaFin; // Solo aplica cuando todoElDia = false
+
+    @Column(name = "fecha_creacion")
+    private LocalDateTime fechaCreacion = LocalDateTime.now();
+
+    // Constructores
+    public DiaEspecial() {}
+
+    public DiaEspecial(Empleado empleado, LocalDate fecha, String tipo) {
+        this.empleado = empleado;
+        this.fecha = fecha;
+        this.tipo = tipo;
+    }
+
+    // Getters y Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Empleado getEmpleado() { return empleado; }
+    public void setEmpleado(Empleado empleado) { this.empleado = empleado; }
+
+    public LocalDate getFecha() { return fecha; }
+    public void setFecha(LocalDate fecha) { this.fecha = fecha; }
+
+    public String getTipo() { return tipo; }
+    public void setTipo(String tipo) { this.tipo = tipo; }
+
+    public String getDescripcion() { return descripcion; }
+    public void setDescripcion(String descripcion) { this.descripcion = descripcion; }
+
+    public Boolean getTodoElDia() { return todoElDia; }
+    public void setTodoElDia(Boolean todoElDia) { this.todoElDia = todoElDia; }
+
+    public LocalTime getHoraInicio() { return horaInicio; }
+    public void setHoraInicio(LocalTime horaInicio) { this.horaInicio = horaInicio; }
+
+    public LocalTime getHoraFin() { return horaFin; }
+    public void setHoraFin(LocalTime horaFin) { this.horaFin = horaFin; }
+
+    public LocalDateTime getFechaCreacion() { return fechaCreacion; }
+    public void setFechaCreacion(LocalDateTime fechaCreacion) { this.fechaCreacion = fechaCreacion; }
+}
@@ -0,0 +1,56 @@
+package com.benefactor.agendaCitas.Repository;
+
+import com.benefactor.agendaCitas.model.Cita;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Pruebas del criterio de conflicto de citas
+ * Las consultas derivadas reciben los extremos cruzados (fin, inicio) para expresar el solapamiento semiabierto
+ */
+class CitaRepositoryTest {
+
+    private static final LocalDateTime INICIO = LocalDateTime.of(2030, 1, 7, 9, 0);
+    private static final LocalDateTime FIN = LocalDateTime.of(2030, 1, 7, 10, 0);
+
+    @Test
+    void existeConflictoConsultaSoloLosEstadosQueOcupanConLosExtremosCruzados() {
+        CitaRepository repository = mock(CitaRepository.class, CALLS_REAL_METHODS);
+        doReturn(true).when(repository)
+                .existsByEmpleadoIdAndEstadoInAndFechaHoraInicioLessThanAndFechaHoraFinGreaterThan(anyLong(), any(), any(), any());
+
+        assertTrue(repository.existeConflicto(3L, INICIO, FIN));
+        verify(repository).existsByEmpleadoIdAndEstadoInAndFechaHoraInicioLessThanAndFechaHoraFinGreaterThan(
+                3L, CitaRepository.ESTADOS_QUE_OCUPAN, FIN, INICIO);
+    }
+
+    @Test
+    void existeConflictoExcluyendoDescartaLaPropiaCita() {
+        CitaRepository repository = mock(CitaRepository.class, CALLS_REAL_METHODS);
+        doReturn(false).when(repository)
+                .existsByEmpleadoIdAndIdNotAndEstadoInAndFechaHoraInicioLessThanAndFechaHoraFinGreaterThan(
+                        anyLong(), anyLong(), any(), any(), any());
+
+        assertFalse(repository.existeConflictoExcluyendo(8L, 3L, INICIO, FIN));
+        verify(repository).existsByEmpleadoIdAndIdNotAndEstadoInAndFechaHoraInicioLessThanAndFechaHoraFinGreaterThan(
+                3L, 8L, CitaRepository.ESTADOS_QUE_OCUPAN, FIN, INICIO);
+    }
+
+    @Test
+    void losEstadosQueOcupanCoincidenConCitaOcupaHorario() {
+        for (String estado : List.of("programada", "cumplida", "cancelada", "no_presento")) {
+            assertEquals(Cita.ocupaHorario(estado), CitaRepository.ESTADOS_QUE_OCUPAN.contains(estado), estado);
+        }
+        assertFalse(Cita.ocupaHorario(null));
+    }
+}
@@ -0,0 +1,264 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas del filtro de Bloom de clientes
+ * Lo importante es que nunca descarte a un cliente registrado, ni siquiera durante una reconstrucción
+ */
+class FiltroClientesTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final List<String[]> tabla = new ArrayList<>();
+    private final List<Long> revisadoDesde = new ArrayList<>();
+    private FiltroConPausa filtro;
+
+    // Se ejecutan en medio y al final de la lectura de la tabla, como registros concurrentes con la reconstrucción
+    private Runnable duranteLaLectura = () -> {};
+    private Runnable duranteLaLecturaFinal = () -> {};
+
+    @BeforeEach
+    void crearFiltro() throws SQLException {
+        filtro = new FiltroConPausa(registry);
+        ReflectionTestUtils.setField(filtro, "jdbcTemplate", jdbcTemplate);
+
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenAnswer(invocacion -> (long) tabla.size());
+        doAnswer(invocacion -> {
+            RowCallbackHandler manejador = invocacion.getArgument(1);
+            // Copia de la tabla al iniciar la lectura: lo que se registre después no aparece en ella
+            List<String[]> filas = new ArrayList<>(tabla);
+            for (int i = 0; i < filas.size(); i++) {
+                if (i == filas.size() / 2) {
+                    duranteLaLectura.run();
+                }
+                manejador.processRow(fila(filas, i));
+            }
+            duranteLaLecturaFinal.run();
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        doAnswer(invocacion -> {
+            RowCallbackHandler manejador = invocacion.getArgument(1);
+            long desde = invocacion.getArgument(2);
+            revisadoDesde.add(desde);
+            for (int i = (int) desde; i < tabla.size(); i++) {
+                manejador.processRow(fila(tabla, i));
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), anyLong());
+    }
+
+    @Test
+    void antesDeConstruirseTodoPuedeExistir() {
+        assertTrue(filtro.puedeExistir("999", "3000000000"));
+        filtro.registrar("1", "3000000001");
+        assertTrue(filtro.puedeExistir("999", "3000000000"));
+    }
+
+    @Test
+    void noHayFalsosNegativosParaLosClientesDeLaTabla() {
+        agregarClientes(500);
+
+        filtro.construir();
+
+        for (String[] cliente : tabla) {
+            assertTrue(filtro.puedeExistir(cliente[0], cliente[1]), cliente[0]);
+        }
+    }
+
+    @Test
+    void unClienteRegistradoDuranteLaReconstruccionNoSePierde() {
+        agregarClientes(200);
+        filtro.construir();
+        agregarClientes(200);
+        // Llega a la tabla después de que la lectura tomó su copia, pero se registra mientras se lee
+        duranteLaLectura = () -> {
+            tabla.add(new String[]{"nuevo", "3100000000"});
+            filtro.registrar("nuevo", "3100000000");
+        };
+
+        filtro.construir();
+
+        assertTrue(filtro.puedeExistir("nuevo", "3100000000"));
+        for (String[] cliente : tabla) {
+            assertTrue(filtro.puedeExistir(cliente[0], cliente[1]), cliente[0]);
+        }
+    }
+
+    @Test
+    void unaReconstruccionQueTerminaEntreLasDosLecturasDeRegistrarNoPierdeAlCliente() throws Exception {
+        agregarClientes(200);
+        filtro.construir();
+
+        // La reconstrucción se detiene tras leer la tabla, antes de publicar el filtro nuevo
+        CountDownLatch leida = new CountDownLatch(1);
+        CountDownLatch continuar = new CountDownLatch(1);
+        duranteLaLecturaFinal = () -> {
+            leida.countDown();
+            try {
+                continuar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        Thread reconstruccion = new Thread(filtro::construir);
+        reconstruccion.start();
+        assertTrue(leida.await(5, TimeUnit.SECONDS));
+
+        // El cliente se confirmó después de la lectura; registrar lee el primer filtro y antes de leer
+        // el segundo la reconstrucción publica el filtro nuevo y deja de estar en construcción
+        filtro.alAgregar = () -> {
+            continuar.countDown();
+            try {
+                reconstruccion.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        filtro.registrar("entre-lecturas", "3300000000");
+
+        assertFalse(reconstruccion.isAlive());
+        assertTrue(filtro.puedeExistir("entre-lecturas", "3300000000"));
+    }
+
+    @Test
+    void laRevisionAgregaLosClientesCreadosPorOtrasInstancias() {
+        agregarClientes(100);
+        filtro.construir();
+        // Clientes insertados por otra instancia, que nunca pasan por registrar en esta
+        agregarClientes(50);
+
+        filtro.actualizar();
+        agregarClientes(20);
+        filtro.actualizar();
+
+        for (String[] cliente : tabla) {
+            assertTrue(filtro.puedeExistir(cliente[0], cliente[1]), cliente[0]);
+        }
+        // Cada revisión vuelve a leer el tramo de la anterior
+        assertEquals(List.of(100L, 100L), revisadoDesde);
+    }
+
+    @Test
+    void laRevisionNoHaceNadaAntesDeLaPrimeraConstruccion() {
+        filtro.actualizar();
+
+        assertTrue(revisadoDesde.isEmpty());
+    }
+
+    @Test
+    void unClienteRegistradoDespuesDeConstruirPuedeExistir() {
+        agregarClientes(100);
+        filtro.construir();
+
+        filtro.registrar("tardio", "3200000000");
+
+        assertTrue(filtro.puedeExistir("tardio", "3200000000"));
+    }
+
+    @Test
+    void losClientesDesconocidosSeDescartanCasiSiempre() {
+        agregarClientes(1000);
+        filtro.construir();
+
+        int descartados = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (!filtro.puedeExistir("desconocido-" + i, "3999999999")) {
+                descartados++;
+            }
+        }
+
+        // Tasa esperada de falsos positivos: 1 %
+        assertTrue(descartados > 9_700, "descartados: " + descartados);
+        assertEquals(descartados, registry.counter("agenda.clientes.filtro.descartadas").count());
+    }
+
+    @Test
+    void documentoYCelularNoSeConfundenAlConcatenarse() {
+        tabla.add(new String[]{"12", "345"});
+        filtro.construir();
+
+        assertTrue(filtro.puedeExistir("12", "345"));
+        assertFalse(filtro.puedeExistir("123", "45"));
+    }
+
+    @Test
+    void unaReconstruccionFallidaConservaElFiltroAnterior() {
+        agregarClientes(100);
+        filtro.construir();
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenThrow(new IllegalStateException("sin conexión"));
+
+        filtro.construir();
+
+        for (String[] cliente : tabla) {
+            assertTrue(filtro.puedeExistir(cliente[0], cliente[1]), cliente[0]);
+        }
+    }
+
+    // ========== AUXILIARES ==========
+
+    /**
+     * Filtro que ejecuta una acción la primera vez que se agrega una clave después de armarla,
+     * para detener registrar entre sus dos lecturas
+     */
+    private static class FiltroConPausa extends FiltroClientes {
+        private volatile Runnable alAgregar;
+
+        FiltroConPausa(MeterRegistry registry) {
+            super(registry, 1000, 0.01);
+        }
+
+        @Override
+        Filtro crearFiltro(long capacidad) {
+            return new Filtro(capacidad, 0.01) {
+                @Override
+                void agregar(String clave) {
+                    super.agregar(clave);
+                    Runnable accion = alAgregar;
+                    if (accion != null) {
+                        alAgregar = null;
+                        accion.run();
+                    }
+                }
+            };
+        }
+    }
+
+    // Fila i de la tabla con id i + 1, como la devolvería el ResultSet
+    private static ResultSet fila(List<String[]> filas, int i) throws SQLException {
+        ResultSet fila = mock(ResultSet.class);
+        when(fila.getLong("id")).thenReturn(i + 1L);
+        when(fila.getString("documento")).thenReturn(filas.get(i)[0]);
+        when(fila.getString("celular")).thenReturn(filas.get(i)[1]);
+        return fila;
+    }
+
+    private void agregarClientes(int cantidad) {
+        int desde = tabla.size();
+        for (int i = desde; i < desde + cantidad; i++) {
+            tabla.add(new String[]{String.valueOf(1_000_000 + i), String.valueOf(3_000_000_000L + i)});
+        }
+    }
+}
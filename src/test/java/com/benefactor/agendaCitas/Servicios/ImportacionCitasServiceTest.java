@@ -0,0 +1,80 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la pasada de solapamientos internos y del detalle de rechazos de la importación
+ */
+class ImportacionCitasServiceTest {
+
+    private static final LocalDate FECHA = LocalDate.of(2030, 1, 7);
+
+    @Test
+    void unaFilaRechazadaNoArrastraALaSiguiente() {
+        // A 09:00-10:00, B 09:30-10:30 se solapa con A, C 10:00-11:00 solo se solapa con B (rechazada)
+        ImportacionCitasService.SolapamientosInternos pasada = new ImportacionCitasService.SolapamientosInternos();
+
+        assertNull(pasada.evaluar(1, 2, hora(9, 0), hora(10, 0)));
+        assertEquals(2, pasada.evaluar(1, 3, hora(9, 30), hora(10, 30)));
+        assertNull(pasada.evaluar(1, 4, hora(10, 0), hora(11, 0)));
+    }
+
+    @Test
+    void filasQueSeTocanSeAceptanAmbas() {
+        ImportacionCitasService.SolapamientosInternos pasada = new ImportacionCitasService.SolapamientosInternos();
+
+        assertNull(pasada.evaluar(1, 2, hora(10, 0), hora(11, 0)));
+        assertNull(pasada.evaluar(1, 3, hora(9, 0), hora(10, 0)));
+        assertNull(pasada.evaluar(1, 4, hora(11, 0), hora(12, 0)));
+    }
+
+    @Test
+    void gananLasLineasAnterioresAunqueEmpiecenMasTarde() {
+        ImportacionCitasService.SolapamientosInternos pasada = new ImportacionCitasService.SolapamientosInternos();
+
+        assertNull(pasada.evaluar(1, 2, hora(14, 0), hora(15, 0)));
+        assertNull(pasada.evaluar(1, 3, hora(9, 0), hora(10, 0)));
+        // Se solapa con la línea 3, que es la última aceptada que empieza antes de su fin
+        assertEquals(3, pasada.evaluar(1, 4, hora(8, 30), hora(9, 30)));
+        // Contiene por completo a la línea 2
+        assertEquals(2, pasada.evaluar(1, 5, hora(13, 0), hora(16, 0)));
+        assertNull(pasada.evaluar(1, 6, hora(10, 0), hora(14, 0)));
+    }
+
+    @Test
+    void cadaEmpleadoTieneSusPropiasFilasAceptadas() {
+        ImportacionCitasService.SolapamientosInternos pasada = new ImportacionCitasService.SolapamientosInternos();
+
+        assertNull(pasada.evaluar(1, 2, hora(9, 0), hora(10, 0)));
+        assertNull(pasada.evaluar(2, 3, hora(9, 0), hora(10, 0)));
+        assertEquals(3, pasada.evaluar(2, 4, hora(9, 15), hora(9, 45)));
+    }
+
+    @Test
+    void elDetalleConservaLasPrimerasLineasRechazadasOrdenadas() {
+        ImportacionCitasService.ResultadoImportacion resultado = new ImportacionCitasService.ResultadoImportacion();
+        // Los rechazos llegan desordenados: primero las líneas altas
+        for (int linea = 1500; linea >= 2; linea--) {
+            resultado.rechazar(linea, "motivo " + linea);
+        }
+
+        List<Map<String, Object>> rechazadas = resultado.rechazadasPorLinea();
+
+        assertEquals(1000, rechazadas.size());
+        for (int i = 0; i < rechazadas.size(); i++) {
+            assertEquals(i + 2, rechazadas.get(i).get("linea"));
+            assertEquals("motivo " + (i + 2), rechazadas.get(i).get("motivo"));
+        }
+    }
+
+    private static LocalDateTime hora(int hora, int minuto) {
+        return FECHA.atTime(hora, minuto);
+    }
+}
@@ -0,0 +1,148 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.benefactor.agendaCitas.Repository.DiaEspecialRepository;
+import com.benefactor.agendaCitas.model.DiaEspecial;
+import com.benefactor.agendaCitas.model.Empleado;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas del índice de días especiales
+ * Los bloqueos se guardan por mes, así que se revisan los cruces de medianoche y de fin de mes
+ */
+class IndiceDiasEspecialesTest {
+
+    private static final Long EMPLEADO_ID = 1L;
+    private static final long SEGUNDOS_DIA = 24 * 60 * 60;
+
+    private final List<DiaEspecial> dias = new ArrayList<>();
+    private DiaEspecialRepository diaEspecialRepository;
+    private IndiceDiasEspeciales indice;
+
+    @BeforeEach
+    void crearIndice() {
+        diaEspecialRepository = mock(DiaEspecialRepository.class);
+        when(diaEspecialRepository.findByFechaBetween(any(), any())).thenAnswer(invocacion -> {
+            LocalDate desde = invocacion.getArgument(0);
+            LocalDate hasta = invocacion.getArgument(1);
+            return dias.stream()
+                    .filter(dia -> !dia.getFecha().isBefore(desde) && !dia.getFecha().isAfter(hasta))
+                    .toList();
+        });
+        indice = new IndiceDiasEspeciales();
+        ReflectionTestUtils.setField(indice, "diaEspecialRepository", diaEspecialRepository);
+    }
+
+    @Test
+    void diasCompletosConsecutivosSeFusionanAtravesDeLaMedianoche() {
+        dias.add(diaCompleto(LocalDate.of(2030, 1, 15)));
+        dias.add(diaCompleto(LocalDate.of(2030, 1, 16)));
+
+        assertArrayEquals(new long[0], indice.bloqueosDelDia(EMPLEADO_ID, LocalDate.of(2030, 1, 14)));
+        assertArrayEquals(new long[]{0, SEGUNDOS_DIA}, indice.bloqueosDelDia(EMPLEADO_ID, LocalDate.of(2030, 1, 15)));
+        assertArrayEquals(new long[]{0, SEGUNDOS_DIA}, indice.bloqueosDelDia(EMPLEADO_ID, LocalDate.of(2030, 1, 16)));
+        assertArrayEquals(new long[0], indice.bloqueosDelDia(EMPLEADO_ID, LocalDate.of(2030, 1, 17)));
+
+        assertTrue(indice.bloquea(EMPLEADO_ID, LocalDate.of(2030, 1, 15).atTime(23, 0), LocalDate.of(2030, 1, 16).atTime(1, 0)));
+        assertFalse(indice.bloquea(EMPLEADO_ID, LocalDate.of(2030, 1, 14).atTime(23, 0), LocalDate.of(2030, 1, 15).atStartOfDay()));
+        assertFalse(indice.bloquea(EMPLEADO_ID, LocalDate.of(2030, 1, 17).atStartOfDay(), LocalDate.of(2030, 1, 17).atTime(1, 0)));
+    }
+
+    @Test
+    void bloqueosDelDiaRespetaElCambioDeMes() {
+        dias.add(diaCompleto(LocalDate.of(2030, 1, 31)));
+        dias.add(diaCompleto(LocalDate.of(2030, 2, 1)));
+
+        assertArrayEquals(new long[]{0, SEGUNDOS_DIA}, indice.bloqueosDelDia(EMPLEADO_ID, LocalDate.of(2030, 1, 31)));
+        assertArrayEquals(new long[]{0, SEGUNDOS_DIA}, indice.bloqueosDelDia(EMPLEADO_ID, LocalDate.of(2030, 2, 1)));
+        assertArrayEquals(new long[0], indice.bloqueosDelDia(EMPLEADO_ID, LocalDate.of(2030, 1, 30)));
+        assertArrayEquals(new long[0], indice.bloqueosDelDia(EMPLEADO_ID, LocalDate.of(2030, 2, 2)));
+    }
+
+    @Test
+    void bloqueaRevisaTodosLosMesesQueAbarcaElRango() {
+        // Solo el primer día de febrero está bloqueado; el rango empieza en enero
+        dias.add(diaCompleto(LocalDate.of(2030, 2, 1)));
+
+        assertTrue(indice.bloquea(EMPLEADO_ID, LocalDate.of(2030, 1, 31).atTime(23, 30), LocalDate.of(2030, 2, 1).atTime(0, 30)));
+        assertFalse(indice.bloquea(EMPLEADO_ID, LocalDate.of(2030, 1, 31).atTime(23, 0), LocalDate.of(2030, 2, 1).atStartOfDay()));
+        assertArrayEquals(new long[0], indice.bloqueosDelDia(EMPLEADO_ID, LocalDate.of(2030, 1, 31)));
+    }
+
+    @Test
+    void bloqueoDelUltimoDiaDelAnoNoSeExtiendeAlSiguiente() {
+        dias.add(diaCompleto(LocalDate.of(2030, 12, 31)));
+
+        assertArrayEquals(new long[]{0, SEGUNDOS_DIA}, indice.bloqueosDelDia(EMPLEADO_ID, LocalDate.of(2030, 12, 31)));
+        assertArrayEquals(new long[0], indice.bloqueosDelDia(EMPLEADO_ID, LocalDate.of(2031, 1, 1)));
+        assertFalse(indice.bloquea(EMPLEADO_ID, LocalDate.of(2031, 1, 1).atStartOfDay(), LocalDate.of(2031, 1, 1).atTime(8, 0)));
+    }
+
+    @Test
+    void permisoParcialBloqueaSoloSuRangoSemiabierto() {
+        LocalDate fecha = LocalDate.of(2030, 3, 10);
+        dias.add(permiso(fecha, LocalTime.of(10, 0), LocalTime.of(12, 0)));
+
+        assertArrayEquals(new long[]{10 * 3600, 12 * 3600}, indice.bloqueosDelDia(EMPLEADO_ID, fecha));
+        assertTrue(indice.bloquea(EMPLEADO_ID, fecha.atTime(11, 59), fecha.atTime(12, 0)));
+        assertFalse(indice.bloquea(EMPLEADO_ID, fecha.atTime(12, 0), fecha.atTime(13, 0)));
+        assertFalse(indice.bloquea(EMPLEADO_ID, fecha.atTime(9, 0), fecha.atTime(10, 0)));
+    }
+
+    @Test
+    void permisoSinHorasBloqueaTodoElDiaYPermisoInvertidoSeIgnora() {
+        LocalDate sinHoras = LocalDate.of(2030, 3, 10);
+        LocalDate invertido = LocalDate.of(2030, 3, 11);
+        dias.add(permiso(sinHoras, null, null));
+        dias.add(permiso(invertido, LocalTime.of(12, 0), LocalTime.of(10, 0)));
+
+        assertArrayEquals(new long[]{0, SEGUNDOS_DIA}, indice.bloqueosDelDia(EMPLEADO_ID, sinHoras));
+        assertArrayEquals(new long[0], indice.bloqueosDelDia(EMPLEADO_ID, invertido));
+    }
+
+    @Test
+    void invalidarRecargaElMesDesdeLaBaseDeDatos() {
+        LocalDate fecha = LocalDate.of(2030, 4, 20);
+        assertArrayEquals(new long[0], indice.bloqueosDelDia(EMPLEADO_ID, fecha));
+
+        dias.add(diaCompleto(fecha));
+        assertArrayEquals(new long[0], indice.bloqueosDelDia(EMPLEADO_ID, fecha));
+
+        indice.invalidar(fecha);
+        assertArrayEquals(new long[]{0, SEGUNDOS_DIA}, indice.bloqueosDelDia(EMPLEADO_ID, fecha));
+        verify(diaEspecialRepository, times(2)).findByFechaBetween(LocalDate.of(2030, 4, 1), LocalDate.of(2030, 4, 30));
+    }
+
+    // ========== AUXILIARES ==========
+
+    private static DiaEspecial diaCompleto(LocalDate fecha) {
+        return new DiaEspecial(empleado(), fecha, "vacaciones");
+    }
+
+    private static DiaEspecial permiso(LocalDate fecha, LocalTime inicio, LocalTime fin) {
+        DiaEspecial dia = new DiaEspecial(empleado(), fecha, "permiso");
+        dia.setTodoElDia(false);
+        dia.setHoraInicio(inicio);
+        dia.setHoraFin(fin);
+        return dia;
+    }
+
+    private static Empleado empleado() {
+        Empleado empleado = new Empleado();
+        empleado.setId(EMPLEADO_ID);
+        return empleado;
+    }
+}
@@ -0,0 +1,177 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.benefactor.agendaCitas.Repository.CitaRepository;
+import com.benefactor.agendaCitas.Repository.EmpleadoRepository;
+import com.benefactor.agendaCitas.model.Cita;
+import com.benefactor.agendaCitas.model.Empleado;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas del mapa de bits por minuto del índice de ocupación
+ * Se revisan los extremos del día (minutos 0 y 1439) y los cambios de palabra (minutos 63 y 64)
+ */
+class IndiceOcupacionTest {
+
+    private static final Long EMPLEADO_ID = 1L;
+
+    private IndiceOcupacion indice;
+    private LocalDate dia;
+
+    @BeforeEach
+    void construirIndiceVacio() {
+        Empleado empleado = new Empleado();
+        empleado.setId(EMPLEADO_ID);
+        CitaRepository citaRepository = mock(CitaRepository.class);
+        EmpleadoRepository empleadoRepository = mock(EmpleadoRepository.class);
+        when(empleadoRepository.findByActivoTrue()).thenReturn(List.of(empleado));
+        when(citaRepository.findOcupacionesEnIntervalo(any(), any())).thenReturn(List.of());
+
+        indice = new IndiceOcupacion();
+        ReflectionTestUtils.setField(indice, "citaRepository", citaRepository);
+        ReflectionTestUtils.setField(indice, "empleadoRepository", empleadoRepository);
+        ReflectionTestUtils.setField(indice, "diasVentana", 10);
+        indice.construir();
+
+        dia = LocalDate.now().plusDays(2);
+    }
+
+    @Test
+    void primerMinutoDelDiaSeMarcaSinInvadirElSiguiente() {
+        indice.registrar(cita(dia.atStartOfDay(), dia.atTime(0, 1)));
+
+        assertTrue(indice.estaOcupado(EMPLEADO_ID, dia.atStartOfDay(), dia.atTime(0, 1)));
+        assertFalse(indice.estaOcupado(EMPLEADO_ID, dia.atTime(0, 1), dia.atTime(0, 30)));
+        assertFalse(indice.estaOcupado(EMPLEADO_ID, dia.minusDays(1).atTime(23, 0), dia.atStartOfDay()));
+    }
+
+    @Test
+    void ultimoMinutoDelDiaSeMarcaSinInvadirElDiaSiguiente() {
+        LocalDateTime medianoche = dia.plusDays(1).atStartOfDay();
+        indice.registrar(cita(dia.atTime(23, 59), medianoche));
+
+        assertTrue(indice.estaOcupado(EMPLEADO_ID, dia.atTime(23, 59), medianoche));
+        assertTrue(indice.estaOcupado(EMPLEADO_ID, dia.atTime(23, 0), medianoche.plusHours(1)));
+        assertFalse(indice.estaOcupado(EMPLEADO_ID, dia.atTime(23, 0), dia.atTime(23, 59)));
+        assertFalse(indice.estaOcupado(EMPLEADO_ID, medianoche, medianoche.plusHours(1)));
+    }
+
+    @Test
+    void citaQueCruzaLaMedianocheOcupaAmbosDias() {
+        indice.registrar(cita(dia.atTime(23, 30), dia.plusDays(1).atTime(0, 30)));
+
+        assertTrue(indice.estaOcupado(EMPLEADO_ID, dia.atTime(23, 45), dia.atTime(23, 50)));
+        assertTrue(indice.estaOcupado(EMPLEADO_ID, dia.plusDays(1).atTime(0, 10), dia.plusDays(1).atTime(0, 20)));
+        assertFalse(indice.estaOcupado(EMPLEADO_ID, dia.plusDays(1).atTime(0, 30), dia.plusDays(1).atTime(1, 0)));
+    }
+
+    @Test
+    void rangosQueCruzanElLimiteEntrePalabrasSeDetectan() {
+        // Minutos 63 y 64: último bit de la primera palabra y primero de la segunda
+        indice.registrar(cita(dia.atTime(1, 3), dia.atTime(1, 5)));
+
+        assertTrue(indice.estaOcupado(EMPLEADO_ID, dia.atTime(1, 3), dia.atTime(1, 4)));
+        assertTrue(indice.estaOcupado(EMPLEADO_ID, dia.atTime(1, 4), dia.atTime(1, 5)));
+        assertFalse(indice.estaOcupado(EMPLEADO_ID, dia.atTime(0, 0), dia.atTime(1, 3)));
+        assertFalse(indice.estaOcupado(EMPLEADO_ID, dia.atTime(1, 5), dia.atTime(23, 0)));
+    }
+
+    @Test
+    void lasFraccionesSeMarcanHaciaAfueraPeroSoloSeConsultanMinutosCompletos() {
+        // La cita ocupa parte del minuto 600, así que se marca el minuto completo
+        indice.registrar(cita(dia.atTime(10, 0, 30), dia.atTime(10, 30)));
+
+        assertTrue(indice.estaOcupado(EMPLEADO_ID, dia.atTime(9, 59), dia.atTime(10, 1)));
+        // Un rango que no contiene ningún minuto completo no se rechaza desde el índice
+        assertFalse(indice.estaOcupado(EMPLEADO_ID, dia.atTime(10, 0), dia.atTime(10, 0, 30)));
+        assertFalse(indice.estaOcupado(EMPLEADO_ID, dia.atTime(9, 0), dia.atTime(10, 0)));
+    }
+
+    @Test
+    void liberarLimpiaSoloElRangoDeLaCita() {
+        Cita primera = cita(dia.atTime(9, 0), dia.atTime(10, 0));
+        Cita segunda = cita(dia.atTime(10, 0), dia.atTime(11, 0));
+        indice.registrar(primera);
+        indice.registrar(segunda);
+
+        indice.liberar(primera);
+
+        assertFalse(indice.estaOcupado(EMPLEADO_ID, dia.atTime(9, 0), dia.atTime(10, 0)));
+        assertTrue(indice.estaOcupado(EMPLEADO_ID, dia.atTime(10, 0), dia.atTime(10, 1)));
+    }
+
+    @Test
+    void liberarUnaCitaQueNoOcupabaTiempoNoLiberaOtraCita() {
+        indice.registrar(cita(dia.atTime(9, 0), dia.atTime(10, 0)));
+        Cita cancelada = cita(dia.atTime(9, 0), dia.atTime(10, 0));
+        cancelada.setEstado("cancelada");
+
+        indice.liberar(cancelada);
+
+        assertTrue(indice.estaOcupado(EMPLEADO_ID, dia.atTime(9, 0), dia.atTime(10, 0)));
+    }
+
+    @Test
+    void cambiarEstadoSoloModificaLosBitsAlPasarDeOcuparALiberar() {
+        Cita cita = cita(dia.atTime(9, 0), dia.atTime(10, 0));
+        indice.registrar(cita);
+
+        cita.setEstado("cumplida");
+        indice.cambiarEstado(cita, "programada");
+        assertTrue(indice.estaOcupado(EMPLEADO_ID, dia.atTime(9, 0), dia.atTime(10, 0)));
+
+        cita.setEstado("cancelada");
+        indice.cambiarEstado(cita, "cumplida");
+        assertFalse(indice.estaOcupado(EMPLEADO_ID, dia.atTime(9, 0), dia.atTime(10, 0)));
+
+        cita.setEstado("programada");
+        indice.cambiarEstado(cita, "cancelada");
+        assertTrue(indice.estaOcupado(EMPLEADO_ID, dia.atTime(9, 0), dia.atTime(10, 0)));
+    }
+
+    @Test
+    void moverLiberaElRangoAnteriorYMarcaElNuevo() {
+        Cita cita = cita(dia.atTime(9, 0), dia.atTime(10, 0));
+        indice.registrar(cita);
+
+        cita.setFechaHoraInicio(dia.plusDays(1).atTime(14, 0));
+        cita.setFechaHoraFin(dia.plusDays(1).atTime(15, 0));
+        indice.mover(cita, dia.atTime(9, 0), dia.atTime(10, 0));
+
+        assertFalse(indice.estaOcupado(EMPLEADO_ID, dia.atTime(9, 0), dia.atTime(10, 0)));
+        assertTrue(indice.estaOcupado(EMPLEADO_ID, dia.plusDays(1).atTime(14, 30), dia.plusDays(1).atTime(14, 31)));
+    }
+
+    @Test
+    void diasFueraDeLaVentanaQuedanEnManosDeLaBaseDeDatos() {
+        LocalDate fueraDeVentana = LocalDate.now().plusDays(10);
+        indice.registrar(cita(fueraDeVentana.atTime(9, 0), fueraDeVentana.atTime(10, 0)));
+
+        assertFalse(indice.cubre(fueraDeVentana));
+        assertFalse(indice.estaOcupado(EMPLEADO_ID, fueraDeVentana.atTime(9, 0), fueraDeVentana.atTime(10, 0)));
+        assertTrue(indice.cubre(LocalDate.now().plusDays(9)));
+    }
+
+    // ========== AUXILIARES ==========
+
+    private static Cita cita(LocalDateTime inicio, LocalDateTime fin) {
+        Empleado empleado = new Empleado();
+        empleado.setId(EMPLEADO_ID);
+        Cita cita = new Cita();
+        cita.setEmpleado(empleado);
+        cita.setFechaHoraInicio(inicio);
+        cita.setFechaHoraFin(fin);
+        cita.setEstado("programada");
+        return cita;
+    }
+}
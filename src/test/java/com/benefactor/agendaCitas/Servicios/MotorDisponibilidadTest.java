@@ -0,0 +1,341 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import com.benefactor.agendaCitas.DTO.RangoCitaDTO;
+import com.benefactor.agendaCitas.model.HorarioLaboral;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del motor de disponibilidad en memoria
+ * Los intervalos son semiabiertos [inicio, fin): tocar un extremo nunca es conflicto
+ */
+class MotorDisponibilidadTest {
+
+    private static final LocalDate FECHA = LocalDate.of(2030, 1, 7);
+
+    // ========== fusionarOcupados ==========
+
+    @Test
+    void fusionarOcupadosOrdenaYCombinaRangosQueSeTocanOSeSolapan() {
+        long[] ocupados = MotorDisponibilidad.fusionarOcupados(FECHA, List.of(
+                rango(11, 0, 12, 0),
+                rango(9, 0, 10, 0),
+                rango(10, 0, 10, 30),   // toca el anterior: se combina
+                rango(11, 30, 11, 45),  // contenido en 11:00-12:00
+                rango(14, 0, 15, 0)));
+
+        assertArrayEquals(new long[]{
+                segundos(9, 0), segundos(10, 30),
+                segundos(11, 0), segundos(12, 0),
+                segundos(14, 0), segundos(15, 0)}, ocupados);
+    }
+
+    @Test
+    void fusionarOcupadosRedondeaHaciaAfueraLasFraccionesDeSegundo() {
+        LocalDateTime inicio = FECHA.atTime(9, 0).plusNanos(500_000_000);
+        LocalDateTime fin = FECHA.atTime(9, 30).plusNanos(1);
+
+        long[] ocupados = MotorDisponibilidad.fusionarOcupados(FECHA, List.of(rango(inicio, fin)));
+
+        assertArrayEquals(new long[]{segundos(9, 0), segundos(9, 30) + 1}, ocupados);
+    }
+
+    @Test
+    void fusionarOcupadosExpresaRangosDeOtrosDiasRelativosAlDiaConsultado() {
+        // Cita que empezó el día anterior y termina a la 01:00 del día consultado
+        long[] ocupados = MotorDisponibilidad.fusionarOcupados(FECHA,
+                List.of(rango(FECHA.minusDays(1).atTime(23, 0), FECHA.atTime(1, 0))));
+
+        assertArrayEquals(new long[]{-3600, 3600}, ocupados);
+    }
+
+    @Test
+    void fusionarOcupadosSinCitasDevuelveArregloVacio() {
+        assertEquals(0, MotorDisponibilidad.fusionarOcupados(FECHA, List.of()).length);
+    }
+
+    // ========== calcularHorariosLibres ==========
+
+    @Test
+    void calcularHorariosLibresGeneraCandidatosMientrasElServicioCompletoQuepa() {
+        List<LocalTime> libres = MotorDisponibilidad.calcularHorariosLibres(
+                List.of(horario(8, 0, 10, 0)), new long[0], 60);
+
+        assertEquals(List.of(LocalTime.of(8, 0), LocalTime.of(8, 30), LocalTime.of(9, 0)), libres);
+    }
+
+    @Test
+    void calcularHorariosLibresPermiteEmpezarJustoCuandoTerminaUnaCitaYTerminarJustoCuandoEmpiezaOtra() {
+        long[] ocupados = MotorDisponibilidad.fusionarOcupados(FECHA, List.of(
+                rango(8, 0, 9, 0),
+                rango(10, 0, 11, 0)));
+
+        List<LocalTime> libres = MotorDisponibilidad.calcularHorariosLibres(
+                List.of(horario(8, 0, 11, 0)), ocupados, 60);
+
+        assertEquals(List.of(LocalTime.of(9, 0)), libres);
+    }
+
+    @Test
+    void calcularHorariosLibresDescartaCandidatosSolapadosPorUnSegundo() {
+        long[] ocupados = MotorDisponibilidad.fusionarOcupados(FECHA,
+                List.of(rango(FECHA.atTime(9, 0), FECHA.atTime(9, 0, 1))));
+
+        List<LocalTime> libres = MotorDisponibilidad.calcularHorariosLibres(
+                List.of(horario(8, 0, 10, 0)), ocupados, 30);
+
+        assertEquals(List.of(LocalTime.of(8, 0), LocalTime.of(8, 30), LocalTime.of(9, 30)), libres);
+    }
+
+    @Test
+    void calcularHorariosLibresRecorreCadaHorarioLaboralPorSeparado() {
+        long[] ocupados = MotorDisponibilidad.fusionarOcupados(FECHA, List.of(rango(8, 0, 9, 0)));
+
+        List<LocalTime> libres = MotorDisponibilidad.calcularHorariosLibres(
+                List.of(horario(8, 0, 9, 30), horario(14, 0, 15, 0)), ocupados, 30);
+
+        assertEquals(List.of(LocalTime.of(9, 0), LocalTime.of(14, 0), LocalTime.of(14, 30)), libres);
+    }
+
+    @Test
+    void calcularHorariosLibresCoincideConLaVerificacionUnoAUno() {
+        Random random = new Random(7);
+        for (int caso = 0; caso < 500; caso++) {
+            List<HorarioLaboral> horarios = List.of(horario(7, 0, 12, 0), horario(13, 0, 20, 0));
+            long[] ocupados = MotorDisponibilidad.fusionarOcupados(FECHA, citasAlAzar(random, 8));
+            int duracion = 15 * (1 + random.nextInt(6));
+
+            List<LocalTime> esperados = new ArrayList<>();
+            for (HorarioLaboral horario : horarios) {
+                for (long inicio = horario.getHoraInicio().toSecondOfDay();
+                     inicio + duracion * 60L <= horario.getHoraFin().toSecondOfDay();
+                     inicio += MotorDisponibilidad.INTERVALO_MINUTOS * 60L) {
+                    if (libreFuerzaBruta(ocupados, inicio, inicio + duracion * 60L)) {
+                        esperados.add(LocalTime.ofSecondOfDay(inicio));
+                    }
+                }
+            }
+
+            assertEquals(esperados, MotorDisponibilidad.calcularHorariosLibres(horarios, ocupados, duracion));
+            assertEquals(!esperados.isEmpty(), MotorDisponibilidad.existeHorarioLibre(horarios, ocupados, duracion));
+        }
+    }
+
+    // ========== calcularHorariosCombo ==========
+
+    @Test
+    void calcularHorariosComboEncadenaLosServiciosSinHuecos() {
+        // Paso 1 (60 min) con el empleado A, paso 2 (30 min) con el empleado B ocupado de 10:00 a 10:30
+        List<List<HorarioLaboral>> horarios = List.of(List.of(horario(9, 0, 12, 0)), List.of(horario(9, 0, 12, 0)));
+        List<long[]> ocupados = List.of(
+                new long[0],
+                MotorDisponibilidad.fusionarOcupados(FECHA, List.of(rango(10, 0, 10, 30))));
+
+        List<LocalTime> libres = MotorDisponibilidad.calcularHorariosCombo(horarios, ocupados, new int[]{60, 30});
+
+        // 9:00 deja el paso 2 en 10:00-10:30 (ocupado); 9:30 lo deja en 10:30-11:00, justo al terminar la cita
+        assertEquals(List.of(LocalTime.of(9, 30), LocalTime.of(10, 0), LocalTime.of(10, 30)), libres);
+    }
+
+    @Test
+    void calcularHorariosComboExigeQueCadaPasoQuepaEnElHorarioDeSuEmpleado() {
+        List<List<HorarioLaboral>> horarios = List.of(List.of(horario(9, 0, 12, 0)), List.of(horario(10, 0, 11, 0)));
+        List<long[]> ocupados = List.of(new long[0], new long[0]);
+
+        List<LocalTime> libres = MotorDisponibilidad.calcularHorariosCombo(horarios, ocupados, new int[]{30, 60});
+
+        assertEquals(List.of(LocalTime.of(9, 30)), libres);
+    }
+
+    @Test
+    void calcularHorariosComboCoincideConLaVerificacionUnoAUno() {
+        Random random = new Random(19);
+        for (int caso = 0; caso < 500; caso++) {
+            int pasos = 1 + random.nextInt(3);
+            List<List<HorarioLaboral>> horarios = new ArrayList<>();
+            List<long[]> ocupados = new ArrayList<>();
+            int[] duraciones = new int[pasos];
+            for (int i = 0; i < pasos; i++) {
+                horarios.add(random.nextBoolean()
+                        ? List.of(horario(8, 0, 18, 0))
+                        : List.of(horario(8, 0, 12, 0), horario(13, 0, 18, 0)));
+                ocupados.add(MotorDisponibilidad.fusionarOcupados(FECHA, citasAlAzar(random, 6)));
+                duraciones[i] = 15 * (1 + random.nextInt(4));
+            }
+
+            List<LocalTime> esperados = new ArrayList<>();
+            for (HorarioLaboral horario : horarios.get(0)) {
+                for (long inicio = horario.getHoraInicio().toSecondOfDay();
+                     inicio + duraciones[0] * 60L <= horario.getHoraFin().toSecondOfDay();
+                     inicio += MotorDisponibilidad.INTERVALO_MINUTOS * 60L) {
+                    long desde = inicio;
+                    boolean cabe = true;
+                    for (int i = 0; i < pasos && cabe; i++) {
+                        long hasta = desde + duraciones[i] * 60L;
+                        cabe = MotorDisponibilidad.cabeEnHorario(horarios.get(i), desde, hasta)
+                                && libreFuerzaBruta(ocupados.get(i), desde, hasta);
+                        desde = hasta;
+                    }
+                    if (cabe) {
+                        esperados.add(LocalTime.ofSecondOfDay(inicio));
+                    }
+                }
+            }
+
+            assertEquals(esperados, MotorDisponibilidad.calcularHorariosCombo(horarios, ocupados, duraciones));
+        }
+    }
+
+    // ========== estaLibre ==========
+
+    @Test
+    void estaLibreAceptaRangosQueSoloTocanLosExtremos() {
+        long[] ocupados = {segundos(9, 0), segundos(10, 0), segundos(11, 0), segundos(12, 0)};
+
+        assertTrue(MotorDisponibilidad.estaLibre(ocupados, segundos(8, 0), segundos(9, 0)));
+        assertTrue(MotorDisponibilidad.estaLibre(ocupados, segundos(10, 0), segundos(11, 0)));
+        assertTrue(MotorDisponibilidad.estaLibre(ocupados, segundos(12, 0), segundos(13, 0)));
+    }
+
+    @Test
+    void estaLibreRechazaSolapamientosDeUnSegundo() {
+        long[] ocupados = {segundos(9, 0), segundos(10, 0), segundos(11, 0), segundos(12, 0)};
+
+        assertFalse(MotorDisponibilidad.estaLibre(ocupados, segundos(8, 0), segundos(9, 0) + 1));
+        assertFalse(MotorDisponibilidad.estaLibre(ocupados, segundos(10, 0) - 1, segundos(11, 0)));
+        assertFalse(MotorDisponibilidad.estaLibre(ocupados, segundos(10, 30), segundos(11, 0) + 1));
+        assertFalse(MotorDisponibilidad.estaLibre(ocupados, segundos(12, 0) - 1, segundos(13, 0)));
+    }
+
+    @Test
+    void estaLibreDetectaRangosQueContienenOEstanContenidosEnUnaCita() {
+        long[] ocupados = {segundos(9, 0), segundos(10, 0)};
+
+        assertFalse(MotorDisponibilidad.estaLibre(ocupados, segundos(9, 15), segundos(9, 45)));
+        assertFalse(MotorDisponibilidad.estaLibre(ocupados, segundos(8, 0), segundos(11, 0)));
+        assertTrue(MotorDisponibilidad.estaLibre(new long[0], segundos(8, 0), segundos(11, 0)));
+    }
+
+    @Test
+    void estaLibreCoincideConLaComparacionLineal() {
+        Random random = new Random(13);
+        for (int caso = 0; caso < 200; caso++) {
+            long[] ocupados = MotorDisponibilidad.fusionarOcupados(FECHA, citasAlAzar(random, 12));
+            for (int intento = 0; intento < 50; intento++) {
+                long inicio = random.nextInt(24 * 60) * 60L;
+                long fin = inicio + (1 + random.nextInt(180)) * 60L;
+
+                assertEquals(libreFuerzaBruta(ocupados, inicio, fin), MotorDisponibilidad.estaLibre(ocupados, inicio, fin));
+            }
+        }
+    }
+
+    // ========== restarBloqueos ==========
+
+    @Test
+    void restarBloqueosSinBloqueosDevuelveLosMismosHorarios() {
+        List<HorarioLaboral> horarios = List.of(horario(8, 0, 12, 0));
+
+        assertSame(horarios, MotorDisponibilidad.restarBloqueos(horarios, new long[0]));
+    }
+
+    @Test
+    void restarBloqueosPartePorElMedioUnHorario() {
+        List<HorarioLaboral> ventanas = MotorDisponibilidad.restarBloqueos(
+                List.of(horario(8, 0, 17, 0)), new long[]{segundos(12, 0), segundos(13, 0)});
+
+        assertVentanas(ventanas, "08:00-12:00", "13:00-17:00");
+    }
+
+    @Test
+    void restarBloqueosQueTocanLosExtremosNoRecortan() {
+        // Permiso que termina justo al iniciar el horario y otro que empieza justo al terminar
+        List<HorarioLaboral> ventanas = MotorDisponibilidad.restarBloqueos(
+                List.of(horario(8, 0, 12, 0)),
+                new long[]{segundos(6, 0), segundos(8, 0), segundos(12, 0), segundos(14, 0)});
+
+        assertVentanas(ventanas, "08:00-12:00");
+    }
+
+    @Test
+    void restarBloqueosRecortaLosExtremosYEliminaHorariosCubiertos() {
+        List<HorarioLaboral> ventanas = MotorDisponibilidad.restarBloqueos(
+                List.of(horario(8, 0, 12, 0), horario(14, 0, 16, 0), horario(17, 0, 19, 0)),
+                new long[]{segundos(7, 0), segundos(9, 0), segundos(11, 30), segundos(16, 30), segundos(18, 30), segundos(20, 0)});
+
+        assertVentanas(ventanas, "09:00-11:30", "17:00-18:30");
+    }
+
+    @Test
+    void restarBloqueosDeTodoElDiaNoDejaVentanas() {
+        List<HorarioLaboral> ventanas = MotorDisponibilidad.restarBloqueos(
+                List.of(horario(8, 0, 12, 0), horario(14, 0, 18, 0)), new long[]{0, 24 * 3600});
+
+        assertTrue(ventanas.isEmpty());
+    }
+
+    // ========== AUXILIARES ==========
+
+    private static HorarioLaboral horario(int horaInicio, int minutoInicio, int horaFin, int minutoFin) {
+        return new HorarioLaboral(null, FECHA.getDayOfWeek().getValue(),
+                LocalTime.of(horaInicio, minutoInicio), LocalTime.of(horaFin, minutoFin));
+    }
+
+    private static RangoCitaDTO rango(int horaInicio, int minutoInicio, int horaFin, int minutoFin) {
+        return rango(FECHA.atTime(horaInicio, minutoInicio), FECHA.atTime(horaFin, minutoFin));
+    }
+
+    private static RangoCitaDTO rango(LocalDateTime inicio, LocalDateTime fin) {
+        return new RangoCitaDTO() {
+            @Override
+            public LocalDateTime getFechaHoraInicio() { return inicio; }
+
+            @Override
+            public LocalDateTime getFechaHoraFin() { return fin; }
+        };
+    }
+
+    private static long segundos(int hora, int minuto) {
+        return hora * 3600L + minuto * 60L;
+    }
+
+    /**
+     * Citas al azar en múltiplos de 5 minutos entre las 7:00 y las 20:00, que pueden solaparse entre sí
+     */
+    private static List<RangoCitaDTO> citasAlAzar(Random random, int maximo) {
+        List<RangoCitaDTO> citas = new ArrayList<>();
+        int cantidad = random.nextInt(maximo + 1);
+        for (int i = 0; i < cantidad; i++) {
+            LocalDateTime inicio = FECHA.atTime(7, 0).plusMinutes(5L * random.nextInt(156));
+            citas.add(rango(inicio, inicio.plusMinutes(5L * (1 + random.nextInt(18)))));
+        }
+        return citas;
+    }
+
+    /**
+     * Criterio de referencia: el rango está libre si no se solapa con ningún intervalo ocupado
+     */
+    private static boolean libreFuerzaBruta(long[] ocupados, long inicio, long fin) {
+        for (int i = 0; i < ocupados.length; i += 2) {
+            if (ocupados[i] < fin && ocupados[i + 1] > inicio) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void assertVentanas(List<HorarioLaboral> ventanas, String... esperadas) {
+        List<String> obtenidas = ventanas.stream()
+                .map(ventana -> ventana.getHoraInicio() + "-" + ventana.getHoraFin())
+                .toList();
+        assertEquals(List.of(esperadas), obtenidas);
+    }
+}
@@ -0,0 +1,111 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del registro de claves de idempotencia
+ */
+class RegistroIdempotenciaTest {
+
+    private SimpleMeterRegistry registry;
+    private RegistroIdempotencia registro;
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+
+    @BeforeEach
+    void crearRegistro() {
+        registry = new SimpleMeterRegistry();
+        registro = new RegistroIdempotencia(registry, 100, 60, 5);
+    }
+
+    @Test
+    void unaRepeticionRecibeLaRespuestaGuardadaSinEjecutarDeNuevo() {
+        ResponseEntity<?> primera = registro.ejecutar("clave-1", "huella-a", () -> creada(1L));
+        ResponseEntity<?> repetida = registro.ejecutar("clave-1", "huella-a", () -> creada(2L));
+
+        assertSame(primera, repetida);
+        assertEquals(1, ejecuciones.get());
+        assertEquals(1.0, registry.counter("agenda.idempotencia.repeticiones").count());
+    }
+
+    @Test
+    void laMismaClaveConOtraHuellaSeRechazaCon422() {
+        ResponseEntity<?> primera = registro.ejecutar("clave-1", "huella-a", () -> creada(1L));
+
+        ResponseEntity<?> otra = registro.ejecutar("clave-1", "huella-b", () -> creada(2L));
+
+        assertEquals(422, otra.getStatusCode().value());
+        assertEquals(1, ejecuciones.get());
+        // La entrada original sigue intacta para los reintentos legítimos
+        assertSame(primera, registro.ejecutar("clave-1", "huella-a", () -> creada(3L)));
+    }
+
+    @Test
+    void losConflictosSeGuardanYLosDemasErroresNo() {
+        registro.ejecutar("conflicto", "huella", () -> respuesta(409));
+        registro.ejecutar("conflicto", "huella", () -> respuesta(409));
+        assertEquals(1, ejecuciones.get());
+
+        registro.ejecutar("invalida", "huella", () -> respuesta(400));
+        ResponseEntity<?> reintento = registro.ejecutar("invalida", "huella", () -> creada(4L));
+        assertEquals(3, ejecuciones.get());
+        assertEquals(201, reintento.getStatusCode().value());
+    }
+
+    @Test
+    void unaExcepcionLiberaLaClaveParaElSiguienteIntento() {
+        assertThrows(IllegalStateException.class, () -> registro.ejecutar("clave-1", "huella", () -> {
+            throw new IllegalStateException("falla");
+        }));
+
+        ResponseEntity<?> reintento = registro.ejecutar("clave-1", "huella", () -> creada(1L));
+
+        assertEquals(201, reintento.getStatusCode().value());
+    }
+
+    @Test
+    void unReintentoConcurrenteEsperaElResultadoDeLaPrimeraEjecucion() throws Exception {
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<?>> primera = CompletableFuture.supplyAsync(() ->
+                registro.ejecutar("clave-1", "huella", () -> {
+                    enCurso.countDown();
+                    try {
+                        liberar.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return creada(1L);
+                }));
+        assertTrue(enCurso.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<ResponseEntity<?>> repetida = CompletableFuture.supplyAsync(() ->
+                registro.ejecutar("clave-1", "huella", () -> creada(2L)));
+        liberar.countDown();
+
+        assertSame(primera.get(5, TimeUnit.SECONDS), repetida.get(5, TimeUnit.SECONDS));
+        assertEquals(1, ejecuciones.get());
+    }
+
+    // ========== AUXILIARES ==========
+
+    private ResponseEntity<?> creada(Long id) {
+        ejecuciones.incrementAndGet();
+        return ResponseEntity.status(201).body(Map.of("id", id));
+    }
+
+    private ResponseEntity<?> respuesta(int estado) {
+        ejecuciones.incrementAndGet();
+        return ResponseEntity.status(estado).body(Map.of("error", "estado " + estado));
+    }
+}
@@ -0,0 +1,217 @@
+package com.benefactor.agendaCitas.Servicios;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Pruebas de las reservas temporales y de su rueda de tiempo
+ * La hora se controla con un reloj falso para hacer vencer las reservas sin esperar
+ */
+class ReservasTemporalesTest {
+
+    private static final Long EMPLEADO_ID = 1L;
+    private static final Long SERVICIO_ID = 2L;
+    private static final LocalDate FECHA = LocalDate.of(2030, 1, 7);
+    private static final long INICIO_RELOJ = 1_900_000_000_000L;
+
+    private final AtomicLong ahora = new AtomicLong(INICIO_RELOJ);
+    private final CacheDisponibilidad cacheDisponibilidad = mock(CacheDisponibilidad.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void reservasQueSoloSeTocanNoSeBloquean() {
+        ReservasTemporales reservas = crear(5, 10);
+        ReservaHorario primera = reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(9, 0), hora(10, 0));
+
+        reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(10, 0), hora(11, 0));
+        assertThrows(HorarioOcupadoException.class,
+                () -> reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(9, 59), hora(10, 30)));
+        reservas.reservar(3L, SERVICIO_ID, hora(9, 30), hora(10, 30));
+
+        assertTrue(reservas.bloquea(EMPLEADO_ID, hora(9, 30), hora(9, 45), null));
+        assertFalse(reservas.bloquea(EMPLEADO_ID, hora(9, 30), hora(9, 45), primera.getId()));
+        assertEquals(3.0, activas());
+    }
+
+    @Test
+    void unaReservaVencidaDejaDeBloquearAntesDeQueLaRuedaLaRetire() {
+        ReservasTemporales reservas = crear(5, 10);
+        reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(9, 0), hora(10, 0));
+
+        avanzar(5 * 60);
+
+        assertFalse(reservas.bloquea(EMPLEADO_ID, hora(9, 0), hora(10, 0), null));
+        assertTrue(reservas.enIntervalo(List.of(EMPLEADO_ID), hora(0, 0), hora(23, 0)).isEmpty());
+        // Sin pasar por la rueda, otro cliente ya puede reservar el mismo horario
+        reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(9, 0), hora(10, 0));
+    }
+
+    @Test
+    void laRuedaRetiraLaReservaEnElSegundoEnQueVence() {
+        ReservasTemporales reservas = crear(5, 10);
+        reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(9, 0), hora(10, 0));
+
+        avanzar(5 * 60 - 1);
+        reservas.avanzarRueda();
+        assertEquals(1.0, activas());
+        verify(cacheDisponibilidad, never()).invalidarRango(EMPLEADO_ID, hora(9, 0), hora(10, 0));
+
+        avanzar(1);
+        reservas.avanzarRueda();
+        assertEquals(0.0, activas());
+        verify(cacheDisponibilidad).invalidarRango(EMPLEADO_ID, hora(9, 0), hora(10, 0));
+    }
+
+    @Test
+    void unaReservaMasLargaQueLaRuedaDaMasDeUnaVuelta() {
+        // 10 minutos = 600 segundos, más que las 512 ranuras: su ranura se visita antes de que venza
+        ReservasTemporales reservas = crear(10, 10);
+        reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(9, 0), hora(10, 0));
+
+        avanzar(599);
+        reservas.avanzarRueda();
+        assertEquals(1.0, activas());
+        assertTrue(reservas.bloquea(EMPLEADO_ID, hora(9, 0), hora(10, 0), null));
+
+        avanzar(1);
+        reservas.avanzarRueda();
+        assertEquals(0.0, activas());
+    }
+
+    @Test
+    void unaReservaEnConfirmacionNoVenceMientrasSeConfirma() {
+        ReservasTemporales reservas = crear(5, 10);
+        ReservaHorario reserva = reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(9, 0), hora(10, 0));
+
+        assertSame(reserva, reservas.iniciarConfirmacion(reserva.getId()));
+        avanzar(10 * 60);
+        reservas.avanzarRueda();
+
+        assertEquals(1.0, activas());
+        assertTrue(reservas.bloquea(EMPLEADO_ID, hora(9, 0), hora(10, 0), null));
+        assertThrows(HorarioOcupadoException.class,
+                () -> reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(9, 0), hora(10, 0)));
+
+        // La cita se guardó: la reserva se retira sin pasar por el vencimiento
+        assertSame(reserva, reservas.liberar(reserva.getId()));
+        assertEquals(0.0, activas());
+        assertFalse(reservas.bloquea(EMPLEADO_ID, hora(9, 0), hora(10, 0), null));
+        verify(cacheDisponibilidad, never()).invalidarRango(EMPLEADO_ID, hora(9, 0), hora(10, 0));
+    }
+
+    @Test
+    void unaConfirmacionFallidaDespuesDelVencimientoRetiraLaReserva() {
+        ReservasTemporales reservas = crear(5, 10);
+        ReservaHorario reserva = reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(9, 0), hora(10, 0));
+        reservas.iniciarConfirmacion(reserva.getId());
+
+        avanzar(5 * 60);
+        reservas.cancelarConfirmacion(reserva);
+
+        assertEquals(0.0, activas());
+        assertThrows(RuntimeException.class, () -> reservas.iniciarConfirmacion(reserva.getId()));
+        verify(cacheDisponibilidad).invalidarRango(EMPLEADO_ID, hora(9, 0), hora(10, 0));
+    }
+
+    @Test
+    void unaConfirmacionFallidaAntesDelVencimientoDevuelveLaReservaAActiva() {
+        ReservasTemporales reservas = crear(5, 10);
+        ReservaHorario reserva = reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(9, 0), hora(10, 0));
+        reservas.iniciarConfirmacion(reserva.getId());
+
+        reservas.cancelarConfirmacion(reserva);
+
+        assertSame(reserva, reservas.iniciarConfirmacion(reserva.getId()));
+    }
+
+    @Test
+    void noSePuedeConfirmarUnaReservaVencidaQueLaRuedaNoHaRetirado() {
+        ReservasTemporales reservas = crear(5, 10);
+        ReservaHorario reserva = reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(9, 0), hora(10, 0));
+
+        avanzar(5 * 60);
+
+        assertThrows(RuntimeException.class, () -> reservas.iniciarConfirmacion(reserva.getId()));
+    }
+
+    @Test
+    void soloUnaConfirmacionConcurrenteTomaLaReserva() throws Exception {
+        ReservasTemporales reservas = crear(5, 10);
+        for (int intento = 0; intento < 200; intento++) {
+            ReservaHorario reserva = reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(9, 0), hora(10, 0));
+            CountDownLatch salida = new CountDownLatch(1);
+            List<CompletableFuture<Boolean>> confirmaciones = List.of(
+                    confirmarAlMismoTiempo(reservas, reserva.getId(), salida),
+                    confirmarAlMismoTiempo(reservas, reserva.getId(), salida));
+            salida.countDown();
+
+            int tomadas = 0;
+            for (CompletableFuture<Boolean> confirmacion : confirmaciones) {
+                tomadas += confirmacion.get(5, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertEquals(1, tomadas);
+            reservas.liberar(reserva.getId());
+        }
+    }
+
+    @Test
+    void seRespetaElMaximoDeReservasSimultaneas() {
+        ReservasTemporales reservas = crear(5, 2);
+        reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(9, 0), hora(10, 0));
+        ReservaHorario segunda = reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(10, 0), hora(11, 0));
+
+        assertThrows(RuntimeException.class, () -> reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(11, 0), hora(12, 0)));
+        reservas.liberar(segunda.getId());
+        reservas.reservar(EMPLEADO_ID, SERVICIO_ID, hora(11, 0), hora(12, 0));
+        assertEquals(2.0, activas());
+    }
+
+    // ========== AUXILIARES ==========
+
+    private ReservasTemporales crear(long ttlMinutos, int maximo) {
+        ReservasTemporales reservas = new ReservasTemporales(registry, ttlMinutos, maximo, ahora::get);
+        ReflectionTestUtils.setField(reservas, "cacheDisponibilidad", cacheDisponibilidad);
+        return reservas;
+    }
+
+    private CompletableFuture<Boolean> confirmarAlMismoTiempo(ReservasTemporales reservas, String reservaId, CountDownLatch salida) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                salida.await();
+                reservas.iniciarConfirmacion(reservaId);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (RuntimeException e) {
+                return false;
+            }
+        });
+    }
+
+    private void avanzar(long segundos) {
+        ahora.addAndGet(segundos * 1000);
+    }
+
+    private double activas() {
+        return registry.get("agenda.reservas.activas").gauge().value();
+    }
+
+    private static LocalDateTime hora(int hora, int minuto) {
+        return FECHA.atTime(hora, minuto);
+    }
+}